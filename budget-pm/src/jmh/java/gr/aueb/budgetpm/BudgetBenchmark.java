@@ -0,0 +1,99 @@
+package gr.aueb.budgetpm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks του μοντέλου (Budget), των συγκρίσεων και των σεναρίων σε συνθετικά budgets.
+ * Για ρυθμό δεσμεύσεων μνήμης: java -jar target/benchmarks.jar BudgetBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BudgetBenchmark {
+
+    //Πλήθος χωρών για το CountryComparator.compareAll
+    @Param({"2", "16"})
+    public int countries;
+
+    private Budget budget;
+    private Budget previousYear;
+    private List<Budget> budgets;
+    private BudgetScenario scenario;
+    private String[] codes;
+    private long tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        budget = SyntheticBudgets.create("GR", 2020, 42);
+        previousYear = SyntheticBudgets.create("GR", 2019, 42);
+
+        budgets = new ArrayList<>(countries);
+        for (int i = 0; i < countries; i++) {
+            budgets.add(SyntheticBudgets.create("C" + i, 2020, 42));
+        }
+
+        scenario = new BudgetScenario("bench", budget, -5);
+        scenario.setCategoryValue("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ", 20_000_000_000L);
+        codes = SyntheticBudgets.codes();
+    }
+
+    //Χωρίς αλλαγές: επιστρέφεται το cached snapshot
+    @Benchmark
+    public List<BudgetCategory> getCategories() {
+        return budget.getCategories();
+    }
+
+    //Μετά από κάθε αλλαγή χρήστη το snapshot ξαναχτίζεται
+    @Benchmark
+    public List<BudgetCategory> getCategoriesAfterChange() {
+        budget.setUserValue("EDU_RESEARCH", 1_000_000_000L + (tick++ & 1023));
+        return budget.getCategories();
+    }
+
+    @Benchmark
+    public void getFinalValue(Blackhole bh) {
+        for (String code : codes) {
+            bh.consume(budget.getFinalValue(code));
+        }
+    }
+
+    @Benchmark
+    public Map<String, BudgetComparator.ComparisonResult> budgetComparatorCompare() {
+        return BudgetComparator.compare(previousYear, budget);
+    }
+
+    @Benchmark
+    public Map<String, CountryComparator.ComparisonRow> countryComparatorCompare() {
+        return CountryComparator.compare(budgets.get(0), budgets.get(1));
+    }
+
+    @Benchmark
+    public List<CountryComparator.AlignedRow> countryComparatorCompareAll() {
+        return CountryComparator.compareAll(budgets);
+    }
+
+    @Benchmark
+    public Map<String, Long> scenarioGetAllCategoryValues() {
+        return scenario.getAllCategoryValues();
+    }
+}
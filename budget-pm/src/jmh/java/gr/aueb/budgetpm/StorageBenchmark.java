@@ -0,0 +1,89 @@
+package gr.aueb.budgetpm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks εξαγωγής CSV και αποθήκευσης / φόρτωσης όλων των ετών (BudgetYearManager)
+ * σε προσωρινό φάκελο. Μετράει και το I/O, άρα οι τιμές εξαρτώνται από τον δίσκο.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    //Πλήθος ετών στον manager
+    @Param({"10", "50"})
+    public int years;
+
+    private Path dir;
+    private Path csvFile;
+    private Path saveFile;
+    private Path loadFile;
+    private Budget budget;
+    private BudgetYearManager manager;
+    private BudgetYearManager target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("budget-bench");
+        csvFile = dir.resolve("export.csv");
+        saveFile = dir.resolve("save.json");
+        loadFile = dir.resolve("load.json");
+
+        //Νέοι managers (όχι forCountry) ώστε να μη μοιράζονται την cache της εφαρμογής
+        manager = new BudgetYearManager("ZZ");
+        for (int y = 0; y < years; y++) {
+            manager.putBudget(2000 + y, SyntheticBudgets.create("ZZ", 2000 + y, 42));
+        }
+        manager.saveAll(loadFile);
+        budget = manager.getOrLoad(2000);
+        target = new BudgetYearManager("ZZ");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public Path exportCategories() throws IOException {
+        return CSVExporter.exportCategories(budget, csvFile);
+    }
+
+    @Benchmark
+    public void saveAll() throws Exception {
+        manager.saveAll(saveFile);
+    }
+
+    @Benchmark
+    public BudgetYearManager loadAll() throws Exception {
+        target.loadAll(loadFile);
+        return target;
+    }
+}
@@ -0,0 +1,46 @@
+package gr.aueb.budgetpm;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Συνθετικά budgets για τα benchmarks (χωρίς WorldBank API).
+ * Ίδιος seed = ίδια budgets σε κάθε εκτέλεση, ώστε οι μετρήσεις να συγκρίνονται.
+ */
+final class SyntheticBudgets {
+
+    private static final String EXPENSES = "GC.XPN.TOTL.GD.ZS";
+    private static final String REVENUE = "GC.REV.XGRT.GD.ZS";
+
+    //Υποκατηγορίες που αλλάζει ο "χρήστης" σε κάθε budget
+    private static final String[] EDITED = {"HEALTH_MEDS", "EDU_RESEARCH", "DEF_EQUIPMENT", "LABOR_PENSIONS"};
+
+    private SyntheticBudgets() {}
+
+    /**
+     * Budget με δαπάνες 80-150 δισ., έσοδα ±10% γύρω από αυτές
+     * και μερικές αλλαγές χρήστη (όπως μετά από λίγες εντολές στο CLI).
+     */
+    static Budget create(String country, int year, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed ^ (31L * year + country.hashCode()));
+        long expenses = 80_000_000_000L + rnd.nextLong(70_000_000_000L);
+        long revenue = Math.round(expenses * (0.9 + rnd.nextDouble() * 0.2));
+
+        Budget b = new Budget(year, country);
+        b.loadFromMetrics(Map.of(EXPENSES, expenses, REVENUE, revenue));
+        for (String code : EDITED) {
+            long v = b.getFinalValue(code);
+            b.setUserValue(code, Math.round(v * (0.8 + rnd.nextDouble() * 0.4)));
+        }
+        return b;
+    }
+
+    //Όλοι οι κωδικοί κατηγοριών (για getFinalValue σε όλο το budget)
+    static String[] codes() {
+        String[] codes = new String[CategoryIndex.size()];
+        for (int id = 0; id < codes.length; id++) {
+            codes[id] = CategoryIndex.code(id);
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,80 @@
+package gr.aueb.budgetpm;
+
+import java.util.List;
+
+/**
+ * Εφαρμογή ενός {@link AllocationMatrix} σε πολλά budgets μαζί.
+ *
+ * Τα ποσά κρατιούνται ανά στήλη σε ένα επίπεδο long[]: η τιμή της κατηγορίας id
+ * για το budget i βρίσκεται στη θέση id * n + i. Έτσι κάθε βάρος του πίνακα
+ * εφαρμόζεται με έναν βρόχο πάνω σε συνεχόμενη μνήμη, χωρίς maps και boxing.
+ *
+ * Στρογγυλοποίηση όπως πριν: Υπουργείο = round(σύνολο * ποσοστό),
+ * υποκατηγορία = round(Υπουργείο * βάρος), υπόλοιπο = σύνολο - Σ Υπουργείων (όχι αρνητικό).
+ */
+public final class AllocationEngine {
+
+    private AllocationEngine() {}
+
+    /**
+     * Κατανομή για n = totals.length budgets.
+     * Επιστρέφει πίνακα μεγέθους CategoryIndex.size() * n (στήλες ανά κατηγορία).
+     */
+    static long[] allocate(AllocationMatrix m, long[] totals) {
+        int n = totals.length;
+        long[] out = new long[CategoryIndex.size() * n];
+
+        //Σύνολο δαπανών και αρχική τιμή του υπολοίπου
+        System.arraycopy(totals, 0, out, m.getRootId() * n, n);
+        long[] remainder = totals.clone();
+
+        //Υπουργεία
+        for (int k = 0; k < m.ministryCount(); k++) {
+            int col = m.ministryId(k) * n;
+            double share = m.ministryShare(k);
+            for (int i = 0; i < n; i++) {
+                long v = Math.round(totals[i] * share);
+                out[col + i] = v;
+                remainder[i] -= v;
+            }
+        }
+
+        //Υποκατηγορίες (επί του στρογγυλοποιημένου ποσού του Υπουργείου τους)
+        for (int j = 0; j < m.itemCount(); j++) {
+            int col = m.itemId(j) * n;
+            int parentCol = m.ministryId(m.itemParent(j)) * n;
+            double weight = m.itemWeight(j);
+            for (int i = 0; i < n; i++) {
+                out[col + i] = Math.round(out[parentCol + i] * weight);
+            }
+        }
+
+        //Υπόλοιπο
+        int col = m.getRemainderId() * n;
+        for (int i = 0; i < n; i++) {
+            out[col + i] = Math.max(0L, remainder[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Ξανακατανέμει τα budgets (με βάση τις συνολικές δαπάνες τους) σύμφωνα με τον πίνακα.
+     * Budgets χωρίς δεδομένα παραλείπονται· οι αλλαγές του χρήστη δεν αγγίζονται.
+     */
+    public static void allocateAll(List<Budget> budgets, AllocationMatrix m) {
+        List<Budget> withData = budgets.stream()
+                .filter(b -> b.getTotalExpenses() != 0 || b.getTotalRevenue() != 0)
+                .toList();
+
+        int n = withData.size();
+        long[] totals = new long[n];
+        for (int i = 0; i < n; i++) {
+            totals[i] = withData.get(i).getTotalExpenses();
+        }
+
+        long[] out = allocate(m, totals);
+        for (int i = 0; i < n; i++) {
+            withData.get(i).applyAllocation(m, out, n, i);
+        }
+    }
+}
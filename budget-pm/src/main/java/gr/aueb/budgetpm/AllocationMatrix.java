@@ -0,0 +1,255 @@
+package gr.aueb.budgetpm;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Πίνακας κατανομής των συνολικών δαπανών: Υπουργείο -> ποσοστό του συνόλου,
+ * και Υπουργείο -> υποκατηγορίες με βάρη.
+ *
+ * Κρατιέται σε επίπεδους πίνακες (ids του CategoryIndex + βάρη) ώστε ο
+ * {@link AllocationEngine} να τον εφαρμόζει σε πολλά budgets με απλούς βρόχους.
+ * Ό,τι περισσεύει από τα Υπουργεία πάει στην κατηγορία υπολοίπου (MIN_OTHER).
+ *
+ * Μορφή αρχείου ρυθμίσεων (JSON):
+ * <pre>
+ * { "remainder": "MIN_OTHER",
+ *   "ministries": [
+ *     { "code": "MIN_HEALTH", "share": 0.15,
+ *       "items": { "HEALTH_SALARIES": 0.45, "HEALTH_HOSPITALS": 0.30 } } ] }
+ * </pre>
+ */
+public final class AllocationMatrix {
+
+    static final String ROOT_CODE = "GC.XPN.TOTL.GD.ZS";
+
+    //Ρυθμισμένος πίνακας (από -Dbudgetpm.allocation=<αρχείο> ή ο προεπιλεγμένος)
+    private static volatile AllocationMatrix configured;
+
+    private final int rootId;
+    private final int remainderId;
+
+    //Υπουργεία: id και ποσοστό επί του συνόλου
+    private final int[] ministryIds;
+    private final double[] ministryShares;
+
+    //Υποκατηγορίες: id, βάρος και θέση του Υπουργείου τους στον ministryIds
+    private final int[] itemIds;
+    private final double[] itemWeights;
+    private final int[] itemParents;
+
+    //Όλα τα ids που γράφει η κατανομή (σύνολο, Υπουργεία, υποκατηγορίες, υπόλοιπο)
+    private final int[] allocatedIds;
+
+    //Η ιεραρχία που ορίζει ο πίνακας (για τα σύνολα του Budget)
+    private final CategoryTree tree;
+
+    private AllocationMatrix(String remainderCode, List<String> ministries, List<Double> shares,
+                             List<String> items, List<Double> weights, List<Integer> parents) {
+        this.rootId = requireId(ROOT_CODE);
+        this.remainderId = requireId(remainderCode);
+
+        //Κάθε κατηγορία γράφεται μία φορά· διπλό Υπουργείο, ή υποκατηγορία σε δύο Υπουργεία,
+        //θα κατένεμε το ίδιο ποσό δύο φορές και θα χαλούσε την ιεραρχία του CategoryTree
+        BitSet ids = new BitSet(CategoryIndex.size());
+        ids.set(rootId);
+        ids.set(remainderId);
+
+        this.ministryIds = new int[ministries.size()];
+        this.ministryShares = new double[ministries.size()];
+        for (int k = 0; k < ministryIds.length; k++) {
+            ministryIds[k] = requireUnique(ids, ministries.get(k));
+            ministryShares[k] = requireWeight(ministries.get(k), shares.get(k));
+        }
+
+        this.itemIds = new int[items.size()];
+        this.itemWeights = new double[items.size()];
+        this.itemParents = new int[items.size()];
+        for (int j = 0; j < itemIds.length; j++) {
+            itemIds[j] = requireUnique(ids, items.get(j));
+            itemWeights[j] = requireWeight(items.get(j), weights.get(j));
+            itemParents[j] = parents.get(j);
+        }
+
+        this.allocatedIds = ids.stream().toArray();
+        this.tree = new CategoryTree(this);
+    }
+
+    /**
+     * Η προεπιλεγμένη κατανομή (Υγεία 15%, Παιδεία 12%, Άμυνα 10%, Προστασία Πολίτη 5%,
+     * Εξωτερικών 3%, Εσωτερικών 4%, Εργασίας 30%, υπόλοιπο στις Λοιπές δαπάνες).
+     */
+    public static AllocationMatrix defaults() {
+        Spec s = new Spec();
+        s.ministry("MIN_HEALTH", 0.15,
+                "HEALTH_SALARIES", 0.45, "HEALTH_HOSPITALS", 0.30, "HEALTH_MEDS", 0.15, "HEALTH_EQUIP", 0.10);
+        s.ministry("MIN_EDUCATION", 0.12,
+                "EDU_SALARIES", 0.75, "EDU_MAINTENANCE", 0.15, "EDU_RESEARCH", 0.10);
+        s.ministry("MIN_DEFENSE", 0.10,
+                "DEF_EQUIPMENT", 0.45, "DEF_SALARIES", 0.40, "DEF_TRAINING", 0.15);
+        s.ministry("MIN_PROTECTION", 0.05,
+                "PROT_SALARIES", 0.70, "PROT_EQUIP", 0.20, "PROT_BORDERS", 0.10);
+        s.ministry("MIN_FOREIGN", 0.03,
+                "FOR_EMBASSIES", 0.50, "FOR_DIPLOMACY", 0.30, "FOR_AID", 0.20);
+        s.ministry("MIN_INTERIOR", 0.04,
+                "INT_MUNICIPAL", 0.80, "INT_ELECTIONS", 0.20);
+        s.ministry("MIN_LABOR", 0.30,
+                "LABOR_PENSIONS", 0.60, "LABOR_BENEFITS", 0.25, "LABOR_SUPPORT", 0.15);
+        return s.build("MIN_OTHER");
+    }
+
+    //Πίνακας από JSON (βλ. μορφή στην περιγραφή της κλάσης)
+    public static AllocationMatrix fromJson(String json) {
+        JSONObject root = new JSONObject(json);
+        Spec s = new Spec();
+
+        JSONArray ministries = root.getJSONArray("ministries");
+        for (int i = 0; i < ministries.length(); i++) {
+            JSONObject m = ministries.getJSONObject(i);
+            int parent = s.ministry(m.getString("code"), m.getDouble("share"));
+
+            JSONObject items = m.optJSONObject("items");
+            if (items != null) {
+                //Ταξινόμηση για σταθερή σειρά ανεξάρτητα από το JSON
+                for (String code : new TreeSet<>(items.keySet())) {
+                    s.item(code, items.getDouble(code), parent);
+                }
+            }
+        }
+        return s.build(root.optString("remainder", "MIN_OTHER"));
+    }
+
+    public static AllocationMatrix load(Path file) throws IOException {
+        return fromJson(Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Ο πίνακας που χρησιμοποιεί το Budget. Αν έχει οριστεί -Dbudgetpm.allocation=&lt;αρχείο&gt;
+     * φορτώνεται από εκεί (μία φορά), αλλιώς η προεπιλογή.
+     */
+    public static AllocationMatrix configured() {
+        AllocationMatrix m = configured;
+        if (m == null) {
+            String path = System.getProperty("budgetpm.allocation");
+            try {
+                m = (path != null) ? load(Paths.get(path)) : defaults();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Σφάλμα στο αρχείο κατανομής " + path + ": " + e.getMessage());
+                m = defaults();
+            }
+            configured = m;
+        }
+        return m;
+    }
+
+    public static void setConfigured(AllocationMatrix matrix) {
+        configured = matrix;
+    }
+
+    int getRootId() {
+        return rootId;
+    }
+
+    int getRemainderId() {
+        return remainderId;
+    }
+
+    int[] allocatedIds() {
+        return allocatedIds;
+    }
+
+    CategoryTree tree() {
+        return tree;
+    }
+
+    int ministryCount() {
+        return ministryIds.length;
+    }
+
+    int ministryId(int k) {
+        return ministryIds[k];
+    }
+
+    double ministryShare(int k) {
+        return ministryShares[k];
+    }
+
+    int itemCount() {
+        return itemIds.length;
+    }
+
+    int itemId(int j) {
+        return itemIds[j];
+    }
+
+    double itemWeight(int j) {
+        return itemWeights[j];
+    }
+
+    int itemParent(int j) {
+        return itemParents[j];
+    }
+
+    private static int requireId(String code) {
+        int id = CategoryIndex.idOf(code);
+        if (id < 0) {
+            throw new IllegalArgumentException("Άγνωστη κατηγορία στον πίνακα κατανομής: " + code);
+        }
+        return id;
+    }
+
+    private static int requireUnique(BitSet seen, String code) {
+        int id = requireId(code);
+        if (seen.get(id)) {
+            throw new IllegalArgumentException("Η κατηγορία εμφανίζεται δύο φορές στον πίνακα κατανομής: " + code);
+        }
+        seen.set(id);
+        return id;
+    }
+
+    private static double requireWeight(String code, double w) {
+        if (!(w >= 0 && w <= 1)) {
+            throw new IllegalArgumentException("Μη έγκυρο βάρος για " + code + ": " + w);
+        }
+        return w;
+    }
+
+    //Συλλογή γραμμών πριν τη μετατροπή σε πίνακες
+    private static final class Spec {
+        private final List<String> ministries = new ArrayList<>();
+        private final List<Double> shares = new ArrayList<>();
+        private final List<String> items = new ArrayList<>();
+        private final List<Double> weights = new ArrayList<>();
+        private final List<Integer> parents = new ArrayList<>();
+
+        int ministry(String code, double share, Object... itemsAndWeights) {
+            int k = ministries.size();
+            ministries.add(code);
+            shares.add(share);
+            for (int i = 0; i < itemsAndWeights.length; i += 2) {
+                item((String) itemsAndWeights[i], (Double) itemsAndWeights[i + 1], k);
+            }
+            return k;
+        }
+
+        void item(String code, double weight, int parent) {
+            items.add(code);
+            weights.add(weight);
+            parents.add(parent);
+        }
+
+        AllocationMatrix build(String remainderCode) {
+            return new AllocationMatrix(remainderCode, ministries, shares, items, weights, parents);
+        }
+    }
+}
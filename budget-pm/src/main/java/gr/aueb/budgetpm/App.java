@@ -1,12 +1,25 @@
 package gr.aueb.budgetpm;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 
@@ -34,119 +47,243 @@ public class App {
               compare <year1> <year2>  - σύγκριση δύο ετών
               compare years <Y1> <Y2> - σύγκριση προϋπολογισμών δύο ετών
               compare scenario <NAME> - σύγκριση σεναρίου με βασικό προϋπολογισμό
+              compare countries <C1> <C2> ... <Cn> <έτος> - σύγκριση και κατάταξη χωρών
               list years         - εμφάνιση φορτωμένων ετών
+              preload <Y1> <Y2>  - μαζική φόρτωση εύρους ετών (ένα αίτημα ανά δείκτη)
               save year <έτος>   - αποθήκευση προϋπολογισμού έτους σε αρχείο
               load year <έτος>   - φόρτωση προϋπολογισμού έτους από αρχείο
               export csv <YEAR>   - εξαγωγή κατηγοριών σε CSV (για γραφήματα)
               scenario <NAME> <X>   - δημιουργία σεναρίου (% μεταβολή σε όλες τις κατηγορίες)
+              scenario <NEW> from <NAME> - νέο σενάριο από υπάρχον (χωρίς αντιγραφή τιμών)
+              scenario set <NAME> <CAT> <ποσό> - ορισμός τιμής κατηγορίας σε σενάριο
+              scenario sweep <στόχος> <K> <CAT>=<από>:<έως>:<βήμα> ... - αναζήτηση σε πλέγμα μεταβολών
               scenario show <NAME> - εμφάνιση τιμών ενός σεναρίου
               list scenarios        - εμφάνιση σεναρίων
+              solve balance <στόχος> [CAT=<max%>[:<βάρος>] ...] [apply] - περικοπές για στόχο ισοζυγίου
+              simulate <N> [CAT=κατανομή ...] - Monte Carlo (π.χ. all=normal:0:5 revenue=uniform:-3:3)
               exit               - έξοδος
             """;
 
-    private static BudgetYearManager yearManager = new BudgetYearManager("GR");
-    private static int currentYear = 2020;
-    private static final Map<String, BudgetScenario> scenarios = new HashMap<>();
+    //Όλες οι χώρες σε ένα repository· ο yearManager είναι η όψη της χώρας της εφαρμογής
+    private static final BudgetRepository repository = BudgetRepository.shared();
+    private static BudgetYearManager yearManager = BudgetYearManager.forCountry("GR");
+    //Έξοδος και τρέχον έτος του CLI (το GUI δίνει δικό του, βλ. runCaptured)
+    private static final CommandRegistry.Context console = new CommandRegistry.Context(System.out, 2020);
+    private static final Map<String, BudgetScenario> scenarios = new ConcurrentHashMap<>();
 
     public static void main(String[] args) throws Exception {
-        System.out.println(BANNER);
+        //Κάθε αλλαγή χρήστη γράφεται αμέσως στο ημερολόγιο του data/all-budgets.json.
+        //Πριν από server, batch ή CLI, ώστε όλα να ξεκινούν από την αποθηκευμένη κατάσταση
+        yearManager.enableJournal(Path.of("data", "all-budgets.json"));
+
+        //--serve <θύρα> [--bind <διεύθυνση>]: μόνο ο HTTP server (BudgetServer), χωρίς CLI.
+        //Χωρίς --bind ακούει μόνο στο loopback
+        String port = argument(args, "--serve");
+        if (port != null) {
+            String bind = argument(args, "--bind");
+            InetSocketAddress address = (bind != null)
+                    ? new InetSocketAddress(bind, Integer.parseInt(port))
+                    : new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+            BudgetServer server = BudgetServer.start(address);
+            System.out.println("HTTP server στο " + server.getAddress()
+                    + " (/budget/{country}/{year}, /compare, /scenario)");
+            return;
+        }
+
+        //--script <αρχείο> ή --script - (εντολές από stdin): batch mode μόνο όταν ζητηθεί ρητά
+        String scriptPath = argument(args, "--script");
+        boolean batch = scriptPath != null;
+        Path script = (batch && !scriptPath.equals("-")) ? Paths.get(scriptPath) : null;
+
+        if (!batch) {
+            System.out.println(BANNER);
+        }
+
+        if (batch) {
+            runBatch(script);
+            return;
+        }
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 
         while (true) {
             System.out.print("> ");
-            String input = reader.readLine().trim().toLowerCase();
-
-            if (input.equals("help")) {
-                System.out.println(BANNER);} else if (input.equals("show summary")) {
-                showSummary();
-            } else if (input.equals("show changes")) {
-                showChanges();} else if (input.startsWith("show ministries")) {
-                //Έλεγχος αν δόθηκε όνομα υπουργείου
-                String[] parts = input.split("\\s+");
-                if (parts.length > 2) {
-                    String filter = parts[2].toUpperCase(); 
-                    showMinistries(filter);
-                } else {
-                    //Χωρίς όνομα - Σύνοψη
-                    showMinistries(null);
+            String line = reader.readLine();
+            if (line == null || !execute(console, line.trim().toLowerCase())) {
+                return;
+            }
+        }
+    }
+
+    //Η τιμή μετά από την επιλογή name (π.χ. --script <αρχείο>) ή null
+    private static String argument(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Μη διαδραστική εκτέλεση (--script αρχείο, ή --script - για είσοδο από stdin).
+     * Οι εντολές μεταφράζονται πρώτα σε πλάνο, οι φορτώσεις ετών/χωρών που θα χρειαστούν
+     * ξεκινούν όλες μαζί, και η έξοδος γράφεται σε buffer που αδειάζει στο τέλος.
+     */
+    private static void runBatch(Path script) throws IOException {
+        List<String> lines = (script != null)
+                ? Files.readAllLines(script, StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in)).lines().toList();
+
+        BatchPlan plan = BatchPlan.compile(lines, COMMANDS, console.year, yearManager.getCountryCode());
+
+        PrintStream buffered = new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16),
+                false, console.out.charset());
+        CommandRegistry.Context ctx = new CommandRegistry.Context(buffered, console.year);
+        //Οι προειδοποιήσεις των Budget/BudgetRepository γράφουν στο System.out·
+        //το ανακατευθύνουμε στο ίδιο buffer ώστε να βγαίνουν στη σειρά των εντολών
+        PrintStream stdout = System.out;
+        System.setOut(buffered);
+        try {
+            plan.prefetch(repository);
+            for (CommandRegistry.Invocation command : plan.getCommands()) {
+                if (!execute(ctx, command)) {
+                    break;
                 }
-            } else if (input.startsWith("increase all")) {
-                handleIncreaseAll(input);
-            } else if (input.startsWith("increase ")) {
-                handleIncreaseCategory(input);
-            } else if (input.startsWith("reduce all")) {
-                handleReduceAll(input);
-            } else if (input.startsWith("reduce ")) {
-                handleReduceCategory(input);
-            } else if (input.startsWith("set year")) {
-                handleSetYear(input);
-            } else if (input.equals("list years")) {
-                listYears();
-            } else if (input.startsWith("save year")) {
-                handleSaveYear(input);
-            } else if (input.startsWith("load year")) {
-                handleLoadYear(input);
-            } else if (input.startsWith("compare scenario ")) {
-                handleCompareScenario(input);
-            } else if (input.startsWith("compare years")) {
-                handleCompareYears(input);
-            } else if (input.startsWith("compare ")) {
-                handleCompare(input);
-            } else if (input.startsWith("compare countries")) {
-                handleCompareCountries(input);
-            } else if (input.equals("save all")) {
-                handleSaveAll();
-            } else if (input.equals("load all")) {
-                handleLoadAll();
-            } else if (input.startsWith("set value")) {
-                handleSetValue(input);
-            } else if (input.startsWith("export csv")) {
-                handleExportCsv(input);
-            } else if (input.startsWith("scenario show ")) {
-                handleScenarioShow(input);
-            } else if (input.startsWith("scenario ")) {
-                handleScenario(input);
-            } else if (input.equals("list scenarios")) {
-                handleListScenarios();
-            } else if (input.equals("exit") || input.equals("quit")) {
-                System.out.println("Αντίο!");
-                return;
-            } else if (input.isEmpty()) {
-            } else {
-                System.out.println("Άγνωστη εντολή. Γράψε 'help'.");
             }
+        } finally {
+            System.setOut(stdout);
+            buffered.flush();
+        }
+    }
+
+    //Όλες οι εντολές του CLI· χρησιμοποιούνται και από το batch mode και το GuiApp
+    private static final CommandRegistry COMMANDS = buildCommands();
+
+    private static CommandRegistry buildCommands() {
+        CommandRegistry r = new CommandRegistry();
+        r.registerExact("help", (ctx, a) -> ctx.out.println(BANNER));
+        r.registerExact("show summary", (ctx, a) -> showSummary(ctx));
+        r.registerExact("show changes", (ctx, a) -> showChanges(ctx));
+        r.register("show ministries", (ctx, a) -> {
+            //Έλεγχος αν δόθηκε όνομα υπουργείου (χωρίς όνομα - Σύνοψη)
+            showMinistries(ctx, a.size() > 2 ? a.get(2).toUpperCase() : null);
+        });
+        r.register("increase all", App::handleIncreaseAll);
+        r.register("increase", App::handleIncreaseCategory);
+        r.register("reduce all", App::handleReduceAll);
+        r.register("reduce", App::handleReduceCategory);
+        r.register("set year", App::handleSetYear);
+        r.registerExact("list years", (ctx, a) -> listYears(ctx));
+        r.register("preload", App::handlePreload);
+        r.register("save year", App::handleSaveYear);
+        r.register("load year", App::handleLoadYear);
+        r.register("compare scenario", App::handleCompareScenario);
+        r.register("compare years", App::handleCompareYears);
+        r.register("compare countries", App::handleCompareCountries);
+        r.register("compare", App::handleCompare);
+        r.registerExact("save all", (ctx, a) -> handleSaveAll(ctx));
+        r.registerExact("load all", (ctx, a) -> handleLoadAll(ctx));
+        r.register("set value", App::handleSetValue);
+        r.register("export csv", App::handleExportCsv);
+        r.register("scenario sweep", App::handleScenarioSweep);
+        r.register("scenario set", App::handleScenarioSet);
+        r.register("scenario show", App::handleScenarioShow);
+        r.register("scenario", App::handleScenario);
+        r.registerExact("list scenarios", (ctx, a) -> handleListScenarios(ctx));
+        r.register("solve balance", App::handleSolveBalance);
+        r.register("simulate", App::handleSimulate);
+        r.registerExact("exit", (ctx, a) -> ctx.out.println("Αντίο!"));
+        r.registerExact("quit", (ctx, a) -> ctx.out.println("Αντίο!"));
+        return r;
+    }
+
+    /**
+     * Εκτελεί μία εντολή (ήδη σε πεζά) στο έτος και την έξοδο του ctx. Επιστρέφει false για exit/quit.
+     */
+    static boolean execute(CommandRegistry.Context ctx, String input) {
+        return execute(ctx, COMMANDS.resolve(input));
+    }
+
+    static boolean execute(CommandRegistry.Context ctx, CommandRegistry.Invocation inv) {
+        if (inv.isKnown()) {
+            inv.run(ctx);
+            String name = inv.command().name();
+            return !name.equals("exit") && !name.equals("quit");
+        }
+        if (inv.args().size() > 0) {
+            ctx.out.println("Άγνωστη εντολή. Γράψε 'help'.");
         }
+        return true;
     }
 
-    private static void handleSetYear(String input) {
+    /**
+     * Εκτελεί μία εντολή για λογαριασμό του GUI στο έτος που έχει επιλεγεί εκεί
+     * και επιστρέφει ό,τι θα τύπωνε στην κονσόλα. Δεν αγγίζει το System.out ούτε
+     * το έτος του CLI, οπότε πολλές εντολές μπορούν να τρέχουν ταυτόχρονα.
+     */
+    static String runCaptured(String line, int year) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CommandRegistry.Context ctx = new CommandRegistry.Context(new PrintStream(out, true, StandardCharsets.UTF_8), year);
+        execute(ctx, line.trim().toLowerCase());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void handleSetYear(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: set year <έτος>");
+                ctx.out.println("Χρήση: set year <έτος>");
                 return;
             }
 
-            int year = Integer.parseInt(parts[2]);
-            currentYear = year;
+            int year = args.intAt(2);
+            ctx.year = year;
 
             yearManager.getOrLoad(year);
 
-            System.out.println("Επιλέχθηκε έτος: " + year);
+            ctx.out.println("Επιλέχθηκε έτος: " + year);
+        } catch (Exception e) {
+            ctx.out.println("Μη έγκυρο έτος.");
+        }
+    }
+
+    private static void handlePreload(CommandRegistry.Context ctx, CommandRegistry.Args args) {
+        try {
+            String[] parts = args.tokens();
+            if (parts.length != 3) {
+                ctx.out.println("Χρήση: preload <Y1> <Y2>");
+                return;
+            }
+
+            int from = args.intAt(1);
+            int to = args.intAt(2);
+            if (from > to) {
+                ctx.out.println("Το πρώτο έτος πρέπει να είναι μικρότερο ή ίσο του δεύτερου.");
+                return;
+            }
+
+            var loaded = yearManager.preloadRange(from, to);
+
+            ctx.out.println("Φορτώθηκαν " + loaded.size() + " έτη (" + from + "-" + to + ").");
+
+        } catch (NumberFormatException e) {
+            ctx.out.println("Μη έγκυρα έτη. Χρήση: preload <Y1> <Y2>");
         } catch (Exception e) {
-            System.out.println("Μη έγκυρο έτος.");
+            ctx.out.println("Σφάλμα στο preload: " + e.getMessage());
         }
     }
 
-    private static void handleSaveYear(String input) {
+    private static void handleSaveYear(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: save year <έτος>");
+                ctx.out.println("Χρήση: save year <έτος>");
                 return;
             }
 
-            int year = Integer.parseInt(parts[2]);
+            int year = args.intAt(2);
 
             Budget b = yearManager.getOrLoad(year);
 
@@ -155,99 +292,139 @@ public class App {
                 Files.createDirectories(dir);
             }
 
-            Path file = dir.resolve("budget-" + year + ".json");
+            //Δυαδική μορφή: κρατάει και τιμές API και αλλαγές χρήστη
+            Path file = dir.resolve("budget-" + year + BudgetStorage.BINARY_SUFFIX);
 
-            BudgetStorage.saveBudget(b, file);
+            BudgetStorage.saveBudgetBinary(b, file);
 
-            System.out.println("Αποθηκεύτηκε ο προϋπολογισμός του " + year + " στο αρχείο: " + file);
+            ctx.out.println("Αποθηκεύτηκε ο προϋπολογισμός του " + year + " στο αρχείο: " + file);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο έτος. Χρήση: save year <έτος>");
+            ctx.out.println("Μη έγκυρο έτος. Χρήση: save year <έτος>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα κατά την αποθήκευση: " + e.getMessage());
+            ctx.out.println("Σφάλμα κατά την αποθήκευση: " + e.getMessage());
         }
     }
 
-    private static void handleLoadYear(String input) {
+    private static void handleLoadYear(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: load year <έτος>");
+                ctx.out.println("Χρήση: load year <έτος>");
                 return;
             }
 
-            int year = Integer.parseInt(parts[2]);
+            int year = args.intAt(2);
 
             Path dir = Paths.get("data");
-            Path file = dir.resolve("budget-" + year + ".json");
-
-            if (!Files.exists(file)) {
-                System.out.println("Δεν βρέθηκε αποθηκευμένος προϋπολογισμός για το έτος " + year +
+            Path file = dir.resolve("budget-" + year + BudgetStorage.BINARY_SUFFIX);
+            Path legacyFile = dir.resolve("budget-" + year + ".json");
+
+            Budget loaded;
+            if (Files.exists(file)) {
+                loaded = BudgetStorage.loadBudgetBinary(file);
+            } else if (Files.exists(legacyFile)) {
+                //Παλιά αρχεία JSON (μόνο σύνολα)
+                file = legacyFile;
+                loaded = BudgetStorage.loadBudget(file);
+            } else {
+                ctx.out.println("Δεν βρέθηκε αποθηκευμένος προϋπολογισμός για το έτος " + year +
                         " (αρχείο: " + file + ")");
                 return;
             }
 
-            Budget loaded = BudgetStorage.loadBudget(file);
-
             yearManager.putBudget(year, loaded);
-            currentYear = year;
+            ctx.year = year;
 
-            System.out.println("Φορτώθηκε ο προϋπολογισμός του " + year + " από το αρχείο: " + file);
+            ctx.out.println("Φορτώθηκε ο προϋπολογισμός του " + year + " από το αρχείο: " + file);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο έτος. Χρήση: load year <έτος>");
+            ctx.out.println("Μη έγκυρο έτος. Χρήση: load year <έτος>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα κατά τη φόρτωση: " + e.getMessage());
+            ctx.out.println("Σφάλμα κατά τη φόρτωση: " + e.getMessage());
         }
     }
 
-    private static void handleCompareCountries(String input) {
+    /**
+     * Εντολή: compare countries <C1> <C2> ... <Cn> <YEAR>
+     * Φορτώνει όλες τις χώρες παράλληλα (από το κοινό repository,
+     * άρα η cache μένει για επόμενες εντολές) και τυπώνει κατατάξεις.
+     */
+    private static void handleCompareCountries(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
-            if (parts.length != 5) {
-                System.out.println("Χρήση: compare countries <C1> <C2> <year>");
+            String[] parts = args.tokens();
+            if (parts.length < 5) {
+                ctx.out.println("Χρήση: compare countries <C1> <C2> ... <Cn> <year>");
                 return;
             }
 
-            String country1 = parts[2].toUpperCase();
-            String country2 = parts[3].toUpperCase();
-            int year = Integer.parseInt(parts[4]);
+            int year = args.intAt(args.size() - 1);
 
-            System.out.println("\nΦόρτωση δεδομένων...");
+            List<String> countries = new ArrayList<>();
+            for (int i = 2; i < parts.length - 1; i++) {
+                String c = parts[i].toUpperCase();
+                if (!countries.contains(c)) countries.add(c);
+            }
 
-            BudgetYearManager mgr1 = new BudgetYearManager(country1);
-            BudgetYearManager mgr2 = new BudgetYearManager(country2);
+            ctx.out.println("\nΦόρτωση δεδομένων για " + countries.size() + " χώρες...");
 
-            Budget b1 = mgr1.getOrLoad(year);
-            Budget b2 = mgr2.getOrLoad(year);
+            //Όλες οι φορτώσεις ξεκινούν μαζί
+            Map<String, Map<Integer, Budget>> loaded = repository.getAll(countries, List.of(year));
 
-            long rev1 = b1.getTotalRevenue();
-            long exp1 = b1.getTotalExpenses();
-            long bal1 = computeBalance(rev1, exp1);
+            int n = countries.size();
+            long[] rev = new long[n];
+            long[] exp = new long[n];
+            long[] bal = new long[n];
+            for (int i = 0; i < n; i++) {
+                Budget b = loaded.get(countries.get(i)).get(year);
+                rev[i] = b.getTotalRevenue();
+                exp[i] = b.getTotalExpenses();
+                bal[i] = computeBalance(rev[i], exp[i]);
+            }
 
-            long rev2 = b2.getTotalRevenue();
-            long exp2 = b2.getTotalExpenses();
-            long bal2 = computeBalance(rev2, exp2);
+            ctx.out.println("\n===== Σύγκριση Χωρών (" + year + ") =====");
+            ctx.out.printf("%-12s %15s %15s %15s%n", "Χώρα", "Έσοδα", "Έξοδα", "Ισοζύγιο");
+            ctx.out.println("---------------------------------------------------------------");
+            for (int i = 0; i < n; i++) {
+                ctx.out.printf("%-12s %,15d €, %,15d €, %,15d €%n", countries.get(i), rev[i], exp[i], bal[i]);
+            }
 
-            System.out.println("\n===== Σύγκριση Χωρών (" + year + ") =====");
-            System.out.printf("%-12s %15s %15s %15s%n", "Χώρα", "Έσοδα", "Έξοδα", "Ισοζύγιο");
-            System.out.println("---------------------------------------------------------------");
-            System.out.printf("%-12s %,15d €, %,15d €, %,15d €%n", country1, rev1, exp1, bal1);
-            System.out.printf("%-12s %,15d €, %,15d €, %,15d €%n", country2, rev2, exp2, bal2);
+            if (n == 2) {
+                String country1 = countries.get(0);
+                String country2 = countries.get(1);
+                ctx.out.println("\nΔιαφορές ( " + country1 + " - " + country2 + " ):");
+                ctx.out.printf("Έσοδα : %,d €%n", (rev[0] - rev[1]));
+                ctx.out.printf("Έξοδα : %,d €%n", (exp[0] - exp[1]));
+                ctx.out.printf("Ισοζύγιο: %,d €%n\n", (bal[0] - bal[1]));
+                return;
+            }
 
-            System.out.println("\nΔιαφορές ( " + country1 + " - " + country2 + " ):");
-            System.out.printf("Έσοδα : %,d €%n", (rev1 - rev2));
-            System.out.printf("Έξοδα : %,d €%n", (exp1 - exp2));
-            System.out.printf("Ισοζύγιο: %,d €%n\n", (bal1 - bal2));
+            printRanking(ctx, "Κατάταξη Εσόδων", countries, rev);
+            printRanking(ctx, "Κατάταξη Εξόδων", countries, exp);
+            printRanking(ctx, "Κατάταξη Ισοζυγίου", countries, bal);
+            ctx.out.println();
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο έτος. Χρήση: compare countries <C1> <C2> <year>");
+            ctx.out.println("Μη έγκυρο έτος. Χρήση: compare countries <C1> <C2> ... <Cn> <year>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο compare: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο compare: " + e.getMessage());
         }
     }
 
-    private static void handleSaveAll() {
+    //Τυπώνει τις χώρες κατά φθίνουσα τιμή
+    private static void printRanking(CommandRegistry.Context ctx, String title, List<String> countries, long[] values) {
+        Integer[] order = new Integer[countries.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (x, y) -> Long.compare(values[y], values[x]));
+
+        ctx.out.println("\n--- " + title + " ---");
+        for (int rank = 0; rank < order.length; rank++) {
+            int i = order[rank];
+            ctx.out.printf("%3d. %-8s %,18d €%n", rank + 1, countries.get(i), values[i]);
+        }
+    }
+
+    private static void handleSaveAll(CommandRegistry.Context ctx) {
         try {
             Path dir = Path.of("data");
             if (!Files.exists(dir)) Files.createDirectories(dir);
@@ -256,27 +433,27 @@ public class App {
 
             yearManager.saveAll(file);
 
-            System.out.println("Αποθηκεύτηκαν όλα τα budgets στο " + file);
+            ctx.out.println("Αποθηκεύτηκαν όλα τα budgets στο " + file);
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο save all: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο save all: " + e.getMessage());
         }
     }
 
-    private static void handleLoadAll() {
+    private static void handleLoadAll(CommandRegistry.Context ctx) {
         try {
             Path file = Path.of("data/all-budgets.json");
 
-            if (!Files.exists(file)) {
-                System.out.println("Δεν υπάρχει αποθηκευμένο αρχείο all-budgets.json");
+            if (!Files.exists(file) && !Files.exists(BudgetJournal.forSnapshot(file))) {
+                ctx.out.println("Δεν υπάρχει αποθηκευμένο αρχείο all-budgets.json");
                 return;
             }
 
             yearManager.loadAll(file);
 
-            System.out.println("Φορτώθηκαν όλα τα budgets από " + file);
+            ctx.out.println("Φορτώθηκαν όλα τα budgets από " + file);
 
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο load all: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο load all: " + e.getMessage());
         }
     }
 
@@ -284,44 +461,44 @@ public class App {
  * Εντολή: set value <CATEGORY> <AMOUNT>
  * Αλλάζει την τιμή μιας κατηγορίας για το τρέχον έτος.
  */
-    private static void handleSetValue(String input) {
+    private static void handleSetValue(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
 
             if (parts.length != 4) {
-                System.out.println("Χρήση: set value <CATEGORY> <AMOUNT>");
+                ctx.out.println("Χρήση: set value <CATEGORY> <AMOUNT>");
                 return;
             }
 
-            if (currentYear < 0) {
-                System.out.println("Πρέπει να ορίσετε έτος με την εντολή: set year <YEAR>");
+            if (ctx.year < 0) {
+                ctx.out.println("Πρέπει να ορίσετε έτος με την εντολή: set year <YEAR>");
                 return;
             }
 
             String category = parts[2].toUpperCase();
-            long amount = Long.parseLong(parts[3]);
+            long amount = args.longAt(3);
 
             if (amount < 0) {
-                System.out.println("Το ποσό δεν μπορεί να είναι αρνητικό!");
+                ctx.out.println("Το ποσό δεν μπορεί να είναι αρνητικό!");
                 return;
             }
 
-            Budget budget = yearManager.getOrLoad(currentYear);
+            Budget budget = yearManager.getOrLoad(ctx.year);
 
             if (!budget.getApiValues().containsKey(category) &&
                 !budget.getUserChanges().containsKey(category)) {
-                System.out.println("Η κατηγορία '" + category + "' δεν υπάρχει στο budget.");
+                ctx.out.println("Η κατηγορία '" + category + "' δεν υπάρχει στο budget.");
                 return;
             }
 
             budget.setUserValue(category, amount);
 
-            System.out.println("Η κατηγορία " + category + " ενημερώθηκε σε: " + amount + " €");
+            ctx.out.println("Η κατηγορία " + category + " ενημερώθηκε σε: " + amount + " €");
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο ποσό. Πρέπει να δώσετε αριθμό.");
+            ctx.out.println("Μη έγκυρο ποσό. Πρέπει να δώσετε αριθμό.");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο set value: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο set value: " + e.getMessage());
         }
     }
     
@@ -329,165 +506,151 @@ public class App {
  * Εντολή: compare <YEAR1> <YEAR2>
  * Συγκρίνει τις τελικές τιμές ανά κατηγορία μεταξύ δύο ετών.
  */
-    private static void handleCompare(String input) {
-        String[] parts = input.split("\\s+");
+    private static void handleCompare(CommandRegistry.Context ctx, CommandRegistry.Args args) {
+        String[] parts = args.tokens();
         if (parts.length < 3) {
-            System.out.println("Σφάλμα: Δώσε δύο έτη (π.χ. compare 2020 2023)");
+            ctx.out.println("Σφάλμα: Δώσε δύο έτη (π.χ. compare 2020 2023)");
             return;
         }
 
         try {
-            int y1 = Integer.parseInt(parts[1]);
-            int y2 = Integer.parseInt(parts[2]);
+            int y1 = args.intAt(1);
+            int y2 = args.intAt(2);
 
-            Budget b1 = yearManager.getOrLoad(y1);
-            Budget b2 = yearManager.getOrLoad(y2);
+            //Τα δύο έτη φορτώνονται παράλληλα
+            var f1 = yearManager.getOrLoadAsync(y1);
+            var f2 = yearManager.getOrLoadAsync(y2);
+            Budget b1 = f1.join();
+            Budget b2 = f2.join();
 
             var results = BudgetComparator.compare(b1, b2);
 
-            System.out.printf("%n=== Σύγκριση %d vs %d (Σύνολα Υπουργείων) ===%n", y1, y2);
-            System.out.printf("%-30s | %-15s | %-15s | %s%n", "ΚΑΤΗΓΟΡΙΑ", y1, y2, "ΔΙΑΦΟΡΑ");
-            System.out.println("-----------------------------------------------------------------------------------------");
+            ctx.out.printf("%n=== Σύγκριση %d vs %d (Σύνολα Υπουργείων) ===%n", y1, y2);
+            ctx.out.printf("%-30s | %-15s | %-15s | %s%n", "ΚΑΤΗΓΟΡΙΑ", y1, y2, "ΔΙΑΦΟΡΑ");
+            ctx.out.println("-----------------------------------------------------------------------------------------");
 
             var sortedKeys = new java.util.TreeSet<>(results.keySet());
+            var names = b2.getCategorySnapshot();
 
             for (String code : sortedKeys) {
                 if (code.startsWith("MIN_") || code.equals("GC.XPN.TOTL.GD.ZS")) {
                     
                     var res = results.get(code);
-                    String displayName = code; 
-                    for (BudgetCategory cat : b2.getCategories()) {
-                        if (cat.getCode().equals(code)) {
-                            displayName = cat.getName();
-                            break;
-                        }
-                    }
-
-                    System.out.printf("%-30s | %-15s | %-15s | %s%n",
+                    String displayName = names.nameOf(code);
+
+                    ctx.out.printf("%-30s | %-15s | %-15s | %s%n",
                             displayName,
                             formatMoney(res.oldValue),
                             formatMoney(res.newValue),
                             (res.diff > 0 ? "+" : "") + formatMoney(res.diff));
                 }
             }
-            System.out.println();
+            ctx.out.println();
 
         } catch (NumberFormatException e) {
-            System.out.println("Σφάλμα: Τα έτη πρέπει να είναι αριθμοί.");
+            ctx.out.println("Σφάλμα: Τα έτη πρέπει να είναι αριθμοί.");
         } catch (Exception e) {
-            System.out.println("Σφάλμα κατά τη σύγκριση: " + e.getMessage());
+            ctx.out.println("Σφάλμα κατά τη σύγκριση: " + e.getMessage());
         }
     }
 
-    private static void handleCompareYears(String input) {
+    private static void handleCompareYears(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 4) {
-                System.out.println("Χρήση: compare years <Y1> <Y2>");
+                ctx.out.println("Χρήση: compare years <Y1> <Y2>");
                 return;
             }
 
-            int y1 = Integer.parseInt(parts[2]);
-            int y2 = Integer.parseInt(parts[3]);
+            int y1 = args.intAt(2);
+            int y2 = args.intAt(3);
 
-            Budget b1 = yearManager.getOrLoad(y1);
-            Budget b2 = yearManager.getOrLoad(y2);
+            //Τα δύο έτη φορτώνονται παράλληλα
+            var f1 = yearManager.getOrLoadAsync(y1);
+            var f2 = yearManager.getOrLoadAsync(y2);
+            Budget b1 = f1.join();
+            Budget b2 = f2.join();
 
-            System.out.printf("\nΣύγκριση ετών %d → %d:\n\n", y1, y2);
+            ctx.out.printf("\nΣύγκριση ετών %d → %d:\n\n", y1, y2);
 
             var results = BudgetComparator.compare(b1, b2);
 
-            System.out.printf("%-18s %12s %12s %12s\n", "Κλειδί", "Από", "Σε", "Διαφορά");
-            System.out.println("-------------------------------------------------------------");
+            ctx.out.printf("%-18s %12s %12s %12s\n", "Κλειδί", "Από", "Σε", "Διαφορά");
+            ctx.out.println("-------------------------------------------------------------");
 
             for (var entry : results.entrySet()) {
                 String key = entry.getKey();
                 var r = entry.getValue();
 
-                System.out.printf("%-18s %,12d %,12d %,12d\n",
+                ctx.out.printf("%-18s %,12d %,12d %,12d\n",
                         key, r.oldValue, r.newValue, r.diff);
         }
 
-            System.out.println();
+            ctx.out.println();
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρα έτη. Χρήση: compare years <Y1> <Y2>");
+            ctx.out.println("Μη έγκυρα έτη. Χρήση: compare years <Y1> <Y2>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο compare years: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο compare years: " + e.getMessage());
         }
     }
 
 
-    private static void handleIncreaseAll(String input) {
+    private static void handleIncreaseAll(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: increase all <percent>");
+                ctx.out.println("Χρήση: increase all <percent>");
                 return;
             }
 
-            if (currentYear < 0) {
-                System.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
+            if (ctx.year < 0) {
+                ctx.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
                 return;
             }
 
-            double percent = Double.parseDouble(parts[2]);
-            Budget b = yearManager.getOrLoad(currentYear);
-
-            var apiValues = b.getApiValues();
-            var changes = b.getUserChanges();
+            double percent = args.doubleAt(2);
+            Budget b = yearManager.getOrLoad(ctx.year);
 
-            for (String key : apiValues.keySet()) {
-                long current = b.getFinalValue(key);
-                long newValue = Math.round(current * (1 + percent / 100.0));
-                if (newValue < 0) newValue = 0;
-                b.setUserValue(key, newValue);
-            }
-
-            for (String key : changes.keySet()) {
-                if (apiValues.containsKey(key)) continue;
-                long current = b.getFinalValue(key);
-                long newValue = Math.round(current * (1 + percent / 100.0));
-                if (newValue < 0) newValue = 0;
-                b.setUserValue(key, newValue);
-            }
+            //Αλλάζουν οι υποκατηγορίες· Υπουργεία και σύνολο ενημερώνονται από την ιεραρχία
+            b.scaleAll(1 + percent / 100.0);
 
-            System.out.printf("Αυξήθηκαν όλες οι κατηγορίες κατά %.2f%%%n", percent);
+            ctx.out.printf("Αυξήθηκαν όλες οι κατηγορίες κατά %.2f%%%n", percent);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο ποσοστό. Χρήση: increase all <percent>");
+            ctx.out.println("Μη έγκυρο ποσοστό. Χρήση: increase all <percent>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο increase all: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο increase all: " + e.getMessage());
         }
     }
 
-    private static void handleIncreaseCategory(String input) {
+    private static void handleIncreaseCategory(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: increase <CATEGORY> <percent>");
+                ctx.out.println("Χρήση: increase <CATEGORY> <percent>");
                 return;
             }
 
             if ("all".equalsIgnoreCase(parts[1])) {
-                handleIncreaseAll(input);
+                handleIncreaseAll(ctx, args);
                 return;
             }
 
-            if (currentYear < 0) {
-                System.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
+            if (ctx.year < 0) {
+                ctx.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
                 return;
             }
 
             String category = parts[1].toUpperCase();
-            double percent = Double.parseDouble(parts[2]);
+            double percent = args.doubleAt(2);
 
-            Budget b = yearManager.getOrLoad(currentYear);
+            Budget b = yearManager.getOrLoad(ctx.year);
 
             if (!b.getApiValues().containsKey(category) &&
                 !b.getUserChanges().containsKey(category)) {
-                System.out.println("Η κατηγορία '" + category + "' δεν υπάρχει στο budget.");
-                System.out.println("Δες 'show categories' και χρησιμοποίησε τα ονόματα (π.χ. HOSPITALS, PHARMA, STAFF).");
+                ctx.out.println("Η κατηγορία '" + category + "' δεν υπάρχει στο budget.");
+                ctx.out.println("Δες 'show categories' και χρησιμοποίησε τα ονόματα (π.χ. HOSPITALS, PHARMA, STAFF).");
                 return;
             }
 
@@ -497,98 +660,83 @@ public class App {
 
             b.setUserValue(category, newValue);
 
-            System.out.printf("Η κατηγορία %s αυξήθηκε κατά %.2f%% (%,d → %,d)%n",
+            ctx.out.printf("Η κατηγορία %s αυξήθηκε κατά %.2f%% (%,d → %,d)%n",
                     category, percent, current, newValue);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο ποσοστό. Χρήση: increase <CATEGORY> <percent>");
+            ctx.out.println("Μη έγκυρο ποσοστό. Χρήση: increase <CATEGORY> <percent>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο increase <CATEGORY>: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο increase <CATEGORY>: " + e.getMessage());
         }
     }
 
-    private static void handleReduceAll(String input) {
+    private static void handleReduceAll(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: reduce all <percent>");
+                ctx.out.println("Χρήση: reduce all <percent>");
                 return;
             }
  
-            if (currentYear < 0) {
-                System.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
+            if (ctx.year < 0) {
+                ctx.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
                 return;
             }
 
-            double percent = Double.parseDouble(parts[2]);
+            double percent = args.doubleAt(2);
             if (percent < 0) {
-                System.out.println("Το ποσοστό πρέπει να είναι μη αρνητικό.");
+                ctx.out.println("Το ποσοστό πρέπει να είναι μη αρνητικό.");
                 return;
             }
 
-            Budget b = yearManager.getOrLoad(currentYear);
-
-            var apiValues = b.getApiValues();
-            var changes = b.getUserChanges();
+            Budget b = yearManager.getOrLoad(ctx.year);
 
             double factor = 1 - percent / 100.0;
             if (factor < 0) factor = 0;
 
-            for (String key : apiValues.keySet()) {
-                long current = b.getFinalValue(key);
-                long newValue = Math.round(current * factor);
-                if (newValue < 0) newValue = 0;
-                b.setUserValue(key, newValue);
-            }
+            //Αλλάζουν οι υποκατηγορίες· Υπουργεία και σύνολο ενημερώνονται από την ιεραρχία
+            b.scaleAll(factor);
 
-            for (String key : changes.keySet()) {
-                if (apiValues.containsKey(key)) continue;
-                long current = b.getFinalValue(key);
-                long newValue = Math.round(current * factor);
-                if (newValue < 0) newValue = 0;
-                b.setUserValue(key, newValue);
-            }
-
-            System.out.printf("Μειώθηκαν όλες οι κατηγορίες κατά %.2f%%%n", percent);
+            ctx.out.printf("Μειώθηκαν όλες οι κατηγορίες κατά %.2f%%%n", percent);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο ποσοστό. Χρήση: reduce all <percent>");
+            ctx.out.println("Μη έγκυρο ποσοστό. Χρήση: reduce all <percent>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο reduce all: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο reduce all: " + e.getMessage());
         }
     }
 
-    private static void handleReduceCategory(String input) {
+    private static void handleReduceCategory(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: reduce <CATEGORY> <percent>");
+                ctx.out.println("Χρήση: reduce <CATEGORY> <percent>");
                 return;
             }
 
             if ("all".equalsIgnoreCase(parts[1])) {
-                handleReduceAll(input);
+                handleReduceAll(ctx, args);
                return;
             }
 
-            if (currentYear < 0) {
-                System.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
+            if (ctx.year < 0) {
+                ctx.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
                 return;
             }
 
             String category = parts[1].toUpperCase();
-            double percent = Double.parseDouble(parts[2]);
+            double percent = args.doubleAt(2);
             if (percent < 0) {
-                System.out.println("Το ποσοστό πρέπει να είναι μη αρνητικό.");
+                ctx.out.println("Το ποσοστό πρέπει να είναι μη αρνητικό.");
                 return;
             }
 
-            Budget b = yearManager.getOrLoad(currentYear);
+            Budget b = yearManager.getOrLoad(ctx.year);
 
             if (!b.getApiValues().containsKey(category) &&
                 !b.getUserChanges().containsKey(category)) {
-                System.out.println("Η κατηγορία '" + category + "' δεν υπάρχει στο budget.");
-                System.out.println("Δες 'show categories' και χρησιμοποίησε τα ονόματα (π.χ. HOSPITALS, PHARMA, STAFF).");
+                ctx.out.println("Η κατηγορία '" + category + "' δεν υπάρχει στο budget.");
+                ctx.out.println("Δες 'show categories' και χρησιμοποίησε τα ονόματα (π.χ. HOSPITALS, PHARMA, STAFF).");
                 return;
             }
 
@@ -601,86 +749,318 @@ public class App {
 
             b.setUserValue(category, newValue);
 
-            System.out.printf("Η κατηγορία %s μειώθηκε κατά %.2f%% (%,d → %,d)%n",
+            ctx.out.printf("Η κατηγορία %s μειώθηκε κατά %.2f%% (%,d → %,d)%n",
                     category, percent, current, newValue);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο ποσοστό. Χρήση: reduce <CATEGORY> <percent>");
+            ctx.out.println("Μη έγκυρο ποσοστό. Χρήση: reduce <CATEGORY> <percent>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο reduce <CATEGORY>: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο reduce <CATEGORY>: " + e.getMessage());
         }
     }
 
-    private static void handleExportCsv(String input) {
+    private static void handleExportCsv(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: export csv <YEAR>");
+                ctx.out.println("Χρήση: export csv <YEAR>");
                 return;
             }
 
-            int year = Integer.parseInt(parts[2]);
+            int year = args.intAt(2);
             Budget b = yearManager.getOrLoad(year);
 
             java.nio.file.Path file = java.nio.file.Path.of("data", "export-" + year + ".csv");
             CSVExporter.exportCategories(b, file);
 
-            System.out.println("Έγινε export σε CSV: " + file);
+            ctx.out.println("Έγινε export σε CSV: " + file);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο έτος. Χρήση: export csv <YEAR>");
+            ctx.out.println("Μη έγκυρο έτος. Χρήση: export csv <YEAR>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο export csv: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο export csv: " + e.getMessage());
         }
     }
 
-    private static void handleScenario(String input) {
+    private static void handleScenario(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
+            if (parts.length == 4 && parts[2].equals("from")) {
+                handleScenarioDerive(ctx, parts[1], parts[3]);
+                return;
+            }
             if (parts.length != 3) {
-                System.out.println("Χρήση: scenario <NAME> <percent>");
+                ctx.out.println("Χρήση: scenario <NAME> <percent>");
                 return;
             }
 
-            if (currentYear < 0) {
-                System.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
+            if (ctx.year < 0) {
+                ctx.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
                 return;
             }
 
             String name = parts[1];
-            double percent = Double.parseDouble(parts[2]);
+            double percent = args.doubleAt(2);
 
-            Budget base = yearManager.getOrLoad(currentYear);
+            Budget base = yearManager.getOrLoad(ctx.year);
             BudgetScenario sc = new BudgetScenario(name, base, percent);
 
             scenarios.put(name, sc);
 
-            System.out.printf("Δημιουργήθηκε σενάριο '%s' με μεταβολή %.2f%%%n", name, percent);
+            ctx.out.printf("Δημιουργήθηκε σενάριο '%s' με μεταβολή %.2f%%%n", name, percent);
+
+        } catch (NumberFormatException e) {
+            ctx.out.println("Μη έγκυρο ποσοστό. Χρήση: scenario <NAME> <percent>");
+        } catch (Exception e) {
+            ctx.out.println("Σφάλμα στο scenario: " + e.getMessage());
+        }
+    }
+
+    private static void handleSolveBalance(CommandRegistry.Context ctx, CommandRegistry.Args args) {
+        try {
+            String[] parts = args.tokens();
+            if (parts.length < 3) {
+                ctx.out.println("Χρήση: solve balance <στόχος> [CAT=<max%>[:<βάρος>] ...] [apply]");
+                ctx.out.println("  Χωρίς κατηγορίες: όλα τα Υπουργεία, έως "
+                        + BalanceSolver.DEFAULT_MAX_CUT + "% το καθένα, ίδιο βάρος.");
+                ctx.out.println("  Μεγαλύτερο βάρος = η κατηγορία προστατεύεται περισσότερο.");
+                return;
+            }
+
+            long target = args.longAt(2);
+            boolean apply = false;
+            List<BalanceSolver.Bound> bounds = new ArrayList<>();
+            for (int i = 3; i < parts.length; i++) {
+                if (parts[i].equals("apply")) {
+                    apply = true;
+                } else {
+                    bounds.add(BalanceSolver.Bound.parse(parts[i]));
+                }
+            }
+            if (bounds.isEmpty()) {
+                bounds = BalanceSolver.defaultBounds();
+            }
+
+            Budget b = yearManager.getOrLoad(ctx.year);
+
+            long start = System.nanoTime();
+            var solution = BalanceSolver.solve(b, target, bounds);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+
+            ctx.out.printf("%nΣτόχος ισοζυγίου %s για το έτος %d (%d ms)%n", formatMoney(target), ctx.year, ms);
+            ctx.out.println("--------------------------------------------------------------------------");
+            ctx.out.printf("%-18s %18s %18s %12s%n", "Κατηγορία", "Τρέχον", "Νέο", "Περικοπή");
+            ctx.out.println("--------------------------------------------------------------------------");
+            for (var a : solution.adjustments()) {
+                ctx.out.printf("%-18s %18s %18s %11.2f%%%n",
+                        a.code(), formatMoney(a.before()), formatMoney(a.after()), a.cutPercent());
+            }
+            ctx.out.println("--------------------------------------------------------------------------");
+            ctx.out.println("  Ισοζύγιο πριν : " + formatMoney(solution.balanceBefore()));
+            ctx.out.println("  Ισοζύγιο μετά : " + formatMoney(solution.balanceAfter()));
+
+            if (!solution.reached()) {
+                ctx.out.println("  Ο στόχος δεν επιτυγχάνεται μέσα στα όρια (αυτή είναι η καλύτερη προσέγγιση).");
+            } else if (apply) {
+                BalanceSolver.apply(b, solution);
+                ctx.out.println("  Οι αλλαγές εφαρμόστηκαν.");
+            } else {
+                ctx.out.println("  (Πρόσθεσε 'apply' για να εφαρμοστούν)");
+            }
+            ctx.out.println();
+
+        } catch (NumberFormatException e) {
+            ctx.out.println("Μη έγκυρος αριθμός. Χρήση: solve balance <στόχος> [CAT=<max%>[:<βάρος>] ...] [apply]");
+        } catch (Exception e) {
+            ctx.out.println("Σφάλμα στο solve balance: " + e.getMessage());
+        }
+    }
+
+    private static void handleSimulate(CommandRegistry.Context ctx, CommandRegistry.Args args) {
+        try {
+            String[] parts = args.tokens();
+            if (parts.length < 2) {
+                ctx.out.println("Χρήση: simulate <N> [CAT=κατανομή ...]");
+                ctx.out.println("  κατανομές: normal:<μέσος>:<σ>, uniform:<min>:<max>, fixed:<x> (σε %)");
+                ctx.out.println("  CAT: κωδικός (π.χ. min_health), all (όλα τα Υπουργεία) ή revenue");
+                return;
+            }
+
+            int runs = args.intAt(1);
+
+            Map<String, ScenarioSimulator.Shock> shocks = new HashMap<>();
+            for (int i = 2; i < parts.length; i++) {
+                String[] kv = parts[i].split("=", 2);
+                if (kv.length != 2) {
+                    ctx.out.println("Μη έγκυρο όρισμα: " + parts[i] + " (αναμένεται CAT=κατανομή)");
+                    return;
+                }
+                shocks.put(kv[0].toUpperCase(), ScenarioSimulator.Shock.parse(kv[1]));
+            }
+            if (shocks.isEmpty()) {
+                //Προεπιλογή: ±5% στα Υπουργεία, ±3% στα έσοδα
+                shocks.put(ScenarioSimulator.ALL, ScenarioSimulator.Shock.parse("normal:0:5"));
+                shocks.put(ScenarioSimulator.REVENUE, ScenarioSimulator.Shock.parse("normal:0:3"));
+            }
+
+            Budget base = yearManager.getOrLoad(ctx.year);
+
+            long start = System.nanoTime();
+            var result = ScenarioSimulator.simulate(base, shocks, runs, System.nanoTime());
+            long ms = (System.nanoTime() - start) / 1_000_000;
+
+            ctx.out.printf("%nMonte Carlo: %,d εκτελέσεις για το έτος %d (%d ms)%n", result.runs(), ctx.year, ms);
+            ctx.out.println("--------------------------------------------------------------------------");
+            ctx.out.printf("%-28s %15s %15s %15s%n", "", "P5", "P50", "P95");
+            ctx.out.println("--------------------------------------------------------------------------");
+            printBand(ctx, "ΙΣΟΖΥΓΙΟ", result.balance());
+            printBand(ctx, "ΣΥΝΟΛΟ ΔΑΠΑΝΩΝ", result.expenses());
+            ctx.out.println("--------------------------------------------------------------------------");
+            for (var e : result.ministries().entrySet()) {
+                printBand(ctx, Budget.CATEGORY_MAP.get(e.getKey()), e.getValue());
+            }
+            ctx.out.println();
+
+        } catch (NumberFormatException e) {
+            ctx.out.println("Μη έγκυρος αριθμός. Χρήση: simulate <N> [CAT=κατανομή ...]");
+        } catch (Exception e) {
+            ctx.out.println("Σφάλμα στο simulate: " + e.getMessage());
+        }
+    }
+
+    private static void printBand(CommandRegistry.Context ctx, String label, ScenarioSimulator.Band band) {
+        ctx.out.printf("%-28s %15s %15s %15s%n", label,
+                formatMoney(Math.round(band.p5())),
+                formatMoney(Math.round(band.p50())),
+                formatMoney(Math.round(band.p95())));
+    }
+
+    private static void handleScenarioDerive(CommandRegistry.Context ctx, String name, String from) {
+        BudgetScenario parent = scenarios.get(from);
+        if (parent == null) {
+            ctx.out.println("Δεν βρέθηκε σενάριο με όνομα: " + from);
+            return;
+        }
+
+        scenarios.put(name, parent.derive(name));
+        ctx.out.printf("Δημιουργήθηκε σενάριο '%s' από το '%s'%n", name, from);
+    }
+
+    private static void handleScenarioSet(CommandRegistry.Context ctx, CommandRegistry.Args args) {
+        try {
+            String[] parts = args.tokens();
+            if (parts.length != 5) {
+                ctx.out.println("Χρήση: scenario set <NAME> <CAT> <ποσό>");
+                return;
+            }
+
+            BudgetScenario sc = scenarios.get(parts[2]);
+            if (sc == null) {
+                ctx.out.println("Δεν βρέθηκε σενάριο με όνομα: " + parts[2]);
+                return;
+            }
+
+            String code = parts[3].toUpperCase();
+            String categoryName = Budget.CATEGORY_MAP.get(code);
+            if (categoryName == null) {
+                ctx.out.println("Άγνωστη κατηγορία: " + code);
+                return;
+            }
+
+            long value = args.longAt(4);
+            sc.setCategoryValue(categoryName, value);
+            ctx.out.printf("Σενάριο '%s': %s = %,d%n", sc.getName(), code, value);
 
         } catch (NumberFormatException e) {
-            System.out.println("Μη έγκυρο ποσοστό.");
+            ctx.out.println("Μη έγκυρο ποσό. Χρήση: scenario set <NAME> <CAT> <ποσό>");
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο scenario: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο scenario set: " + e.getMessage());
         }
     }
 
-    private static void handleListScenarios() {
+    private static void handleScenarioSweep(CommandRegistry.Context ctx, CommandRegistry.Args args) {
+        try {
+            String[] parts = args.tokens();
+            if (parts.length < 5) {
+                ctx.out.println("Χρήση: scenario sweep <στόχος ισοζυγίου> <K> <CAT>=<από>:<έως>:<βήμα> ...");
+                ctx.out.println("  π.χ. scenario sweep 0 10 min_health=-10:0:1 min_labor=-15:5:2.5");
+                return;
+            }
+
+            long target = args.longAt(2);
+            int k = args.intAt(3);
+
+            List<ScenarioSweep.Axis> axes = new ArrayList<>();
+            for (int i = 4; i < parts.length; i++) {
+                axes.add(ScenarioSweep.Axis.parse(parts[i]));
+            }
+
+            Budget base = yearManager.getOrLoad(ctx.year);
+
+            long size = ScenarioSweep.gridSize(axes);
+            long start = System.nanoTime();
+            //Όσο τρέχει το sweep τυπώνεται κάθε νέο καλύτερο σημείο
+            double[][] best = { null };
+            var points = ScenarioSweep.run(base, axes, target, k, top -> {
+                ScenarioSweep.Point p = top.get(0);
+                if (!Arrays.equals(p.percents(), best[0])) {
+                    best[0] = p.percents();
+                    ctx.out.printf("  καλύτερο μέχρι τώρα: %s %s (%d ms)%n", formatMoney(p.balance()),
+                            Arrays.toString(p.percents()), (System.nanoTime() - start) / 1_000_000);
+                }
+            });
+            long ms = (System.nanoTime() - start) / 1_000_000;
+
+            ctx.out.printf("%nΠλέγμα %,d σημείων για το έτος %d (%d ms)%n", size, ctx.year, ms);
+            if (points.isEmpty()) {
+                ctx.out.println("Κανένας συνδυασμός δεν πετυχαίνει ισοζύγιο >= " + formatMoney(target) + "\n");
+                return;
+            }
+
+            ctx.out.println("--------------------------------------------------------------------------");
+            ctx.out.printf("%-4s %18s", "#", "Ισοζύγιο");
+            for (ScenarioSweep.Axis a : axes) {
+                ctx.out.printf(" %15s", a.code());
+            }
+            ctx.out.println();
+            ctx.out.println("--------------------------------------------------------------------------");
+
+            int rank = 1;
+            for (ScenarioSweep.Point p : points) {
+                ctx.out.printf("%-4d %18s", rank++, formatMoney(p.balance()));
+                for (double pct : p.percents()) {
+                    ctx.out.printf(" %14.2f%%", pct);
+                }
+                ctx.out.println();
+            }
+            ctx.out.println();
+
+        } catch (NumberFormatException e) {
+            ctx.out.println("Μη έγκυρος αριθμός. Χρήση: scenario sweep <στόχος ισοζυγίου> <K> <CAT>=<από>:<έως>:<βήμα> ...");
+        } catch (ArithmeticException e) {
+            ctx.out.println("Το πλέγμα είναι υπερβολικά μεγάλο.");
+        } catch (Exception e) {
+            ctx.out.println("Σφάλμα στο scenario sweep: " + e.getMessage());
+        }
+    }
+
+    private static void handleListScenarios(CommandRegistry.Context ctx) {
         if (scenarios.isEmpty()) {
-            System.out.println("Δεν υπάρχουν σενάρια.");
+            ctx.out.println("Δεν υπάρχουν σενάρια.");
             return;
         }
 
-        System.out.println("Διαθέσιμα σενάρια:");
+        ctx.out.println("Διαθέσιμα σενάρια:");
         for (String name : scenarios.keySet()) {
-            System.out.println(" - " + name);
+            ctx.out.println(" - " + name);
         }
     }
 
-    private static void handleScenarioShow(String input) {
+    private static void handleScenarioShow(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: scenario show <NAME>");
+                ctx.out.println("Χρήση: scenario show <NAME>");
                 return;
             }
 
@@ -688,35 +1068,35 @@ public class App {
             BudgetScenario sc = scenarios.get(name);
 
             if (sc == null) {
-                System.out.println("Δεν βρέθηκε σενάριο με όνομα: " + name);
-                System.out.println("Δες: list scenarios");
+                ctx.out.println("Δεν βρέθηκε σενάριο με όνομα: " + name);
+                ctx.out.println("Δες: list scenarios");
                 return;
             }
 
-            System.out.println("\nΣενάριο: " + sc.getName());
-            System.out.println("-------------------------------------------");
-            System.out.printf("%-15s %15s%n", "Κατηγορία", "Τιμή");
-            System.out.println("-------------------------------------------");
+            ctx.out.println("\nΣενάριο: " + sc.getName());
+            ctx.out.println("-------------------------------------------");
+            ctx.out.printf("%-15s %15s%n", "Κατηγορία", "Τιμή");
+            ctx.out.println("-------------------------------------------");
 
             var values = sc.getAllCategoryValues();
             var keys = new java.util.TreeSet<>(values.keySet());
 
             for (String k : keys) {
-                System.out.printf("%-15s %,15d%n", k, values.get(k));
+                ctx.out.printf("%-15s %,15d%n", k, values.get(k));
             }
 
-            System.out.println();
+            ctx.out.println();
 
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο scenario show: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο scenario show: " + e.getMessage());
         }
     }
 
-    private static void handleCompareScenario(String input) {
+    private static void handleCompareScenario(CommandRegistry.Context ctx, CommandRegistry.Args args) {
         try {
-            String[] parts = input.split("\\s+");
+            String[] parts = args.tokens();
             if (parts.length != 3) {
-                System.out.println("Χρήση: compare scenario <NAME>");
+                ctx.out.println("Χρήση: compare scenario <NAME>");
                 return;
             }
 
@@ -724,21 +1104,21 @@ public class App {
             BudgetScenario sc = scenarios.get(name);
 
             if (sc == null) {
-                System.out.println("Δεν βρέθηκε σενάριο: " + name);
+                ctx.out.println("Δεν βρέθηκε σενάριο: " + name);
                 return;
             }
 
-            if (currentYear < 0) {
-                System.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
+            if (ctx.year < 0) {
+                ctx.out.println("Πρώτα ορίστε έτος με: set year <YEAR>");
                 return;
             }
-            Budget base = yearManager.getOrLoad(currentYear);
+            Budget base = yearManager.getOrLoad(ctx.year);
 
-            System.out.println("\nΣύγκριση σεναρίου '" + name + "' με baseline");
-            System.out.println("-------------------------------------------------------------");
-            System.out.printf("%-15s %15s %15s %15s%n",
+            ctx.out.println("\nΣύγκριση σεναρίου '" + name + "' με baseline");
+            ctx.out.println("-------------------------------------------------------------");
+            ctx.out.printf("%-15s %15s %15s %15s%n",
                     "Κατηγορία", "Baseline", "Scenario", "Διαφορά");
-            System.out.println("-------------------------------------------------------------");
+            ctx.out.println("-------------------------------------------------------------");
 
             var scenarioValues = sc.getAllCategoryValues();
 
@@ -748,16 +1128,16 @@ public class App {
                 long scenario = scenarioValues.getOrDefault(cat, baseline);
                 long diff = scenario - baseline;
 
-                System.out.printf(
+                ctx.out.printf(
                     "%-15s %,15d %,15d %,15d%n",
                     cat, baseline, scenario, diff
             );
         }
 
-            System.out.println();
+            ctx.out.println();
 
         } catch (Exception e) {
-            System.out.println("Σφάλμα στο compare scenario: " + e.getMessage());
+            ctx.out.println("Σφάλμα στο compare scenario: " + e.getMessage());
         }
     } 
     public static long computeBalance(long revenues, long expenses) {
@@ -769,43 +1149,43 @@ public class App {
         return revenues - expenses;
     }
 
-    private static void showSummary() {
-        Budget b = yearManager.getOrLoad(currentYear);
+    private static void showSummary(CommandRegistry.Context ctx) {
+        Budget b = yearManager.getOrLoad(ctx.year);
 
         long revenues = b.getTotalRevenue();
-        long expenses = b.getTotalExpenses();
+        long expenses = b.getCurrentExpenses();
         long balance = computeBalance(revenues, expenses);
 
-        System.out.println("\n— Σύνοψη προϋπολογισμού (" + currentYear + ") —");
-        System.out.println("  Έσοδα : " + formatMoney(revenues));
-        System.out.println("  Έξοδα : " + formatMoney(expenses));
-        System.out.println("  Ισοζύγιο : " + formatMoney(balance));
+        ctx.out.println("\n— Σύνοψη προϋπολογισμού (" + ctx.year + ") —");
+        ctx.out.println("  Έσοδα : " + formatMoney(revenues));
+        ctx.out.println("  Έξοδα : " + formatMoney(expenses));
+        ctx.out.println("  Ισοζύγιο : " + formatMoney(balance));
 
         if (balance < 0) {
-            System.out.println("  (Έλλειμμα)");
+            ctx.out.println("  (Έλλειμμα)");
         } else if (balance > 0) {
-            System.out.println("  (Πλεόνασμα)");
+            ctx.out.println("  (Πλεόνασμα)");
         } else {
-            System.out.println("  (Ισοσκελισμένο)");
+            ctx.out.println("  (Ισοσκελισμένο)");
         }
-        System.out.println();
+        ctx.out.println();
     }
 
-    private static void showChanges() {
-        if (currentYear < 0) {
-            System.out.println("Πρώτα πρέπει να ορίσετε έτος με: set year <YEAR>");
+    private static void showChanges(CommandRegistry.Context ctx) {
+        if (ctx.year < 0) {
+            ctx.out.println("Πρώτα πρέπει να ορίσετε έτος με: set year <YEAR>");
             return;
         }
 
-        Budget b = yearManager.getOrLoad(currentYear);
+        Budget b = yearManager.getOrLoad(ctx.year);
 
         var changes = b.getUserChanges();
         if (changes == null || changes.isEmpty()) {
-            System.out.println("\nΔεν υπάρχουν αλλαγές χρήστη για το έτος " + currentYear + ".\n");
+            ctx.out.println("\nΔεν υπάρχουν αλλαγές χρήστη για το έτος " + ctx.year + ".\n");
             return;
         }
 
-        System.out.println("\nΑλλαγές χρήστη για έτος " + currentYear + ":");
+        ctx.out.println("\nΑλλαγές χρήστη για έτος " + ctx.year + ":");
 
         for (var entry : changes.entrySet()) {
             String category = entry.getKey();
@@ -813,30 +1193,29 @@ public class App {
             long original = b.getApiValues().getOrDefault(category, 0L);
             long diff = newValue - original;
 
-            System.out.printf(" - %-12s αρχικό=%,d  νέο=%,d  διαφορά=%,d%n",
+            ctx.out.printf(" - %-12s αρχικό=%,d  νέο=%,d  διαφορά=%,d%n",
                     category, original, newValue, diff);
         }
 
-        System.out.println();
+        ctx.out.println();
     }
 
-    private static void showMinistries(String filter) {
-        Budget b = yearManager.getOrLoad(currentYear);
+    private static void showMinistries(CommandRegistry.Context ctx, String filter) {
+        Budget b = yearManager.getOrLoad(ctx.year);
         var categories = b.getCategories();
 
         if (filter == null) {
-            System.out.println("\n=== Συνοπτικός Προϋπολογισμός ανά Υπουργείο (" + currentYear + ") ===");
+            ctx.out.println("\n=== Συνοπτικός Προϋπολογισμός ανά Υπουργείο (" + ctx.year + ") ===");
         } else {
-            System.out.println("\n=== Αναλυτική Προβολή: '" + filter + "' (" + currentYear + ") ===");
+            ctx.out.println("\n=== Αναλυτική Προβολή: '" + filter + "' (" + ctx.year + ") ===");
         }
 
         if (categories == null || categories.isEmpty()) {
-            System.out.println("  (Δεν υπάρχουν διαθέσιμα δεδομένα)");
+            ctx.out.println("  (Δεν υπάρχουν διαθέσιμα δεδομένα)");
             return;
         }
 
         boolean foundAny = false;
-        long totalAllocated = 0;
 
         var sortedCats = categories.stream()
                 .sorted((c1, c2) -> c1.getName().compareTo(c2.getName()))
@@ -846,11 +1225,7 @@ public class App {
             if (filter == null) {
 
                 if (!c.getName().startsWith(" -")) {
-                    System.out.printf("  %-30s : %s%n", c.getName(), formatMoney(c.getAmount()));
-                    
-                    if (c.getCode().startsWith("MIN_")) {
-                        totalAllocated += c.getAmount();
-                    }
+                    ctx.out.printf("  %-30s : %s%n", c.getName(), formatMoney(c.getAmount()));
                     foundAny = true;
                 }
             } else {
@@ -858,37 +1233,37 @@ public class App {
                                || c.getName().toUpperCase().contains(filter);
 
                 if (matches) {
-                    System.out.printf("  %-30s : %s%n", c.getName(), formatMoney(c.getAmount()));
+                    ctx.out.printf("  %-30s : %s%n", c.getName(), formatMoney(c.getAmount()));
                     foundAny = true;
                 }
             }
         }
 
         if (filter == null && foundAny) {
-            System.out.println("----------------------------------------------------------");
-            System.out.println("  ΣΥΝΟΛΟ ΕΠΙΜΕΡΟΥΣ ΥΠΟΥΡΓΕΙΩΝ    : " + formatMoney(totalAllocated));
+            ctx.out.println("----------------------------------------------------------");
+            ctx.out.println("  ΣΥΝΟΛΟ ΕΠΙΜΕΡΟΥΣ ΥΠΟΥΡΓΕΙΩΝ    : " + formatMoney(b.getMinistriesTotal()));
         } else if (!foundAny) {
-            System.out.println("  Δεν βρέθηκαν εγγραφές.");
+            ctx.out.println("  Δεν βρέθηκαν εγγραφές.");
         }
-        System.out.println();
+        ctx.out.println();
     }
 
-    private static void listYears() {
+    private static void listYears(CommandRegistry.Context ctx) {
         var years = yearManager.getLoadedYears();
 
-        System.out.println("\nΦορτωμένα έτη:");
+        ctx.out.println("\nΦορτωμένα έτη:");
 
         if (years == null || years.isEmpty()) {
-            System.out.println("  (Δεν έχει φορτωθεί ακόμη κανένα έτος)");
-            System.out.println();
+            ctx.out.println("  (Δεν έχει φορτωθεί ακόμη κανένα έτος)");
+            ctx.out.println();
             return;
         }
 
         for (Integer y : years) {
-            String marker = (y == currentYear) ? "  * " : "    ";
-            System.out.println(marker + y);
+            String marker = (y == ctx.year) ? "  * " : "    ";
+            ctx.out.println(marker + y);
         }
-        System.out.println();
+        ctx.out.println();
     }
 
     //Μορφοποιηση ποσων - αποτελεσματων
@@ -0,0 +1,222 @@
+package gr.aueb.budgetpm;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Αναζήτηση περικοπών που φέρνουν το ισοζύγιο (App.computeBalance) σε έναν στόχο.
+ *
+ * Κάθε κατηγορία έχει μέγιστη περικοπή (%) και βάρος προτεραιότητας (μεγαλύτερο βάρος =
+ * "ακριβότερη" περικοπή). Ζητείται η ελάχιστη μεταβολή Σ w * (%)^2 με εξοικονόμηση
+ * τουλάχιστον όση λείπει. Το κόστος είναι κυρτό και χωρίζεται ανά κατηγορία, οπότε ο
+ * άπληστος αλγόριθμος (κάθε φορά ένα μικρό βήμα εκεί όπου κοστίζει λιγότερο ανά €)
+ * φτάνει στη βέλτιστη κατανομή. Κάθε βήμα αλλάζει μόνο μία κατηγορία, άρα ο
+ * {@link Evaluator} ενημερώνει μόνο αυτήν και το ισοζύγιο σε O(1).
+ */
+public final class BalanceSolver {
+
+    //Βήμα της αναζήτησης σε ποσοστιαίες μονάδες
+    private static final double STEP = 0.1;
+
+    //Προεπιλογές για όσες κατηγορίες δεν δίνονται ρητά
+    public static final double DEFAULT_MAX_CUT = 20.0;
+    public static final double DEFAULT_WEIGHT = 1.0;
+
+    private BalanceSolver() {}
+
+    /** Όρια μιας κατηγορίας: μέγιστη περικοπή σε % και βάρος. */
+    public record Bound(String code, double maxCutPercent, double weight) {
+
+        public Bound {
+            if (CategoryIndex.idOf(code) < 0) {
+                throw new IllegalArgumentException("Άγνωστη κατηγορία: " + code);
+            }
+            if (maxCutPercent < 0 || maxCutPercent > 100 || !(weight > 0)) {
+                throw new IllegalArgumentException("Μη έγκυρα όρια για " + code);
+            }
+        }
+
+        //Από κείμενο της μορφής <CAT>=<max%>[:<βάρος>]
+        public static Bound parse(String spec) {
+            String[] kv = spec.split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Μη έγκυρο όριο: " + spec + " (CAT=<max%>[:<βάρος>])");
+            }
+            String[] v = kv[1].split(":");
+            try {
+                double max = Double.parseDouble(v[0]);
+                double weight = (v.length > 1) ? Double.parseDouble(v[1]) : DEFAULT_WEIGHT;
+                return new Bound(kv[0].toUpperCase(), max, weight);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Μη έγκυρο όριο: " + spec);
+            }
+        }
+    }
+
+    /** Μία προτεινόμενη αλλαγή. */
+    public record Adjustment(String code, long before, long after, double cutPercent) {}
+
+    /** Αποτέλεσμα: αν επιτεύχθηκε ο στόχος, ισοζύγιο πριν/μετά και οι αλλαγές. */
+    public record Solution(boolean reached, long balanceBefore, long balanceAfter, List<Adjustment> adjustments) {}
+
+    /** Όλα τα Υπουργεία (και οι Λοιπές δαπάνες) με τα προεπιλεγμένα όρια. */
+    public static List<Bound> defaultBounds() {
+        AllocationMatrix m = AllocationMatrix.configured();
+        List<Bound> bounds = new ArrayList<>();
+        for (int k = 0; k < m.ministryCount(); k++) {
+            bounds.add(new Bound(CategoryIndex.code(m.ministryId(k)), DEFAULT_MAX_CUT, DEFAULT_WEIGHT));
+        }
+        bounds.add(new Bound(CategoryIndex.code(m.getRemainderId()), DEFAULT_MAX_CUT, DEFAULT_WEIGHT));
+        return bounds;
+    }
+
+    public static Solution solve(Budget budget, long target, List<Bound> bounds) {
+        checkNoOverlap(bounds.stream().map(Bound::code).toList());
+
+        Evaluator ev = new Evaluator(budget, bounds);
+        long before = ev.balance();
+
+        //Ουρά κατηγοριών με βάση το κόστος του επόμενου βήματος ανά € εξοικονόμησης
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> Double.compare(ev.nextCost(a), ev.nextCost(b)));
+        for (int i = 0; i < ev.size(); i++) {
+            if (ev.canCut(i)) {
+                queue.add(i);
+            }
+        }
+
+        while (ev.balance() < target && !queue.isEmpty()) {
+            int i = queue.poll();
+
+            //Το τελευταίο βήμα κόβεται ακριβώς όσο χρειάζεται
+            double step = Math.min(STEP, ev.percentFor(i, target - ev.balance()));
+            ev.cut(i, step);
+
+            if (ev.canCut(i)) {
+                queue.add(i);
+            }
+        }
+
+        List<Adjustment> adjustments = new ArrayList<>();
+        for (int i = 0; i < ev.size(); i++) {
+            if (ev.value(i) != ev.base(i)) {
+                adjustments.add(new Adjustment(ev.code(i), ev.base(i), ev.value(i), ev.percent(i)));
+            }
+        }
+        return new Solution(ev.balance() >= target, before, ev.balance(), adjustments);
+    }
+
+    /** Εφαρμόζει τις αλλαγές ως τιμές χρήστη στο budget. */
+    public static void apply(Budget budget, Solution solution) {
+        for (Adjustment a : solution.adjustments()) {
+            budget.setUserValue(a.code(), a.after());
+        }
+    }
+
+    //Μια κατηγορία μαζί με πρόγονό της (CategoryTree) θα μετρούσε την ίδια περικοπή δύο φορές·
+    //χρησιμοποιείται και από το ScenarioSweep για τους άξονές του
+    static void checkNoOverlap(List<String> codes) {
+        Set<Integer> ids = new HashSet<>();
+        for (String code : codes) {
+            if (!ids.add(CategoryIndex.idOf(code))) {
+                throw new IllegalArgumentException("Η κατηγορία δόθηκε δύο φορές: " + code);
+            }
+        }
+        CategoryTree tree = AllocationMatrix.configured().tree();
+        for (int id : ids) {
+            for (int p = tree.parent(id); p >= 0; p = tree.parent(p)) {
+                if (ids.contains(p)) {
+                    throw new IllegalArgumentException("Δεν μπορούν να δοθούν μαζί " + CategoryIndex.code(p)
+                            + " και " + CategoryIndex.code(id));
+                }
+            }
+        }
+    }
+
+    /**
+     * Κατάσταση της αναζήτησης σε πίνακες: βάση, τρέχον % περικοπής και τιμή ανά κατηγορία,
+     * και το τρέχον ισοζύγιο. Κάθε αλλαγή αγγίζει μόνο την κατηγορία της.
+     */
+    static final class Evaluator {
+        private final String[] codes;
+        private final long[] base;
+        private final double[] maxCut;
+        private final double[] weight;
+
+        private final double[] percent;
+        private final long[] value;
+        private long balance;
+
+        Evaluator(Budget budget, List<Bound> bounds) {
+            int n = bounds.size();
+            codes = new String[n];
+            base = new long[n];
+            maxCut = new double[n];
+            weight = new double[n];
+            percent = new double[n];
+            value = new long[n];
+
+            for (int i = 0; i < n; i++) {
+                Bound b = bounds.get(i);
+                codes[i] = b.code();
+                base[i] = budget.getFinalValue(CategoryIndex.idOf(b.code()));
+                value[i] = base[i];
+                maxCut[i] = b.maxCutPercent();
+                weight[i] = b.weight();
+            }
+            balance = App.computeBalance(budget.getTotalRevenue(), budget.getCurrentExpenses());
+        }
+
+        int size() {
+            return codes.length;
+        }
+
+        String code(int i) {
+            return codes[i];
+        }
+
+        long base(int i) {
+            return base[i];
+        }
+
+        long value(int i) {
+            return value[i];
+        }
+
+        double percent(int i) {
+            return percent[i];
+        }
+
+        long balance() {
+            return balance;
+        }
+
+        boolean canCut(int i) {
+            return base[i] > 0 && percent[i] < maxCut[i] - 1e-12;
+        }
+
+        //Κόστος ανά € του επόμενου βήματος: w * ((p+s)^2 - p^2) / (base * s / 100)
+        double nextCost(int i) {
+            double s = Math.min(STEP, maxCut[i] - percent[i]);
+            double p = percent[i];
+            return weight[i] * (2 * p + s) * 100.0 / base[i];
+        }
+
+        //Ποσοστιαίες μονάδες περικοπής της κατηγορίας i για εξοικονόμηση amount
+        double percentFor(int i, long amount) {
+            return amount * 100.0 / base[i];
+        }
+
+        //Περικοπή κατά step μονάδες (έως το όριο)· ενημερώνεται μόνο η i και το ισοζύγιο
+        void cut(int i, double step) {
+            percent[i] = Math.min(maxCut[i], percent[i] + step);
+
+            //Στρογγυλοποίηση προς τα κάτω ώστε η εξοικονόμηση να μη μείνει κάτω από τον στόχο
+            long next = (long) Math.floor(base[i] * (1 - percent[i] / 100.0));
+            balance += value[i] - next;
+            value[i] = next;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package gr.aueb.budgetpm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * "Μεταγλωττισμένο" πλάνο για τη μη διαδραστική εκτέλεση του CLI.
+ *
+ * Οι γραμμές του script κανονικοποιούνται και αντιστοιχίζονται σε εντολές μία φορά
+ * (κενές γραμμές και σχόλια '#' παραλείπονται) και ταυτόχρονα βρίσκονται τα έτη / οι χώρες που θα φορτωθούν,
+ * ώστε όλες οι φορτώσεις να ξεκινήσουν μαζί πριν την εκτέλεση της πρώτης εντολής.
+ */
+final class BatchPlan {
+
+    private final List<CommandRegistry.Invocation> commands;
+    //Χώρα -> έτη προς φόρτωση
+    private final Map<String, Set<Integer>> loads;
+
+    private BatchPlan(List<CommandRegistry.Invocation> commands, Map<String, Set<Integer>> loads) {
+        this.commands = commands;
+        this.loads = loads;
+    }
+
+    /**
+     * @param registry  οι εντολές του CLI· κάθε γραμμή αντιστοιχίζεται σε εντολή εδώ, μία φορά
+     * @param startYear το τρέχον έτος του CLI πριν την πρώτη εντολή
+     * @param home      η χώρα των εντολών που δεν ορίζουν χώρα
+     */
+    static BatchPlan compile(List<String> lines, CommandRegistry registry, int startYear, String home) {
+        List<CommandRegistry.Invocation> commands = new ArrayList<>();
+        Map<String, Set<Integer>> loads = new LinkedHashMap<>();
+
+        int year = startYear;
+        //Μετά από load year / load all οι τιμές έρχονται από αρχείο: δεν προφορτώνουμε
+        boolean scanning = true;
+
+        for (String line : lines) {
+            String input = line.trim().toLowerCase();
+            if (input.isEmpty() || input.startsWith("#")) {
+                continue;
+            }
+            CommandRegistry.Invocation inv = registry.resolve(input);
+            commands.add(inv);
+
+            if (!scanning || !inv.isKnown()) {
+                continue;
+            }
+
+            String[] parts = inv.args().tokens();
+            try {
+                switch (inv.command().name()) {
+                    case "load year", "load all" -> scanning = false;
+                    case "set year" -> {
+                        if (parts.length == 3) {
+                            year = Integer.parseInt(parts[2]);
+                            add(loads, home, year);
+                        }
+                    }
+                    case "compare countries" -> {
+                        if (parts.length >= 5) {
+                            int y = Integer.parseInt(parts[parts.length - 1]);
+                            for (int i = 2; i < parts.length - 1; i++) {
+                                add(loads, parts[i].toUpperCase(), y);
+                            }
+                        }
+                    }
+                    case "compare years" -> {
+                        if (parts.length == 4) {
+                            add(loads, home, Integer.parseInt(parts[2]));
+                            add(loads, home, Integer.parseInt(parts[3]));
+                        }
+                    }
+                    case "compare" -> {
+                        if (parts.length == 3) {
+                            add(loads, home, Integer.parseInt(parts[1]));
+                            add(loads, home, Integer.parseInt(parts[2]));
+                        }
+                    }
+                    case "export csv", "save year" -> {
+                        if (parts.length == 3) {
+                            add(loads, home, Integer.parseInt(parts[2]));
+                        }
+                    }
+                    default -> {
+                        if (usesCurrentYear(inv.command().name())) {
+                            add(loads, home, year);
+                        }
+                    }
+                }
+            } catch (NumberFormatException e) {
+                //Λάθος σύνταξη: θα το αναφέρει η ίδια η εντολή κατά την εκτέλεση
+            }
+        }
+        return new BatchPlan(commands, loads);
+    }
+
+    private static boolean usesCurrentYear(String command) {
+        return command.startsWith("show ") || command.startsWith("increase") || command.startsWith("reduce")
+                || command.equals("set value") || command.startsWith("scenario")
+                || command.equals("compare scenario") || command.equals("simulate")
+                || command.equals("solve balance");
+    }
+
+    private static void add(Map<String, Set<Integer>> loads, String country, int year) {
+        loads.computeIfAbsent(country, c -> new LinkedHashSet<>()).add(year);
+    }
+
+    List<CommandRegistry.Invocation> getCommands() {
+        return commands;
+    }
+
+    /**
+     * Ξεκινά (χωρίς αναμονή) όλες τις φορτώσεις του πλάνου στο repository. Οι εντολές που θα
+     * τις χρειαστούν περιμένουν το ίδιο future μέσω του getOrLoad, άρα κάθε έτος φορτώνεται
+     * μία φορά, και τα πολλά έτη μιας χώρας με ένα αίτημα εύρους ανά δείκτη.
+     */
+    void prefetch(BudgetRepository repository) {
+        for (var e : loads.entrySet()) {
+            repository.getAllAsync(List.of(e.getKey()), e.getValue());
+        }
+    }
+}
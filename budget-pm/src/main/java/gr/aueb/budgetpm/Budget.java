@@ -1,16 +1,23 @@
 package gr.aueb.budgetpm;
 
-import org.json.JSONArray;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URL;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Κλάση Budget με φόρτωση δεδομένων από το WorldBank API.
@@ -30,19 +37,53 @@ public class Budget {
     private long totalRevenue;
     private long totalExpenses;
 
-    //Αποθήκευση τιμών από το API
-    private final Map<String, Long> apiValues = new HashMap<>();
+    //Αποθήκευση τιμών από το API, θέση = id κατηγορίας (βλ. CategoryIndex)
+    private final long[] apiValues = new long[CategoryIndex.size()];
+    private final BitSet apiPresent = new BitSet(CategoryIndex.size());
 
-    //Αποθήκευση αλλαγών χρήστη (User overrides)
-    private final Map<String, Long> userChanges = new HashMap<>();
+    //Αποθήκευση αλλαγών χρήστη (User overrides), σημαδεμένες στο overridden
+    private final long[] userValues = new long[CategoryIndex.size()];
+    private final BitSet overridden = new BitSet(CategoryIndex.size());
+
+    /*
+     * Συγκεντρωτικά κατά την ιεραρχία (CategoryTree), ανά id:
+     * rollup      = Σ (τελική - API) των παιδιών, δηλαδή οι αλλαγές που ανεβαίνουν από κάτω,
+     * childApiSum = Σ API τιμών των παιδιών.
+     * Μια αλλαγή σε φύλλο ενημερώνει μόνο τους προγόνους του (O(βάθους)).
+     */
+    private final long[] rollup = new long[CategoryIndex.size()];
+    private final long[] childApiSum = new long[CategoryIndex.size()];
+
+    //Η ιεραρχία του πίνακα κατανομής με τον οποίο γέμισαν οι τιμές API
+    private CategoryTree tree = AllocationMatrix.configured().tree();
+
+    //Αυξάνεται σε κάθε αλλαγή κατάστασης· ακυρώνει το cached snapshot
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<CategorySnapshot> snapshot = new AtomicReference<>();
+
+    //Αποτέλεσμα ανά δείκτη του τελευταίου loadFromApi
+    private volatile Map<String, FetchResult> fetchResults = Map.of();
+
+    //Ειδοποιείται σε κάθε αλλαγή χρήστη (π.χ. cache και ημερολόγιο του BudgetRepository)
+    private volatile UserChangeListener changeListener;
+
+    //Όψεις Map πάνω στους πίνακες, για τον κώδικα που δουλεύει με κωδικούς
+    private final Map<String, Long> apiView = new ValuesView(apiValues, apiPresent);
+    private final Map<String, Long> userView = new ValuesView(userValues, overridden);
 
     //Σταθερές API
     private static final String INDICATOR_EXPENSES = "GC.XPN.TOTL.GD.ZS";
     private static final String INDICATOR_REVENUE  = "GC.REV.XGRT.GD.ZS";
     private static final long ESTIMATED_GDP = 200_000_000_000L; 
 
+    //Δείκτες που φορτώνονται (παράλληλα) σε κάθε loadFromApi
+    static final List<String> INDICATORS = List.of(INDICATOR_EXPENSES, INDICATOR_REVENUE);
+
+    //Ενιαίο όριο χρόνου για όλη τη φόρτωση (όχι ανά δείκτη)
+    private static final Duration LOAD_TIMEOUT = Duration.ofSeconds(10);
+
     // Ορισμός ονομάτων για το CLI - ΠΛΗΡΗΣ ΕΛΛΗΝΙΚΗ ΜΕΤΑΦΡΑΣΗ
-    private static final Map<String, String> CATEGORY_MAP = Map.ofEntries(
+    static final Map<String, String> CATEGORY_MAP = Map.ofEntries(
             //Γενικό Σύνολο
             Map.entry("GC.XPN.TOTL.GD.ZS", "ΣΥΝΟΛΟ ΚΡΑΤΙΚΩΝ ΔΑΠΑΝΩΝ"),
 
@@ -99,12 +140,63 @@ public class Budget {
 
     //Φορτωση και κατανομη δεδομενων
     public void loadFromApi() {
+        Map<String, FetchResult> results = fetchMetrics(INDICATORS);
+        fetchResults = results;
+
+        Map<String, Long> metrics = new HashMap<>();
+        for (var e : results.entrySet()) {
+            FetchResult r = e.getValue();
+            if (r.hasValue()) {
+                metrics.put(e.getKey(), r.value());
+                if (r.stale()) {
+                    System.out.println("Προσοχή: Το WorldBank δεν είναι διαθέσιμο, παλιά τιμή " + e.getKey()
+                            + " για το έτος " + this.year + " από την τοπική cache");
+                }
+            } else if (r.isFailed()) {
+                System.out.println("Προσοχή: Αποτυχία φόρτωσης " + e.getKey() + " για το έτος " + this.year
+                        + " (" + r.error() + ")");
+            }
+        }
+        loadFromMetrics(metrics);
+    }
+
+    /**
+     * Τι έγινε με κάθε δείκτη στο τελευταίο loadFromApi (τιμή / χωρίς δεδομένα / αποτυχία).
+     * Κενό αν το budget δεν φορτώθηκε από την πηγή δεικτών.
+     */
+    public Map<String, FetchResult> getFetchResults() {
+        return fetchResults;
+    }
+
+    /**
+     * Κατανομή με βάση ήδη φορτωμένες τιμές δεικτών (indicator -> ποσό),
+     * π.χ. από μαζική φόρτωση εύρους ετών στο BudgetRepository.
+     */
+    void loadFromMetrics(Map<String, Long> metrics) {
+        try {
+            allocate(metrics);
+        } finally {
+            markChanged();
+        }
+    }
+
+    /**
+     * Κατανομή από ήδη γνωστά σύνολα (π.χ. όπως γράφτηκαν στο ημερολόγιο ή σε παλιό snapshot),
+     * ώστε οι τιμές API να ξαναχτιστούν χωρίς αίτημα στην πηγή δεικτών.
+     */
+    void loadFromTotals(long revenue, long expenses) {
+        loadFromMetrics(Map.of(INDICATOR_REVENUE, revenue, INDICATOR_EXPENSES, expenses));
+    }
+
+    private void allocate(Map<String, Long> metrics) {
         this.totalRevenue = 0L;
         this.totalExpenses = 0L;
-        apiValues.clear();
+        apiPresent.clear();
+        recomputeRollup();
+        markChanged();
 
-        long expenses = fetchMetric(INDICATOR_EXPENSES);
-        long revenues = fetchMetric(INDICATOR_REVENUE);
+        long expenses = metrics.getOrDefault(INDICATOR_EXPENSES, 0L);
+        long revenues = metrics.getOrDefault(INDICATOR_REVENUE, 0L);
 
         if (expenses == 0 && revenues == 0) {
             System.out.println("Προσοχή: Δεν βρέθηκαν δεδομένα WorldBank για το έτος " + this.year);
@@ -114,86 +206,137 @@ public class Budget {
 
         this.totalExpenses = expenses;
         this.totalRevenue = revenues;
-        apiValues.put(INDICATOR_EXPENSES, totalExpenses);
-
-        //ΚΑΤΑΝΟΜΗ
-        
-        //ΥΓΕΙΑ(15%)
-        long healthTotal = Math.round(totalExpenses * 0.15);
-        apiValues.put("MIN_HEALTH",       healthTotal);
-        apiValues.put("HEALTH_SALARIES",  Math.round(healthTotal * 0.45));
-        apiValues.put("HEALTH_HOSPITALS", Math.round(healthTotal * 0.30));
-        apiValues.put("HEALTH_MEDS",      Math.round(healthTotal * 0.15));
-        apiValues.put("HEALTH_EQUIP",     Math.round(healthTotal * 0.10));
-
-        //ΠΑΙΔΕΙΑ(12%)
-        long eduTotal = Math.round(totalExpenses * 0.12);
-        apiValues.put("MIN_EDUCATION",    eduTotal);
-        apiValues.put("EDU_SALARIES",     Math.round(eduTotal * 0.75));
-        apiValues.put("EDU_MAINTENANCE",  Math.round(eduTotal * 0.15));
-        apiValues.put("EDU_RESEARCH",     Math.round(eduTotal * 0.10));
-
-        //ΑΜΥΝΑ(10%)
-        long defTotal = Math.round(totalExpenses * 0.10);
-        apiValues.put("MIN_DEFENSE",      defTotal);
-        apiValues.put("DEF_EQUIPMENT",    Math.round(defTotal * 0.45));
-        apiValues.put("DEF_SALARIES",     Math.round(defTotal * 0.40));
-        apiValues.put("DEF_TRAINING",     Math.round(defTotal * 0.15));
-
-        //ΠΡΟΣΤΑΣΙΑ ΠΟΛΙΤΗ(5%)
-        long protTotal = Math.round(totalExpenses * 0.05);
-        apiValues.put("MIN_PROTECTION",   protTotal);
-        apiValues.put("PROT_SALARIES",    Math.round(protTotal * 0.70));
-        apiValues.put("PROT_EQUIP",       Math.round(protTotal * 0.20));
-        apiValues.put("PROT_BORDERS",     Math.round(protTotal * 0.10));
-
-        //ΕΞΩΤΕΡΙΚΩΝ(3%)
-        long forTotal = Math.round(totalExpenses * 0.03);
-        apiValues.put("MIN_FOREIGN",      forTotal);
-        apiValues.put("FOR_EMBASSIES",    Math.round(forTotal * 0.50));
-        apiValues.put("FOR_DIPLOMACY",    Math.round(forTotal * 0.30));
-        apiValues.put("FOR_AID",          Math.round(forTotal * 0.20));
-
-        //ΕΣΩΤΕΡΙΚΩΝ(4%)
-        long intTotal = Math.round(totalExpenses * 0.04);
-        apiValues.put("MIN_INTERIOR",     intTotal);
-        apiValues.put("INT_MUNICIPAL",    Math.round(intTotal * 0.80));
-        apiValues.put("INT_ELECTIONS",    Math.round(intTotal * 0.20));
-
-        //ΕΡΓΑΣΙΑΣ(30%)
-        long labTotal = Math.round(totalExpenses * 0.30);
-        apiValues.put("MIN_LABOR",        labTotal);
-        apiValues.put("LABOR_PENSIONS",   Math.round(labTotal * 0.60));
-        apiValues.put("LABOR_BENEFITS",   Math.round(labTotal * 0.25));
-        apiValues.put("LABOR_SUPPORT",    Math.round(labTotal * 0.15));
-
-        //ΛΟΙΠΑ
-        long otherTotal = totalExpenses - healthTotal - eduTotal - defTotal - protTotal - forTotal - intTotal - labTotal;
-        if (otherTotal < 0) otherTotal = 0;
-        apiValues.put("MIN_OTHER", otherTotal);
-    }
-
-    //Επιστρογης λιστας κατηγοριων
+
+        //ΚΑΤΑΝΟΜΗ (Υπουργεία -> υποκατηγορίες, βλ. AllocationMatrix)
+        AllocationMatrix matrix = AllocationMatrix.configured();
+        applyAllocation(matrix, AllocationEngine.allocate(matrix, new long[] { totalExpenses }), 1, 0);
+    }
+
+    /**
+     * Αντιγράφει τη στήλη i του αποτελέσματος του AllocationEngine (n budgets)
+     * στις τιμές API αυτού του budget.
+     */
+    void applyAllocation(AllocationMatrix matrix, long[] columns, int n, int i) {
+        tree = matrix.tree();
+        apiPresent.clear();
+        for (int id : matrix.allocatedIds()) {
+            apiValues[id] = columns[id * n + i];
+            apiPresent.set(id);
+        }
+        recomputeRollup();
+        markChanged();
+    }
+
+    //Πλήρης υπολογισμός των συγκεντρωτικών (μετά από αλλαγή τιμών API)
+    private void recomputeRollup() {
+        Arrays.fill(rollup, 0L);
+        Arrays.fill(childApiSum, 0L);
+        for (int id : tree.bottomUp()) {
+            int parent = tree.parent(id);
+            if (parent >= 0) {
+                rollup[parent] += getFinalValue(id) - apiValue(id);
+                childApiSum[parent] += apiValue(id);
+            }
+        }
+    }
+
+    /*
+     * Η τελική τιμή του id άλλαξε κατά delta: ανεβαίνει στους προγόνους όσο αλλάζει
+     * και η δική τους τελική τιμή (ένα Υπουργείο με τιμή χρήστη σταματά τη διάδοση).
+     */
+    private void propagate(int id, long delta) {
+        for (int p = tree.parent(id); p >= 0 && delta != 0; p = tree.parent(p)) {
+            long before = getFinalValue(p);
+            rollup[p] += delta;
+            delta = getFinalValue(p) - before;
+        }
+    }
+
+    private long apiValue(int id) {
+        return apiPresent.get(id) ? apiValues[id] : 0L;
+    }
+
+    //Επιστρογης λιστας κατηγοριων (αμετάβλητη, κοινή μέχρι την επόμενη αλλαγή)
     public List<BudgetCategory> getCategories() {
-        List<BudgetCategory> list = new ArrayList<>();
+        return getCategorySnapshot().getCategories();
+    }
 
-        for (Map.Entry<String, String> entry : CATEGORY_MAP.entrySet()) {
-            String code = entry.getKey();
-            String name = entry.getValue();
+    /**
+     * Το τρέχον snapshot κατηγοριών. Ξαναχτίζεται μόνο αν άλλαξε η έκδοση του Budget
+     * από την τελευταία φορά· αλλιώς επιστρέφεται το ίδιο αντικείμενο.
+     */
+    public CategorySnapshot getCategorySnapshot() {
+        CategorySnapshot current = snapshot.get();
+        long v = version.get();
+        if (current != null && current.getVersion() == v) {
+            return current;
+        }
 
-            if (apiValues.containsKey(code) || userChanges.containsKey(code)) {
-                long amount = getFinalValue(code);
-                list.add(new BudgetCategory(code, name, amount));
+        CategorySnapshot.Builder b = new CategorySnapshot.Builder();
+        for (int id = 0; id < CategoryIndex.size(); id++) {
+            if (apiPresent.get(id) || overridden.get(id)) {
+                b.add(CategoryIndex.code(id), CategoryIndex.name(id), getFinalValue(id));
             }
         }
-        return list;
+
+        current = b.build(v, totalRevenue, totalExpenses);
+        //Δημοσιεύεται μόνο αν δεν άλλαξε τίποτα στο μεταξύ και δεν υπάρχει ήδη νεότερο
+        if (version.get() == v) {
+            snapshot.accumulateAndGet(current, (old, next) ->
+                    old != null && old.getVersion() >= next.getVersion() ? old : next);
+        }
+        return current;
+    }
+
+    /*
+     * Εκτίμηση μνήμης (bytes) για τα όρια της BudgetCache: οι πίνακες ανά κατηγορία
+     * και το snapshot με τα BudgetCategory του. Σταθερή για όλα τα budgets.
+     */
+    long estimatedBytes() {
+        int n = CategoryIndex.size();
+        long arrays = 4L * (16 + 8L * n) + 2L * (48 + n / 8);
+        long snapshotBytes = 64 + n * (24 + 48 + 40 + 64L);
+        return 256 + arrays + snapshotBytes;
+    }
+
+    //Τρέχουσα έκδοση κατάστασης (αλλάζει σε κάθε τροποποίηση)
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void markChanged() {
+        version.incrementAndGet();
     }
 
     public long getFinalValue(String key) {
-        if (userChanges.containsKey(key)) {
-            return userChanges.get(key);
+        int id = CategoryIndex.idOf(key);
+        return id < 0 ? 0L : getFinalValue(id);
+    }
+
+    /*
+     * Τελική τιμή με βάση το id (χωρίς lookup και boxing):
+     * τιμή χρήστη αν υπάρχει, αλλιώς τιμή API συν τις αλλαγές των υποκατηγοριών.
+     */
+    long getFinalValue(int id) {
+        if (overridden.get(id)) {
+            return userValues[id];
         }
-        return apiValues.getOrDefault(key, 0L);
+        return apiValue(id) + rollup[id];
+    }
+
+    //Άθροισμα των τελικών τιμών των παιδιών του id σε O(1) (π.χ. όλα τα Υπουργεία για τη ρίζα)
+    long getChildrenTotal(int id) {
+        return childApiSum[id] + rollup[id];
+    }
+
+    //Σύνολο όλων των Υπουργείων (με τις αλλαγές του χρήστη)
+    public long getMinistriesTotal() {
+        return getChildrenTotal(CategoryTree.ROOT);
+    }
+
+    //Υπάρχει τιμή (API ή χρήστη) για την κατηγορία;
+    boolean hasCategory(int id) {
+        return apiPresent.get(id) || overridden.get(id) || rollup[id] != 0;
     }
 
     //Βοηθητικές μέθοδοι
@@ -202,71 +345,247 @@ public class Budget {
     public String getCountryCode() { return countryCode; }
     public long getTotalRevenue() { return totalRevenue; }
     public long getTotalExpenses() { return totalExpenses; }
+
+    /**
+     * Συνολικές δαπάνες μαζί με τις αλλαγές του χρήστη (σε O(1)): το σύνολο της
+     * πηγής μετατοπισμένο κατά τη μεταβολή του κόμβου-ρίζας της ιεραρχίας.
+     */
+    public long getCurrentExpenses() {
+        int root = CategoryTree.ROOT;
+        return totalExpenses + getFinalValue(root) - apiValue(root);
+    }
     
     public void setTotals(long rev, long exp) {
         this.totalRevenue = rev;
         this.totalExpenses = exp;
+        markChanged();
     }
 
+    //Όψη (μόνο για ανάγνωση) των αλλαγών χρήστη
     public Map<String, Long> getUserChanges() {
-        return userChanges;
+        return userView;
     }
     
+    //Όψη (μόνο για ανάγνωση) των τιμών του API
     public Map<String, Long> getApiValues() {
-        return apiValues;
+        return apiView;
     }
 
     public void setUserValue(String key, long value) {
-        userChanges.put(key, value);
+        int id = CategoryIndex.idOf(key);
+        if (id < 0) {
+            throw new IllegalArgumentException("Άγνωστη κατηγορία: " + key);
+        }
+        setUserValue(id, value);
     }
 
-    private long fetchMetric(String indicator) {
-        try {
-            
-            String urlStr = "https://api.worldbank.org/v2/country/" + countryCode 
-                          + "/indicator/" + indicator + "?format=json&date=" + year;
-            
-            URL url = new URI(urlStr).toURL();
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(5000);
-
-            if (conn.getResponseCode() != 200) return 0;
-
-            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            StringBuilder content = new StringBuilder();
-            String line;
-            while ((line = in.readLine()) != null) content.append(line);
-            in.close();
-
-            JSONArray jsonArray = new JSONArray(content.toString());
-            if (jsonArray.length() < 2) return 0;
-            
-            Object dataObj = jsonArray.get(1);
-            if (dataObj instanceof JSONArray) {
-                JSONArray data = (JSONArray) dataObj;
-                if (data.isEmpty()) return 0;
-                
-                var item = data.getJSONObject(0);
-                if (item.isNull("value")) return 0;
-                
-                double percent = item.getDouble("value");
-                return Math.round((percent / 100.0) * ESTIMATED_GDP);
+    void setUserValue(int id, long value) {
+        applyUserValue(id, value);
+        markChanged();
+        notifyUserValues(Map.of(CategoryIndex.code(id), value));
+    }
+
+    private void applyUserValue(int id, long value) {
+        long before = getFinalValue(id);
+        userValues[id] = value;
+        overridden.set(id);
+        propagate(id, value - before);
+    }
+
+    private void notifyUserValues(Map<String, Long> values) {
+        UserChangeListener l = changeListener;
+        if (l != null) {
+            l.onUserValues(this, values);
+        }
+    }
+
+    /**
+     * Πολλαπλασιάζει όλες τις κατηγορίες με factor σεβόμενο την ιεραρχία: αλλάζουν τα φύλλα
+     * (και όσοι κόμβοι έχουν τιμή χρήστη) και τα σύνολα ακολουθούν μέσω του rollup,
+     * ώστε η ίδια μεταβολή να μη μετρηθεί δύο φορές.
+     */
+    public void scaleAll(double factor) {
+        long[] before = new long[CategoryIndex.size()];
+        for (int id = 0; id < before.length; id++) {
+            before[id] = getFinalValue(id);
+        }
+
+        //Όλες οι αλλαγές φτάνουν στον listener μαζί (μία εγγραφή στο ημερολόγιο)
+        Map<String, Long> changes = new LinkedHashMap<>();
+        for (int id : tree.bottomUp()) {
+            if (!hasCategory(id)) continue;
+            if (tree.isLeaf(id) || overridden.get(id)) {
+                scale(id, before[id], factor, changes);
             }
+        }
+
+        //Κατηγορίες εκτός ιεραρχίας (αν υπάρξουν) αλλάζουν απευθείας
+        for (int id = 0; id < before.length; id++) {
+            boolean inTree = id == CategoryTree.ROOT || tree.parent(id) >= 0;
+            if (!inTree && hasCategory(id)) {
+                scale(id, before[id], factor, changes);
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            markChanged();
+            notifyUserValues(changes);
+        }
+    }
+
+    private void scale(int id, long before, double factor, Map<String, Long> changes) {
+        long value = Math.max(0, Math.round(before * factor));
+        applyUserValue(id, value);
+        changes.put(CategoryIndex.code(id), value);
+    }
+
+    void setChangeListener(UserChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    //Επαναφορά τιμών API από αποθήκευση (π.χ. δυαδικό snapshot του BudgetStorage), ένας υπολογισμός συνόλων
+    void restoreApiValues(Map<String, Long> values) {
+        for (Map.Entry<String, Long> e : values.entrySet()) {
+            int id = CategoryIndex.idOf(e.getKey());
+            if (id < 0) {
+                throw new IllegalArgumentException("Άγνωστη κατηγορία: " + e.getKey());
+            }
+            apiValues[id] = e.getValue();
+            apiPresent.set(id);
+        }
+        recomputeRollup();
+        markChanged();
+    }
 
-            return 0;
+    /**
+     * Φέρνει όλους τους δείκτες ταυτόχρονα και περιμένει το πολύ LOAD_TIMEOUT συνολικά.
+     * Ο χρόνος φόρτωσης καθορίζεται έτσι από τον πιο αργό δείκτη και όχι από το άθροισμα.
+     * Δείκτες που δεν πρόλαβαν μετράνε ως αποτυχία (timeout).
+     */
+    private Map<String, FetchResult> fetchMetrics(List<String> indicators) {
+        Map<String, CompletableFuture<FetchResult>> pending = new LinkedHashMap<>();
+        for (String indicator : indicators) {
+            pending.put(indicator, fetchMetric(indicator));
+        }
+
+        try {
+            CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0]))
+                    .get(LOAD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.out.println("Προσοχή: Λήξη χρόνου φόρτωσης από το WorldBank για το έτος " + this.year);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            //System.err.println("API error: " + e.getMessage());
-            return 0;
+            //Κάθε future έχει ήδη δικό του exceptionally -> FAILED
+        }
+
+        FetchResult timedOut = FetchResult.failed("timeout " + LOAD_TIMEOUT.toSeconds() + "s");
+        Map<String, FetchResult> values = new HashMap<>();
+        for (var entry : pending.entrySet()) {
+            CompletableFuture<FetchResult> f = entry.getValue();
+            values.put(entry.getKey(), f.getNow(timedOut));
+            f.cancel(true);
+        }
+        return values;
+    }
+
+    private CompletableFuture<FetchResult> fetchMetric(String indicator) {
+        //Η απάντηση διαβάζεται με streaming (από το δίκτυο ή το αρχείο της cache), χωρίς String ή δέντρο JSON
+        CompletableFuture<IndicatorSource.Response<List<WorldBankParser.Point>>> source = WorldBankClient.configured()
+                .fetchPoints(countryCode, indicator, String.valueOf(year), LOAD_TIMEOUT);
+        //Το cancel του fetchMetrics (μετά το LOAD_TIMEOUT) φτάνει έτσι ως τις επαναλήψεις του αιτήματος
+        return RequestGuard.cancelsUpstream(source
+                .thenApply(resp -> toMetric(resp.value(), resp.stale()))
+                .exceptionally(e -> {
+                    Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                    return FetchResult.failed(cause.getMessage() != null
+                            ? cause.getMessage() : cause.getClass().getSimpleName());
+                }), source);
+    }
+
+    //Μετατροπή του ποσοστού επί του ΑΕΠ (η πρώτη τιμή της απάντησης) σε ποσό
+    private static FetchResult toMetric(List<WorldBankParser.Point> points, boolean stale) {
+        if (points.isEmpty()) {
+            return FetchResult.missing();
         }
+        long amount = percentToAmount(points.get(0).value());
+        return stale ? FetchResult.staleOf(amount) : FetchResult.of(amount);
+    }
+
+    //Οι δείκτες του API είναι % του ΑΕΠ
+    static long percentToAmount(double percent) {
+        return Math.round((percent / 100.0) * ESTIMATED_GDP);
     }
 
     public long getFinalValueFromCategoryName(String categoryName) {
-        for (BudgetCategory c : getCategories()) {
-            if (c.getName().equalsIgnoreCase(categoryName)) {
-                return c.getAmount();
-            }
+        return getCategorySnapshot().amountByName(categoryName);
+    }
+
+    //Παρακολούθηση αλλαγών χρήστη
+    interface UserChangeListener {
+        //Κωδικός -> νέα τιμή, μία κλήση ανά αλλαγή (το scaleAll δίνει όλες μαζί)
+        void onUserValues(Budget budget, Map<String, Long> values);
+    }
+
+    /**
+     * Map όψη πάνω σε έναν πίνακα τιμών και το BitSet των θέσεων που έχουν τιμή.
+     * Δεν αντιγράφει τίποτα: αλλαγές στο Budget φαίνονται αμέσως.
+     */
+    private static final class ValuesView extends AbstractMap<String, Long> {
+
+        private final long[] values;
+        private final BitSet present;
+
+        ValuesView(long[] values, BitSet present) {
+            this.values = values;
+            this.present = present;
+        }
+
+        @Override
+        public Long get(Object key) {
+            int id = (key instanceof String code) ? CategoryIndex.idOf(code) : -1;
+            return (id >= 0 && present.get(id)) ? values[id] : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int id = (key instanceof String code) ? CategoryIndex.idOf(code) : -1;
+            return id >= 0 && present.get(id);
+        }
+
+        @Override
+        public int size() {
+            return present.cardinality();
+        }
+
+        @Override
+        public Set<Entry<String, Long>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return present.cardinality();
+                }
+
+                @Override
+                public Iterator<Entry<String, Long>> iterator() {
+                    return new Iterator<>() {
+                        private int next = present.nextSetBit(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Entry<String, Long> next() {
+                            if (next < 0) throw new NoSuchElementException();
+                            int id = next;
+                            next = present.nextSetBit(id + 1);
+                            return new SimpleImmutableEntry<>(CategoryIndex.code(id), values[id]);
+                        }
+                    };
+                }
+            };
         }
-        return 0;
     }
-}
\ No newline at end of file
+}
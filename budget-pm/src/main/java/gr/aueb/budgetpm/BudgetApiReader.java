@@ -1,41 +1,26 @@
 package gr.aueb.budgetpm;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URL;
+import java.time.Duration;
+import java.util.List;
 /*import org.json.JSONObject;*/
 import org.json.JSONArray;
 
 public class BudgetApiReader {
 
-    private static final String API_URL = "https://api.worldbank.org/v2/country/{COUNTRY}/indicator/{INDICATOR}?format=json&date={YEAR}";
     //Τωρα μπορει να παιρνει διαφορετικα indicators(εσοδα εξοδα)
+    //Η κλήση περνάει από την πηγή δεικτών (WorldBankClient.configured()), άρα και από την τοπική cache απαντήσεων
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
 
     public static JSONArray fetchBudgetData(String countryCode, int year, String indicator) {
         try {
-            String fullUrl = API_URL.replace("{COUNTRY}", countryCode).replace("{INDICATOR}", indicator).replace("{YEAR}", String.valueOf(year));
-            URI uri = URI.create(fullUrl);
-            URL url = uri.toURL();
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-
-            BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            String inputLine;
-            StringBuilder response = new StringBuilder();
-
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
+            IndicatorSource.Response<String> resp =
+                    WorldBankClient.configured().fetchIndicator(countryCode, indicator, String.valueOf(year), TIMEOUT).join();
+            if (resp.stale()) {
+                System.out.println("API unavailable: stale cached data for " + countryCode + "/" + indicator + "/" + year);
             }
 
-            in.close();
-
             //To API της WorldBank επιστρέφει JSON array
-            JSONArray jsonArray = new JSONArray(response.toString());
+            JSONArray jsonArray = new JSONArray(resp.value());
 
             return jsonArray;
 
@@ -44,4 +29,25 @@ public class BudgetApiReader {
             return null;
         }
     }
+
+    /**
+     * Όπως το fetchBudgetData, αλλά με streaming ανάγνωση: επιστρέφει μόνο τις τιμές
+     * (χώρα, έτος, τιμή) χωρίς να χτίζει JSONArray ή να κρατά την απάντηση σε String.
+     * Το date μπορεί να είναι έτος ή εύρος ("2000:2023") και η χώρα και "all"·
+     * ακολουθούνται όλες οι σελίδες της απάντησης. Σε σφάλμα επιστρέφει null.
+     */
+    public static List<WorldBankParser.Point> fetchIndicatorPoints(String countryCode, String date, String indicator) {
+        try {
+            IndicatorSource.Response<List<WorldBankParser.Point>> resp =
+                    WorldBankClient.configured().fetchPoints(countryCode, indicator, date, TIMEOUT).join();
+            if (resp.stale()) {
+                System.out.println("API unavailable: stale cached data for " + countryCode + "/" + indicator + "/" + date);
+            }
+            return resp.value();
+
+        } catch (Exception e) {
+            System.out.println("API error: " + e.getMessage());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,228 @@
+package gr.aueb.budgetpm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Φραγμένη cache από Budget (ανά έτος ή ανά (χώρα, έτος)).
+ *
+ * - Όριο πλήθους και (εκτιμώμενης) μνήμης: όταν ξεπεραστεί, φεύγουν τα λιγότερο
+ *   πρόσφατα χρησιμοποιημένα (LRU με χρονοσφραγίδα πρόσβασης, χωρίς κλείδωμα στο get).
+ *   Οι αλλαγές (put, readmit) κλειδώνουν, ώστε κάθε κλειδί να είναι σε ένα μόνο map.
+ * - TTL: ένα budget από την πηγή που φορτώθηκε πριν από περισσότερο από ttl
+ *   θεωρείται ληγμένο και ξαναφορτώνεται.
+ * - Δεν φεύγουν ποτέ (ούτε λήγουν) budgets με αλλαγές χρήστη, ούτε όσα δεν
+ *   ξαναφορτώνονται από την πηγή (putBudget): χάνονταν από το επόμενο snapshot.
+ *   Όσα έρχονται από snapshot (loadAll) χωρίς αλλαγές χρήστη μπορούν να φύγουν.
+ *   Τα καρφωμένα κρατιούνται σε χωριστό map, εκτός της σειράς LRU: μετράνε στα όρια,
+ *   αλλά η εκκαθάριση εξετάζει μόνο όσα μπορούν να φύγουν.
+ *
+ * Ρυθμίσεις μέσω system properties (βλ. {@link Limits#fromSystemProperties()}):
+ * budgetpm.budgets.maxEntries, budgetpm.budgets.maxMb, budgetpm.budgets.ttlMinutes.
+ */
+public final class BudgetCache<K> {
+
+    /** Όρια της cache. ttl = Duration.ZERO σημαίνει χωρίς λήξη. */
+    record Limits(int maxEntries, long maxBytes, Duration ttl) {
+
+        /** Προεπιλογές: 512 budgets, 64 MB, 6 ώρες. */
+        static Limits fromSystemProperties() {
+            int entries = Integer.getInteger("budgetpm.budgets.maxEntries", 512);
+            long maxMb = Long.getLong("budgetpm.budgets.maxMb", 64L);
+            long ttlMinutes = Long.getLong("budgetpm.budgets.ttlMinutes", 360L);
+            return new Limits(entries, maxMb * 1024 * 1024, Duration.ofMinutes(ttlMinutes));
+        }
+    }
+
+    /** Μετρητές της cache. */
+    public record Stats(long hits, long misses, long evictions, long expirations, int size, long bytes) {}
+
+    private static final class Entry {
+        final Budget budget;
+        //true αν ήρθε από την πηγή δεικτών (άρα μπορεί να ξαναφορτωθεί)
+        final boolean reloadable;
+        final long loadedAt;
+        final long bytes;
+        volatile long lastAccess;
+
+        Entry(Budget budget, boolean reloadable, long now) {
+            this.budget = budget;
+            this.reloadable = reloadable;
+            this.loadedAt = now;
+            this.lastAccess = now;
+            this.bytes = budget.estimatedBytes();
+        }
+    }
+
+    private record Candidate<K>(K key, Entry entry, boolean expired, long lastAccess) {}
+
+    //Καρφωμένα budgets: δεν φεύγουν ποτέ, οπότε μένουν έξω από τη σειρά LRU και η εκκαθάριση δεν τα εξετάζει
+    private final Map<K, Entry> pinned = new ConcurrentHashMap<>();
+    //Budgets από την πηγή, υποψήφια για εκκαθάριση
+    private final Map<K, Entry> evictable = new ConcurrentHashMap<>();
+    private final Limits limits;
+
+    //Όλες οι εγγραφές (και των δύο maps) μετράνε στο όριο μνήμης
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    BudgetCache(Limits limits) {
+        this.limits = limits;
+    }
+
+    /** Το budget του κλειδιού ή null (και μετράει hit / miss). Ένα ληγμένο αφαιρείται. */
+    Budget get(K key) {
+        Entry e = find(key);
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        long now = System.nanoTime();
+        if (isExpired(e, now) && evictable.remove(key, e)) {
+            bytes.addAndGet(-e.bytes);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        e.lastAccess = now;
+        hits.increment();
+        return e.budget;
+    }
+
+    /** Βάζει το budget αν δεν υπάρχει ήδη· επιστρέφει το υπάρχον ή null. */
+    synchronized Budget putIfAbsent(K key, Budget budget, boolean reloadable) {
+        Entry existing = find(key);
+        if (existing != null) {
+            return existing.budget;
+        }
+        add(key, new Entry(budget, reloadable, System.nanoTime()));
+        evictIfNeeded();
+        return null;
+    }
+
+    synchronized void put(K key, Budget budget, boolean reloadable) {
+        remove(key);
+        add(key, new Entry(budget, reloadable, System.nanoTime()));
+        evictIfNeeded();
+    }
+
+    /**
+     * Καρφώνει ένα budget που μόλις άλλαξε ο χρήστης. Αν είχε ήδη φύγει (π.χ. το κρατούσε
+     * το GUI) ξαναμπαίνει· αν στο μεταξύ φορτώθηκε άλλο αντικείμενο χωρίς αλλαγές, αντικαθίσταται.
+     */
+    synchronized void readmit(K key, Budget budget) {
+        Entry e = find(key);
+        if (e != null && e.budget != budget && !e.budget.getUserChanges().isEmpty()) {
+            return;
+        }
+        if (e != null && e.budget == budget && pinned.get(key) == e) {
+            return;
+        }
+        remove(key);
+        Entry entry = (e != null && e.budget == budget) ? e : new Entry(budget, false, System.nanoTime());
+        pinned.put(key, entry);
+        bytes.addAndGet(entry.bytes);
+    }
+
+    Set<K> keys() {
+        Set<K> keys = new HashSet<>(pinned.keySet());
+        keys.addAll(evictable.keySet());
+        return keys;
+    }
+
+    void forEach(BiConsumer<K, Budget> action) {
+        pinned.forEach((k, e) -> action.accept(k, e.budget));
+        evictable.forEach((k, e) -> action.accept(k, e.budget));
+    }
+
+    Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size(), bytes.get());
+    }
+
+    private Entry find(K key) {
+        Entry e = pinned.get(key);
+        return (e != null) ? e : evictable.get(key);
+    }
+
+    private void add(K key, Entry e) {
+        (isPinned(e) ? pinned : evictable).put(key, e);
+        bytes.addAndGet(e.bytes);
+    }
+
+    private void remove(K key) {
+        Entry old = pinned.remove(key);
+        if (old == null) {
+            old = evictable.remove(key);
+        }
+        if (old != null) {
+            bytes.addAndGet(-old.bytes);
+        }
+    }
+
+    private int size() {
+        return pinned.size() + evictable.size();
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        long ttl = limits.ttl().toNanos();
+        return ttl > 0 && !isPinned(e) && now - e.loadedAt > ttl;
+    }
+
+    private static boolean isPinned(Entry e) {
+        return !e.reloadable || !e.budget.getUserChanges().isEmpty();
+    }
+
+    private boolean overLimit() {
+        return size() > limits.maxEntries() || bytes.get() > limits.maxBytes();
+    }
+
+    /*
+     * Εκκαθάριση μέχρι το 90% των ορίων: πρώτα τα ληγμένα, μετά τα παλαιότερα σε χρήση.
+     * Εξετάζει μόνο τα budgets που μπορούν να φύγουν. Τρέχει με το lock (από put / putIfAbsent).
+     */
+    private void evictIfNeeded() {
+        if (!overLimit() || evictable.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        int targetEntries = Math.max(1, (int) (limits.maxEntries() * 0.9));
+        long targetBytes = (long) (limits.maxBytes() * 0.9);
+
+        //Οι χρόνοι πρόσβασης "παγώνουν" εδώ, ώστε η ταξινόμηση να μη βλέπει αλλαγές
+        List<Candidate<K>> candidates = new ArrayList<>();
+        for (var me : evictable.entrySet()) {
+            Entry e = me.getValue();
+            candidates.add(new Candidate<>(me.getKey(), e, isExpired(e, now), e.lastAccess));
+        }
+        candidates.sort(Comparator.comparing((Candidate<K> c) -> !c.expired())
+                .thenComparingLong(Candidate::lastAccess));
+
+        for (Candidate<K> c : candidates) {
+            if (size() <= targetEntries && bytes.get() <= targetBytes) {
+                break;
+            }
+            Entry e = c.entry();
+            //Αλλαγή χρήστη που δεν έχει φτάσει ακόμη στο readmit: μένει
+            if (!isPinned(e) && evictable.remove(c.key(), e)) {
+                bytes.addAndGet(-e.bytes);
+                if (c.expired()) {
+                    expirations.increment();
+                } else {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+}
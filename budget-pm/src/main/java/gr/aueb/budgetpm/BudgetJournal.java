@@ -0,0 +1,168 @@
+package gr.aueb.budgetpm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Ημερολόγιο (write-ahead log) αλλαγών χρήστη.
+ *
+ * Κάθε setUserValue γράφεται ως μία γραμμή στο τέλος του αρχείου και γίνεται fsync
+ * (μια μαζική αλλαγή, π.χ. scaleAll, γράφει όλες τις γραμμές της με ένα fsync),
+ * οπότε μια αποθήκευση κοστίζει O(αλλαγής) και ένα crash δεν χάνει αλλαγές.
+ * Μορφή γραμμής (tab-separated): country, year, code, value, timestamp (ms), totalRevenue, totalExpenses.
+ * Τα σύνολα του budget γράφονται μαζί με κάθε αλλαγή, ώστε ένα έτος που δεν είναι στο snapshot
+ * να ξαναχτίζεται σωστά.
+ *
+ * Το {@link BudgetRepository} συμπυκνώνει περιοδικά το ημερολόγιο (ένα για όλες τις χώρες του)
+ * σε snapshot (all-budgets.json):
+ * το τρέχον αρχείο μετονομάζεται σε .old ({@link #rotate()}), γράφεται το snapshot
+ * και μετά το .old διαγράφεται. Η φόρτωση διαβάζει snapshot + .old + τρέχον αρχείο.
+ */
+class BudgetJournal implements AutoCloseable {
+
+    /** Μία καταγεγραμμένη αλλαγή. */
+    record Entry(String country, int year, String code, long value, long timestamp, Totals totals) {}
+
+    /** Έσοδα και έξοδα του budget τη στιγμή της αλλαγής. */
+    record Totals(long revenue, long expenses) {}
+
+    private final Path file;
+    private final Path rotatedFile;
+
+    private FileChannel channel;
+    private long appendedSinceRotate;
+
+    BudgetJournal(Path file) {
+        this.file = file;
+        this.rotatedFile = file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    //Το ημερολόγιο που αντιστοιχεί σε ένα αρχείο snapshot (π.χ. all-budgets.json.journal)
+    static Path forSnapshot(Path snapshotFile) {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal");
+    }
+
+    //Προσθήκη αλλαγών του ίδιου budget (μία γραμμή η καθεμία) και ένα fsync πριν επιστρέψει
+    synchronized void append(String country, int year, Totals totals, Map<String, Long> values) throws IOException {
+        if (channel == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        long now = System.currentTimeMillis();
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, Long> e : values.entrySet()) {
+            lines.append(country).append('\t').append(year).append('\t').append(e.getKey()).append('\t')
+                    .append(e.getValue()).append('\t').append(now).append('\t').append(totals.revenue())
+                    .append('\t').append(totals.expenses()).append('\n');
+        }
+        ByteBuffer buf = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        channel.force(false);
+        appendedSinceRotate += values.size();
+    }
+
+    //Αλλαγές που γράφτηκαν από την τελευταία συμπύκνωση
+    synchronized long getAppendedSinceRotate() {
+        return appendedSinceRotate;
+    }
+
+    //Αν υπάρχουν αλλαγές στον δίσκο (τρέχον αρχείο ή .old) που δεν έχουν γίνει snapshot
+    boolean hasEntries() {
+        return Files.exists(file) || Files.exists(rotatedFile);
+    }
+
+    /**
+     * Κλείνει το τρέχον αρχείο και το μετονομάζει σε .old. Νέες αλλαγές πάνε σε νέο αρχείο.
+     * Επιστρέφει το .old, που ο καλών διαγράφει αφού γράψει το snapshot.
+     * Αν έμεινε .old από διακοπείσα συμπύκνωση, το τρέχον αρχείο προστίθεται στο τέλος του
+     * αντί να το αντικαταστήσει, ώστε να μη χαθεί καμία αλλαγή.
+     */
+    synchronized Path rotate() throws IOException {
+        close();
+        if (Files.exists(file)) {
+            if (Files.exists(rotatedFile)) {
+                appendTo(rotatedFile, file);
+                Files.delete(file);
+            } else {
+                Files.move(file, rotatedFile);
+            }
+        }
+        appendedSinceRotate = 0;
+        return rotatedFile;
+    }
+
+    private static void appendTo(Path target, Path source) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long end = out.size();
+
+            //Ημιτελής τελευταία γραμμή (crash στη μέση): κλείνει, ώστε να μην κολλήσει με την επόμενη
+            if (end > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                out.read(last, end - 1);
+                if (last.get(0) != '\n') {
+                    end += out.write(ByteBuffer.wrap(new byte[] {'\n'}), end);
+                }
+            }
+
+            long pos = 0;
+            long size = in.size();
+            while (pos < size) {
+                pos += in.transferTo(pos, size - pos, out.position(end + pos));
+            }
+            out.force(false);
+        }
+    }
+
+    /**
+     * Ξαναπαίζει (με τη σειρά) το .old που τυχόν έμεινε από διακοπείσα συμπύκνωση
+     * και μετά το τρέχον αρχείο. Ημιτελής τελευταία γραμμή (crash στη μέση) αγνοείται.
+     */
+    void replay(Consumer<Entry> consumer) throws IOException {
+        replayFile(rotatedFile, consumer);
+        replayFile(file, consumer);
+    }
+
+    private static void replayFile(Path path, Consumer<Entry> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t");
+                if (f.length != 7) continue;
+                try {
+                    Totals totals = new Totals(Long.parseLong(f[5]), Long.parseLong(f[6]));
+                    consumer.accept(new Entry(f[0], Integer.parseInt(f[1]), f[2],
+                            Long.parseLong(f[3]), Long.parseLong(f[4]), totals));
+                } catch (NumberFormatException e) {
+                    //Κατεστραμμένη γραμμή: την προσπερνάμε
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package gr.aueb.budgetpm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Budgets όλων των χωρών, ανά (χώρα, έτος).
+ *
+ * - Μία κοινή φραγμένη cache ({@link BudgetCache}) για όλες τις χώρες.
+ * - Το πολύ μία φόρτωση σε εξέλιξη ανά (χώρα, έτος), όποιος κι αν τη ζήτησε
+ *   (CLI, GUI, HTTP server, batch).
+ * - Μαζική φόρτωση {@link #getAll(Collection, Collection)}: οι χώρες φορτώνονται παράλληλα και,
+ *   για πολλά έτη μιας χώρας, κάθε δείκτης ζητείται μία φορά για όλο το εύρος.
+ * - Ένα αρχείο αποθήκευσης (snapshot + ημερολόγιο) για όλες τις χώρες.
+ *
+ * Ο {@link BudgetYearManager} είναι η όψη μίας χώρας πάνω σε ένα repository.
+ */
+public final class BudgetRepository {
+
+    //Κλειδί της cache· η χώρα πάντα με κεφαλαία
+    record Key(String country, int year) {}
+
+    //Κοινός executor για τις φορτώσεις (virtual threads, δεν κρατάει ζωντανό το JVM)
+    private static final ExecutorService LOADER = Executors.newVirtualThreadPerTaskExecutor();
+
+    //Το repository της εφαρμογής (βλ. BudgetYearManager.forCountry)
+    private static final BudgetRepository SHARED = new BudgetRepository();
+
+    //Όριο χρόνου για μαζική φόρτωση εύρους ετών
+    private static final Duration RANGE_TIMEOUT = Duration.ofSeconds(30);
+
+    //Μετά από τόσες αλλαγές στο ημερολόγιο, συμπύκνωση σε snapshot στο παρασκήνιο
+    private static final long COMPACT_EVERY = 1000;
+
+    private final BudgetCache<Key> budgets;
+
+    //Φορτώσεις σε εξέλιξη: το πολύ μία ανά (χώρα, έτος)
+    private final Map<Key, CompletableFuture<Budget>> inFlight = new ConcurrentHashMap<>();
+
+    //Ημερολόγιο αλλαγών χρήστη και το snapshot του (null αν δεν έχει ενεργοποιηθεί)
+    private volatile BudgetJournal journal;
+    private volatile Path snapshotFile;
+    private final Object compactionLock = new Object();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    public BudgetRepository() {
+        this(BudgetCache.Limits.fromSystemProperties());
+    }
+
+    BudgetRepository(BudgetCache.Limits limits) {
+        this.budgets = new BudgetCache<>(limits);
+    }
+
+    /** Το κοινό repository της εφαρμογής. */
+    public static BudgetRepository shared() {
+        return SHARED;
+    }
+
+    static String normalize(String countryCode) {
+        if (countryCode == null || countryCode.isBlank()) {
+            throw new IllegalArgumentException("countryCode is empty");
+        }
+        return countryCode.trim().toUpperCase();
+    }
+
+    /**
+     * Το budget της χώρας για το έτος, από την cache ή (μία φορά) από την πηγή δεικτών.
+     * Μπλοκάρει μέχρι να ολοκληρωθεί η φόρτωση.
+     */
+    public Budget getOrLoad(String countryCode, int year) {
+        return join(getOrLoadAsync(countryCode, year));
+    }
+
+    /**
+     * Μη-μπλοκαριστή εκδοχή του {@link #getOrLoad(String, int)}: ολοκληρωμένο future
+     * αν είναι στην cache, αλλιώς η μοναδική φόρτωση σε εξέλιξη του (χώρα, έτος).
+     */
+    public CompletableFuture<Budget> getOrLoadAsync(String countryCode, int year) {
+        Key key = new Key(normalize(countryCode), year);
+        Budget cached = budgets.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<Budget> mine = new CompletableFuture<>();
+        CompletableFuture<Budget> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing;
+        }
+        LOADER.execute(() -> complete(key, mine, () -> loadYear(key)));
+        return mine;
+    }
+
+    /**
+     * Όλα τα budgets για κάθε συνδυασμό χώρας και έτους, μπλοκάροντας μέχρι να φορτωθούν.
+     *
+     * @return χώρα -> (έτος -> budget), με τις χώρες στη σειρά που δόθηκαν και τα έτη ταξινομημένα
+     */
+    public Map<String, Map<Integer, Budget>> getAll(Collection<String> countries, Collection<Integer> years) {
+        return join(getAllAsync(countries, years));
+    }
+
+    /**
+     * Μη-μπλοκαριστή εκδοχή του {@link #getAll(Collection, Collection)}.
+     * Όλες οι χώρες ξεκινούν μαζί. Σε κάθε χώρα, όσα έτη λείπουν (και δεν φορτώνονται ήδη)
+     * φορτώνονται με ένα αίτημα εύρους ανά δείκτη αν είναι περισσότερα από ένα.
+     */
+    public CompletableFuture<Map<String, Map<Integer, Budget>>> getAllAsync(Collection<String> countries,
+                                                                          Collection<Integer> years) {
+        Map<String, Map<Integer, CompletableFuture<Budget>>> pending = new LinkedHashMap<>();
+        List<CompletableFuture<Budget>> all = new ArrayList<>();
+        for (String c : countries) {
+            String country = normalize(c);
+            if (!pending.containsKey(country)) {
+                Map<Integer, CompletableFuture<Budget>> byYear = loadYears(country, new TreeSet<>(years));
+                pending.put(country, byYear);
+                all.addAll(byYear.values());
+            }
+        }
+
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, Map<Integer, Budget>> result = new LinkedHashMap<>();
+            for (var e : pending.entrySet()) {
+                Map<Integer, Budget> byYear = new TreeMap<>();
+                e.getValue().forEach((year, f) -> byYear.put(year, f.join()));
+                result.put(e.getKey(), byYear);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Μαζική φόρτωση όλων των ετών [fromYear, toYear] μιας χώρας (βλ. {@link #getAllAsync}).
+     *
+     * @return τα budgets του εύρους, ταξινομημένα ανά έτος
+     */
+    public Map<Integer, Budget> preloadRange(String countryCode, int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("fromYear > toYear");
+        }
+        List<Integer> years = new ArrayList<>();
+        for (int year = fromYear; year <= toYear; year++) {
+            years.add(year);
+        }
+        String country = normalize(countryCode);
+        return getAll(List.of(country), years).get(country);
+    }
+
+    /** Τα έτη της χώρας που είναι στην cache, ταξινομημένα. */
+    public Set<Integer> getLoadedYears(String countryCode) {
+        String country = normalize(countryCode);
+        Set<Integer> years = new TreeSet<>();
+        for (Key key : budgets.keys()) {
+            if (key.country().equals(country)) {
+                years.add(key.year());
+            }
+        }
+        return years;
+    }
+
+    /** Βάζει χειροκίνητα ένα budget (π.χ. από αρχείο). Δεν φεύγει ποτέ από την cache. */
+    public void put(String countryCode, int year, Budget budget) {
+        Key key = new Key(normalize(countryCode), year);
+        budgets.put(key, track(key, budget), false);
+    }
+
+    /** Μετρητές της κοινής cache. */
+    public BudgetCache.Stats getCacheStats() {
+        return budgets.stats();
+    }
+
+    //Τα futures των ετών: από την cache, από φόρτωση σε εξέλιξη ή από νέα φόρτωση
+    private Map<Integer, CompletableFuture<Budget>> loadYears(String country, Set<Integer> years) {
+        Map<Integer, CompletableFuture<Budget>> result = new TreeMap<>();
+        NavigableMap<Integer, CompletableFuture<Budget>> owned = new TreeMap<>();
+
+        for (int year : years) {
+            Key key = new Key(country, year);
+            Budget cached = budgets.get(key);
+            if (cached != null) {
+                result.put(year, CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            CompletableFuture<Budget> mine = new CompletableFuture<>();
+            CompletableFuture<Budget> existing = inFlight.putIfAbsent(key, mine);
+            if (existing != null) {
+                result.put(year, existing);
+            } else {
+                owned.put(year, mine);
+                result.put(year, mine);
+            }
+        }
+
+        if (owned.size() == 1) {
+            var e = owned.entrySet().iterator().next();
+            Key key = new Key(country, e.getKey());
+            LOADER.execute(() -> complete(key, e.getValue(), () -> loadYear(key)));
+        } else if (!owned.isEmpty()) {
+            LOADER.execute(() -> loadRange(country, owned));
+        }
+        return result;
+    }
+
+    //Η φόρτωση φεύγει από τις "σε εξέλιξη" πριν ολοκληρωθεί το future: όποιος δει μια αποτυχία
+    //και ξαναζητήσει το έτος ξεκινά νέα φόρτωση και δεν παίρνει πάλι την ίδια αποτυχία
+    private void complete(Key key, CompletableFuture<Budget> future, Supplier<Budget> load) {
+        Budget b;
+        try {
+            b = load.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            return;
+        }
+        inFlight.remove(key, future);
+        future.complete(b);
+    }
+
+    //Φόρτωση ενός έτους από την πηγή δεικτών και καταχώρηση στην cache
+    private Budget loadYear(Key key) {
+        Budget b = new Budget(key.year(), key.country());
+        b.loadFromApi();
+
+        Map<String, String> failed = new TreeMap<>();
+        b.getFetchResults().forEach((indicator, r) -> {
+            if (r.isFailed()) {
+                failed.put(indicator, r.error());
+            }
+        });
+        if (!failed.isEmpty()) {
+            throw loadFailure(key.country() + " " + key.year(), failed);
+        }
+
+        //Αν στο μεταξύ μπήκε budget χειροκίνητα (put/loadAll), κρατάμε εκείνο
+        Budget existing = budgets.putIfAbsent(key, track(key, b), true);
+        return existing != null ? existing : b;
+    }
+
+    //Ένα αίτημα εύρους (date=from:to) ανά δείκτη για όλα τα έτη που ανέλαβε αυτή η φόρτωση
+    private void loadRange(String country, NavigableMap<Integer, CompletableFuture<Budget>> owned) {
+        try {
+            int fromYear = owned.firstKey();
+            int toYear = owned.lastKey();
+
+            Map<String, CompletableFuture<IndicatorSource.Response<Map<Integer, Double>>>> pending = new HashMap<>();
+            for (String indicator : Budget.INDICATORS) {
+                pending.put(indicator, WorldBankClient.configured()
+                        .fetchSeries(country, indicator, fromYear, toYear, RANGE_TIMEOUT));
+            }
+
+            Map<String, Map<Integer, Double>> series = new HashMap<>();
+            Map<String, String> failed = new TreeMap<>();
+            for (var entry : pending.entrySet()) {
+                try {
+                    IndicatorSource.Response<Map<Integer, Double>> resp = entry.getValue().join();
+                    if (resp.stale()) {
+                        System.out.println("Προσοχή: Το WorldBank δεν είναι διαθέσιμο, παλιές τιμές " + entry.getKey()
+                                + " για " + country + " " + fromYear + "-" + toYear + " από την τοπική cache");
+                    }
+                    series.put(entry.getKey(), resp.value());
+                } catch (CompletionException e) {
+                    Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+                    failed.put(entry.getKey(),
+                            (cause.getMessage() != null) ? cause.getMessage() : cause.getClass().getSimpleName());
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw loadFailure(country + " " + fromYear + "-" + toYear, failed);
+            }
+
+            for (var e : owned.entrySet()) {
+                Key key = new Key(country, e.getKey());
+                complete(key, e.getValue(), () -> {
+                    Map<String, Long> metrics = new HashMap<>();
+                    for (var s : series.entrySet()) {
+                        Double percent = s.getValue().get(key.year());
+                        if (percent != null) {
+                            metrics.put(s.getKey(), Budget.percentToAmount(percent));
+                        }
+                    }
+                    Budget b = new Budget(key.year(), country);
+                    b.loadFromMetrics(metrics);
+                    Budget existing = budgets.putIfAbsent(key, track(key, b), true);
+                    return existing != null ? existing : b;
+                });
+            }
+        } catch (RuntimeException e) {
+            //Ό,τι δεν ολοκληρώθηκε αποτυγχάνει, ώστε να μην περιμένει κανείς για πάντα
+            owned.forEach((year, f) -> inFlight.remove(new Key(country, year), f));
+            owned.values().forEach(f -> f.completeExceptionally(e));
+        }
+    }
+
+    /*
+     * Αποτυχία (σφάλμα, timeout, ανοιχτός breaker) έστω και ενός δείκτη: η φόρτωση αποτυγχάνει
+     * και δεν μπαίνει στην cache budget με μηδενικά, ώστε το επόμενο αίτημα να ξαναδοκιμάσει.
+     */
+    private static UncheckedIOException loadFailure(String what, Map<String, String> failed) {
+        return new UncheckedIOException(new IOException("Αποτυχία φόρτωσης " + what + ": " + failed));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ενεργοποιεί το ημερολόγιο αλλαγών για το snapshot αρχείο (π.χ. data/all-budgets.json).
+     * Από εδώ και πέρα κάθε setUserValue (οποιασδήποτε χώρας) γράφεται (με fsync) στο
+     * all-budgets.json.journal, και το {@link #saveAll(Path)} στο ίδιο αρχείο κάνει συμπύκνωση.
+     *
+     * Ό,τι έχει ήδη γραφτεί (snapshot, ημερολόγιο, .old από διακοπείσα συμπύκνωση) φορτώνεται
+     * πρώτα όπως με {@link #loadAll(Path)}: η συμπύκνωση γράφει το snapshot από τη μνήμη και
+     * μετά σβήνει το ημερολόγιο, άρα ό,τι δεν είχε φορτωθεί θα χανόταν.
+     * Αν η φόρτωση αποτύχει, το ημερολόγιο δεν ενεργοποιείται.
+     */
+    public void enableJournal(Path snapshotFile) throws IOException {
+        Path snapshot = snapshotFile.toAbsolutePath().normalize();
+        BudgetJournal j = new BudgetJournal(BudgetJournal.forSnapshot(snapshot));
+        if (Files.exists(snapshot) || j.hasEntries()) {
+            loadAll(snapshot);
+        }
+        this.snapshotFile = snapshot;
+        this.journal = j;
+    }
+
+    //Ακούει τις αλλαγές χρήστη του budget (cache και ημερολόγιο)
+    private Budget track(Key key, Budget b) {
+        b.setChangeListener((changed, values) -> onUserValues(key, changed, values));
+        return b;
+    }
+
+    private void onUserValues(Key key, Budget b, Map<String, Long> values) {
+        //Με αλλαγή χρήστη το budget καρφώνεται στην cache, ακόμη κι αν είχε ήδη φύγει
+        budgets.readmit(key, b);
+
+        BudgetJournal j = journal;
+        if (j == null) {
+            return;
+        }
+
+        try {
+            j.append(key.country(), key.year(), new BudgetJournal.Totals(b.getTotalRevenue(), b.getTotalExpenses()),
+                    values);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Αποτυχία εγγραφής στο ημερολόγιο: " + e.getMessage(), e);
+        }
+
+        if (j.getAppendedSinceRotate() >= COMPACT_EVERY && compactionScheduled.compareAndSet(false, true)) {
+            LOADER.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("Σφάλμα συμπύκνωσης ημερολογίου: " + e.getMessage());
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Συμπύκνωση: το τρέχον ημερολόγιο κλείνει (rotate), γράφεται νέο snapshot
+     * και μόνο τότε σβήνεται το παλιό ημερολόγιο. Αν διακοπεί στη μέση,
+     * το loadAll ξαναπαίζει το παλιό ημερολόγιο πάνω στο προηγούμενο snapshot.
+     */
+    public void compact() throws IOException {
+        BudgetJournal j = journal;
+        if (j == null) {
+            throw new IllegalStateException("journal is not enabled");
+        }
+
+        synchronized (compactionLock) {
+            Path rotated = j.rotate();
+            writeSnapshot(snapshotFile);
+            Files.deleteIfExists(rotated);
+        }
+    }
+
+    /**
+     * Αποθηκεύει ΟΛΑ τα budgets (όλων των χωρών και ετών) σε ένα JSON αρχείο,
+     * μαζί με τις αλλαγές χρήστη (userChanges).
+     */
+    public void saveAll(Path file) throws IOException {
+        if (journal != null && file.toAbsolutePath().normalize().equals(snapshotFile)) {
+            compact();
+        } else {
+            writeSnapshot(file);
+        }
+    }
+
+    private void writeSnapshot(Path file) throws IOException {
+        JSONArray arr = new JSONArray();
+
+        budgets.forEach((key, b) -> {
+            JSONObject obj = new JSONObject();
+            obj.put("country", key.country());
+            obj.put("year", key.year());
+            obj.put("totalRevenue", b.getTotalRevenue());
+            obj.put("totalExpenses", b.getTotalExpenses());
+
+            //Τιμές API: χωρίς αυτές το budget δεν ξαναχτίζεται όπως ήταν
+            JSONObject api = new JSONObject();
+            for (var v : b.getApiValues().entrySet()) {
+                api.put(v.getKey(), v.getValue());
+            }
+            obj.put("apiValues", api);
+
+            // Αποθήκευση αλλαγών χρήστη
+            JSONObject changes = new JSONObject();
+            for (var ch : b.getUserChanges().entrySet()) {
+                changes.put(ch.getKey(), ch.getValue());
+            }
+            obj.put("userChanges", changes);
+
+            arr.put(obj);
+        });
+
+        JSONObject root = new JSONObject();
+        root.put("budgets", arr);
+
+        //Προσωρινό αρχείο + μετακίνηση, ώστε ένα crash να μην αφήσει μισό snapshot
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, root.toString(2), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Βάση για έτος που υπάρχει μόνο στο ημερολόγιο (όχι στο snapshot): οι τιμές API
+     * ξαναχτίζονται με κατανομή των συνόλων που γράφτηκαν με την αλλαγή.
+     * Έτσι οι αλλαγές χρήστη δεν εφαρμόζονται πάνω σε budget χωρίς κατηγορίες.
+     */
+    private static Budget baseForJournal(Key key, BudgetJournal.Totals totals) {
+        Budget b = new Budget(key.year(), key.country());
+        b.loadFromTotals(totals.revenue(), totals.expenses());
+        return b;
+    }
+
+    /**
+     * Φορτώνει τα budgets από ένα JSON αρχείο (snapshot) στην cache και ξαναπαίζει τις
+     * αλλαγές του ημερολογίου που γράφτηκαν μετά το snapshot. Όσα (χώρα, έτος) υπάρχουν στο
+     * αρχείο αντικαθιστούν τα τρέχοντα· τα υπόλοιπα της cache (π.χ. άλλες χώρες) μένουν.
+     * Διαβάζει και παλιά αρχεία μίας χώρας ("country" στη ρίζα).
+     */
+    public void loadAll(Path file) throws IOException {
+        Map<Key, Budget> loaded = new HashMap<>();
+
+        if (Files.exists(file)) {
+            String json = Files.readString(file, StandardCharsets.UTF_8);
+            JSONObject root = new JSONObject(json);
+            String rootCountry = root.optString("country", null);
+
+            JSONArray arr = root.getJSONArray("budgets");
+
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject obj = arr.getJSONObject(i);
+
+                String country = obj.optString("country", rootCountry);
+                if (country == null) {
+                    continue;
+                }
+                Key key = new Key(normalize(country), obj.getInt("year"));
+
+                Budget b = new Budget(key.year(), key.country());
+                long revenue = obj.getLong("totalRevenue");
+                long expenses = obj.getLong("totalExpenses");
+                if (obj.has("apiValues")) {
+                    b.setTotals(revenue, expenses);
+                    JSONObject api = obj.getJSONObject("apiValues");
+                    Map<String, Long> apiValues = new HashMap<>();
+                    for (String code : api.keySet()) {
+                        apiValues.put(code, api.getLong(code));
+                    }
+                    b.restoreApiValues(apiValues);
+                } else {
+                    //Παλιό snapshot χωρίς τιμές API: ξαναχτίζονται από τα σύνολα
+                    b.loadFromTotals(revenue, expenses);
+                }
+
+                // Φόρτωση αλλαγών χρήστη
+                if (obj.has("userChanges")) {
+                    JSONObject changes = obj.getJSONObject("userChanges");
+                    for (String code : changes.keySet()) {
+                        b.setUserValue(code, changes.getLong(code));
+                    }
+                }
+
+                loaded.put(key, b);
+            }
+        }
+
+        // Αλλαγές μετά το snapshot (οι τιμές είναι απόλυτες, άρα η επανάληψη είναι ασφαλής)
+        new BudgetJournal(BudgetJournal.forSnapshot(file)).replay(e -> {
+            Key key = new Key(normalize(e.country()), e.year());
+            Budget b = loaded.computeIfAbsent(key, k -> baseForJournal(k, e.totals()));
+            try {
+                b.setUserValue(e.code(), e.value());
+            } catch (IllegalArgumentException ex) {
+                //Άγνωστη κατηγορία: αγνοείται
+            }
+        });
+
+        //Χωρίς αλλαγές χρήστη ένα budget ξαναφορτώνεται από την πηγή, άρα μπορεί να φύγει από την cache.
+        //Όσα έχουν αλλαγές καρφώνονται από την ίδια την cache.
+        for (var entry : loaded.entrySet()) {
+            budgets.put(entry.getKey(), track(entry.getKey(), entry.getValue()), true);
+        }
+    }
+}
@@ -1,87 +1,153 @@
 package gr.aueb.budgetpm;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Ένα Scenario κρατάει "override" τιμές ανά ΚΑΤΗΓΟΡΙΑ (π.χ. HOSPITALS, PHARMA).
  * Δεν πειράζει το base budget· απλώς επιτρέπει σύγκριση baseline vs scenario.
+ *
+ * Το σενάριο είναι ελαφρύ overlay πάνω στο (αμετάβλητο) CategorySnapshot του base:
+ * - η ποσοστιαία μεταβολή εφαρμόζεται κατά την ανάγνωση, δεν αντιγράφονται οι κατηγορίες,
+ * - κρατιούνται μόνο οι τιμές που όρισε ο χρήστης (αραιό delta),
+ * - ένα σενάριο που προκύπτει από άλλο ({@link #derive(String)}) μοιράζεται τα layers του
+ *   γονέα· όποιο από τα δύο αλλάξει αργότερα αντιγράφει πρώτα μόνο το δικό του delta.
+ * Η αλυσίδα layers έχει μέγιστο βάθος, οπότε η αναζήτηση είναι O(1).
  */
 public class BudgetScenario {
 
+    //Πάνω από τόσα layers η αλυσίδα συμπτύσσεται σε ένα
+    private static final int MAX_DEPTH = 8;
+
+    /** Ένα επίπεδο overrides πάνω από το προηγούμενο. Δεν αλλάζει αφού μοιραστεί. */
+    private static final class Layer {
+        final Layer parent;
+        final Map<String, Long> delta;
+        final int depth;
+
+        Layer(Layer parent, Map<String, Long> delta) {
+            this.parent = parent;
+            this.delta = delta;
+            this.depth = (parent == null) ? 1 : parent.depth + 1;
+        }
+
+        Long find(String key) {
+            for (Layer l = this; l != null; l = l.parent) {
+                Long v = l.delta.get(key);
+                if (v != null) {
+                    return v;
+                }
+            }
+            return null;
+        }
+
+        //Όλα τα overrides της αλυσίδας σε έναν χάρτη (τα πιο πρόσφατα κερδίζουν)
+        Map<String, Long> flatten() {
+            Map<String, Long> merged = (parent == null) ? new HashMap<>() : parent.flatten();
+            merged.putAll(delta);
+            return merged;
+        }
+    }
+
     private final String name;
-    private final Budget baseBudget;
-    private final Map<String, Long> categoryOverrides = new HashMap<>();
+    private final CategorySnapshot base;
+    private final double percentChange;
+    private final double factor;
+
+    private Layer head;
+    //true όταν το head το βλέπει και άλλο σενάριο (πρέπει να αντιγραφεί πριν αλλάξει)
+    private boolean headShared;
 
     public BudgetScenario(String name, Budget baseBudget) {
-        this.name = name;
-        this.baseBudget = baseBudget;
+        this(name, baseBudget.getCategorySnapshot(), 0.0, new Layer(null, new HashMap<>()));
     }
 
     public BudgetScenario(String name, Budget baseBudget, double percentChange) {
-        this(name, baseBudget);
-
-        //Εφαρμόζουμε ποσοστιαία μεταβολή σε όλες τις κατηγορίες baseline
-        for (BudgetCategory c : baseBudget.getCategories()) {
-            String catName = c.getName().toUpperCase();
-            long base = c.getAmount();
-            long modified = Math.round(base * (1 + percentChange / 100.0));
-            if (modified < 0) modified = 0;
-            categoryOverrides.put(catName, modified);
-        }
+        this(name, baseBudget.getCategorySnapshot(), percentChange, new Layer(null, new HashMap<>()));
     }
 
+    private BudgetScenario(String name, CategorySnapshot base, double percentChange, Layer head) {
+        this.name = name;
+        this.base = base;
+        this.percentChange = percentChange;
+        this.factor = 1 + percentChange / 100.0;
+        this.head = head;
+    }
+
+    /**
+     * Νέο σενάριο με τις τρέχουσες τιμές αυτού. Δεν αντιγράφει τίποτα: οι αλλαγές
+     * που γίνονται μετά σε οποιοδήποτε από τα δύο δεν φαίνονται στο άλλο.
+     */
+    public synchronized BudgetScenario derive(String newName) {
+        headShared = true;
+
+        Layer parent = head;
+        if (parent.depth >= MAX_DEPTH) {
+            parent = new Layer(null, parent.flatten());
+        }
+
+        return new BudgetScenario(newName, base, percentChange, new Layer(parent, new HashMap<>()));
+    }
 
     public String getName() {
         return name;
     }
 
-    public void setCategoryValue(String categoryName, long value) {
-        categoryOverrides.put(categoryName.toUpperCase(), value);
+    public double getPercentChange() {
+        return percentChange;
+    }
+
+    public synchronized void setCategoryValue(String categoryName, long value) {
+        if (headShared) {
+            head = new Layer(head.parent, new HashMap<>(head.delta));
+            headShared = false;
+        }
+        head.delta.put(categoryName.toUpperCase(), value);
     }
 
     /**
      * Επιστρέφει την τιμή της κατηγορίας στο scenario:
      * - αν υπάρχει override, το επιστρέφει
-     * - αλλιώς επιστρέφει την baseline τιμή από το base budget (ΤΕΛΙΚΗ τιμή).
+     * - αλλιώς επιστρέφει την baseline τιμή του snapshot με την ποσοστιαία μεταβολή.
      */
-    public long getCategoryValue(String categoryName) {
+    public synchronized long getCategoryValue(String categoryName) {
         String key = categoryName.toUpperCase();
-        if (categoryOverrides.containsKey(key)) {
-            return categoryOverrides.get(key);
+        Long v = head.find(key);
+        if (v != null) {
+            return v;
         }
         return getBaselineCategoryValue(key);
     }
 
-    //Επιστρέφει baseline (τελική) τιμή μιας κατηγορίας από το base budget.
+    //Baseline τιμή μιας κατηγορίας (από το snapshot) με εφαρμογή της μεταβολής
     private long getBaselineCategoryValue(String categoryName) {
-        long sum = 0;
-        for (BudgetCategory c : baseBudget.getCategories()) {
-            if (c.getName().equalsIgnoreCase(categoryName)) {
-                sum += c.getAmount();
-            }
+        long amount = base.amountByName(categoryName);
+        if (factor == 1.0) {
+            return amount;
         }
-        return sum;
+        long modified = Math.round(amount * factor);
+        return Math.max(0, modified);
     }
 
     //Επιστρέφει ΟΛΕΣ τις κατηγορίες και τις τιμές τους στο scenario
-    public Map<String, Long> getAllCategoryValues() {
+    public synchronized Map<String, Long> getAllCategoryValues() {
         Map<String, Long> result = new HashMap<>();
 
-        for (BudgetCategory c : baseBudget.getCategories()) {
-            String name = c.getName().toUpperCase();
-            result.put(name, getCategoryValue(name));
+        for (String key : base.getUpperNames()) {
+            result.put(key, getCategoryValue(key));
         }
 
         //Αν υπάρχουν overrides για κατηγορίες που δεν υπήρχαν στο base, τις προσθέτουμε
-        for (var e : categoryOverrides.entrySet()) {
+        for (var e : head.flatten().entrySet()) {
             result.putIfAbsent(e.getKey(), e.getValue());
         }
 
         return result;
     }
 
-    public Map<String, Long> getOverrides() {
-        return categoryOverrides;
+    //Οι τιμές που όρισε ρητά ο χρήστης (χωρίς την ποσοστιαία μεταβολή)
+    public synchronized Map<String, Long> getOverrides() {
+        return Collections.unmodifiableMap(head.flatten());
     }
 }
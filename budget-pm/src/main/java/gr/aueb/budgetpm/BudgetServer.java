@@ -0,0 +1,403 @@
+package gr.aueb.budgetpm;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Ενσωματωμένος HTTP server (JDK httpserver) που δίνει τα budgets ως JSON.
+ *
+ * Endpoints (μόνο GET):
+ * - /budget/{country}/{year}                         κατηγορίες και σύνολα ενός έτους
+ * - /compare?countries=GR,IT&year=2020               σύγκριση χωρών σε ένα έτος
+ * - /compare?country=GR&years=2019,2020              σύγκριση ετών μιας χώρας
+ * - /scenario?country=GR&year=2020&percent=-5[&CODE=ποσό ...]   σενάριο χωρίς αποθήκευση
+ *
+ * Κάθε αίτημα τρέχει σε δικό του virtual thread και τα budgets έρχονται από το κοινό
+ * BudgetRepository (άρα ίδια cache με CLI/GUI και μία φόρτωση ανά χώρα και έτος).
+ * Οι απαντήσεις γράφονται απευθείας στο socket με JsonWriter. Το ETag βγαίνει από την
+ * έκδοση των budgets, οπότε ένα αίτημα με If-None-Match παίρνει 304 χωρίς σώμα.
+ */
+public final class BudgetServer {
+
+    private static final Pattern COUNTRY = Pattern.compile("[A-Za-z]{2,3}");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private BudgetServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /** Ξεκινά τον server στη θύρα port (0 = οποιαδήποτε ελεύθερη), μόνο στο loopback. */
+    public static BudgetServer start(int port) throws IOException {
+        return start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /** Ξεκινά τον server στη διεύθυνση address (π.χ. 0.0.0.0 για όλα τα interfaces). */
+    public static BudgetServer start(InetSocketAddress address) throws IOException {
+        HttpServer http = HttpServer.create(address, 0);
+        BudgetServer s = new BudgetServer(http);
+        http.createContext("/budget/", ex -> s.handle(ex, s::budget));
+        http.createContext("/compare", ex -> s.handle(ex, s::compare));
+        http.createContext("/scenario", ex -> s.handle(ex, s::scenario));
+        http.createContext("/", ex -> s.handle(ex, e -> {
+            throw new HttpError(404, "Άγνωστο endpoint: " + e.getRequestURI().getPath());
+        }));
+        http.setExecutor(s.executor);
+        http.start();
+        return s;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    //Σφάλμα με HTTP status (400/404/405/502)
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Endpoint {
+        void serve(HttpExchange ex) throws IOException;
+    }
+
+    private void handle(HttpExchange ex, Endpoint endpoint) throws IOException {
+        try {
+            if (!ex.getRequestMethod().equals("GET")) {
+                throw new HttpError(405, "Επιτρέπεται μόνο GET");
+            }
+            endpoint.serve(ex);
+        } catch (HttpError e) {
+            sendError(ex, e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(ex, 500, String.valueOf(e.getMessage()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    //GET /budget/{country}/{year}
+    private void budget(HttpExchange ex) throws IOException {
+        String[] path = ex.getRequestURI().getPath().split("/");
+        if (path.length != 4) {
+            throw new HttpError(404, "Χρήση: /budget/{country}/{year}");
+        }
+        Budget b = load(country(path[2]), year(path[3]));
+        CategorySnapshot snap = b.getCategorySnapshot();
+
+        String etag = etag(List.of(b), List.of(snap));
+        if (notModified(ex, etag)) {
+            return;
+        }
+
+        try (JsonWriter w = open(ex, etag)) {
+            w.beginObject();
+            w.name("country").value(b.getCountryCode());
+            w.name("year").value(b.getYear());
+            w.name("version").value(snap.getVersion());
+            w.name("totalRevenue").value(snap.getTotalRevenue());
+            w.name("totalExpenses").value(snap.getTotalExpenses());
+            w.name("balance").value(App.computeBalance(snap.getTotalRevenue(), b.getCurrentExpenses()));
+            w.name("categories").beginArray();
+            for (BudgetCategory c : snap.getCategories()) {
+                w.beginObject();
+                w.name("code").value(c.getCode());
+                w.name("name").value(c.getName().trim());
+                w.name("amount").value(c.getAmount());
+                w.endObject();
+            }
+            w.endArray();
+            w.endObject();
+        }
+    }
+
+    //GET /compare?countries=GR,IT&year=2020 ή /compare?country=GR&years=2019,2020
+    private void compare(HttpExchange ex) throws IOException {
+        Map<String, String> q = query(ex);
+        List<String> labels = new ArrayList<>();
+        List<CompletableFuture<Budget>> futures = new ArrayList<>();
+
+        if (q.containsKey("countries")) {
+            int year = year(required(q, "year"));
+            for (String c : q.get("countries").split(",")) {
+                String country = country(c);
+                labels.add(country);
+                futures.add(BudgetRepository.shared().getOrLoadAsync(country, year));
+            }
+        } else {
+            String country = country(required(q, "country"));
+            for (String y : required(q, "years").split(",")) {
+                int year = year(y);
+                labels.add(String.valueOf(year));
+                futures.add(BudgetRepository.shared().getOrLoadAsync(country, year));
+            }
+        }
+        if (labels.size() < 2) {
+            throw new HttpError(400, "Χρειάζονται τουλάχιστον δύο budgets για σύγκριση");
+        }
+
+        //Οι φορτώσεις ξεκίνησαν όλες μαζί· εδώ απλώς περιμένουμε
+        List<Budget> budgets = new ArrayList<>(futures.size());
+        List<CategorySnapshot> snaps = new ArrayList<>(futures.size());
+        for (CompletableFuture<Budget> f : futures) {
+            Budget b = join(f);
+            budgets.add(b);
+            snaps.add(b.getCategorySnapshot());
+        }
+
+        String etag = etag(budgets, snaps);
+        if (notModified(ex, etag)) {
+            return;
+        }
+
+        List<CountryComparator.AlignedRow> rows = CountryComparator.compareAll(budgets);
+        try (JsonWriter w = open(ex, etag)) {
+            w.beginObject();
+            w.name("columns").beginArray();
+            for (String label : labels) {
+                w.value(label);
+            }
+            w.endArray();
+            w.name("rows").beginArray();
+            for (CountryComparator.AlignedRow row : rows) {
+                w.beginObject();
+                w.name("code").value(row.getCode());
+                w.name("name").value(row.getCategory().trim());
+                w.name("values").beginArray();
+                for (int i = 0; i < row.size(); i++) {
+                    w.value(row.value(i));
+                }
+                w.endArray();
+                w.endObject();
+            }
+            w.endArray();
+            w.endObject();
+        }
+    }
+
+    //GET /scenario?country=GR&year=2020&percent=-5&MIN_HEALTH=1000 ...
+    private void scenario(HttpExchange ex) throws IOException {
+        Map<String, String> q = query(ex);
+        Budget b = load(country(q.getOrDefault("country", "GR")), year(required(q, "year")));
+        CategorySnapshot snap = b.getCategorySnapshot();
+
+        double percent;
+        try {
+            percent = Double.parseDouble(q.getOrDefault("percent", "0"));
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Μη έγκυρο percent");
+        }
+
+        BudgetScenario sc = new BudgetScenario("http", b, percent);
+        //Οι παράμετροι που επηρεάζουν το αποτέλεσμα, σε σταθερή σειρά (για το ETag)
+        Map<String, Long> overrides = new TreeMap<>();
+        for (var e : q.entrySet()) {
+            String code = e.getKey().toUpperCase();
+            if (CategoryIndex.idOf(code) < 0) {
+                continue;
+            }
+            long value;
+            try {
+                value = Long.parseLong(e.getValue());
+            } catch (NumberFormatException nfe) {
+                throw new HttpError(400, "Μη έγκυρο ποσό για " + code);
+            }
+            sc.setCategoryValue(snap.nameOf(code), value);
+            overrides.put(code, value);
+        }
+
+        //Οι ίδιες παράμετροι στην ίδια έκδοση δίνουν το ίδιο αποτέλεσμα
+        String etag = etag(List.of(b), List.of(snap), "percent=" + percent + "&" + overrides);
+        if (notModified(ex, etag)) {
+            return;
+        }
+
+        try (JsonWriter w = open(ex, etag)) {
+            w.beginObject();
+            w.name("country").value(b.getCountryCode());
+            w.name("year").value(b.getYear());
+            w.name("percent").value(percent);
+            w.name("categories").beginArray();
+            long baseTotal = 0;
+            long scenarioTotal = 0;
+            CategoryTree tree = AllocationMatrix.configured().tree();
+            for (BudgetCategory c : snap.getCategories()) {
+                long value = sc.getCategoryValue(c.getName());
+                w.beginObject();
+                w.name("code").value(c.getCode());
+                w.name("name").value(c.getName().trim());
+                w.name("baseline").value(c.getAmount());
+                w.name("scenario").value(value);
+                w.endObject();
+                if (tree.parent(CategoryIndex.idOf(c.getCode())) == CategoryTree.ROOT) {
+                    baseTotal += c.getAmount();
+                    scenarioTotal += value;
+                }
+            }
+            w.endArray();
+            //Σύνολα Υπουργείων (όπως το compare scenario του CLI)
+            w.name("baselineMinistries").value(baseTotal);
+            w.name("scenarioMinistries").value(scenarioTotal);
+            w.endObject();
+        }
+    }
+
+    //Βοηθητικές μέθοδοι
+
+    private static Budget load(String country, int year) {
+        return join(BudgetRepository.shared().getOrLoadAsync(country, year));
+    }
+
+    private static Budget join(CompletableFuture<Budget> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+            throw new HttpError(502, "Αποτυχία φόρτωσης: " + cause.getMessage());
+        }
+    }
+
+    private static String country(String s) {
+        if (!COUNTRY.matcher(s).matches()) {
+            throw new HttpError(400, "Μη έγκυρος κωδικός χώρας: " + s);
+        }
+        return s.toUpperCase();
+    }
+
+    private static int year(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Μη έγκυρο έτος: " + s);
+        }
+    }
+
+    private static String required(Map<String, String> q, String key) {
+        String v = q.get(key);
+        if (v == null || v.isEmpty()) {
+            throw new HttpError(400, "Λείπει η παράμετρος " + key);
+        }
+        return v;
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> q = new LinkedHashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return q;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                q.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return q;
+    }
+
+    /*
+     * ETag από την ταυτότητα και την έκδοση κάθε budget (το identityHashCode ξεχωρίζει
+     * ένα budget που αντικαταστάθηκε με loadAll/load year και ξεκινά πάλι από έκδοση 0).
+     */
+    private static String etag(List<Budget> budgets, List<CategorySnapshot> snaps) {
+        return etag(budgets, snaps, null);
+    }
+
+    /*
+     * Με params (π.χ. οι παράμετροι του σεναρίου) μπαίνει και η σύνοψή τους (SHA-256),
+     * ώστε διαφορετικές παράμετροι να μη δίνουν ποτέ το ίδιο ETag.
+     */
+    private static String etag(List<Budget> budgets, List<CategorySnapshot> snaps, String params) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < budgets.size(); i++) {
+            Budget b = budgets.get(i);
+            sb.append(b.getCountryCode()).append('-').append(b.getYear()).append('-')
+                    .append(Integer.toHexString(System.identityHashCode(b))).append('-')
+                    .append(snaps.get(i).getVersion()).append('.');
+        }
+        if (params != null) {
+            sb.append(digest(params));
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String digest(String s) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean notModified(HttpExchange ex, String etag) throws IOException {
+        String match = ex.getRequestHeaders().getFirst("If-None-Match");
+        if (match == null || !(match.equals(etag) || match.equals("*"))) {
+            return false;
+        }
+        ex.getResponseHeaders().set("ETag", etag);
+        ex.sendResponseHeaders(304, -1);
+        return true;
+    }
+
+    //Headers 200 με chunked σώμα· το JSON γράφεται κατευθείαν στο stream της απάντησης
+    private static JsonWriter open(HttpExchange ex, String etag) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.getResponseHeaders().set("ETag", etag);
+        ex.sendResponseHeaders(200, 0);
+        return new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 8192));
+    }
+
+    private static void sendError(HttpExchange ex, int status, String message) throws IOException {
+        //Αν έχουν ήδη σταλεί headers δεν μπορούμε να αλλάξουμε το status
+        if (ex.getResponseCode() != -1) {
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, 0);
+        try (JsonWriter w = new JsonWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8))) {
+            w.beginObject().name("error").value(message).endObject();
+        }
+    }
+}
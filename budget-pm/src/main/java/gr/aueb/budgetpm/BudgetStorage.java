@@ -2,15 +2,48 @@ package gr.aueb.budgetpm;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 /**
  * Αποθήκευση και ανάκτηση Budget αντικειμένων σε/από JSON αρχεία.
+ *
+ * Υπάρχει και δυαδική μορφή (.bin) που κρατάει ΟΛΗ την κατάσταση (σύνολα, τιμές API,
+ * αλλαγές χρήστη) και διαβάζεται με memory-mapping, χωρίς ενδιάμεσα JSON strings:
+ *
+ * <pre>
+ * int    MAGIC ("BPM1")
+ * short  FORMAT_VERSION
+ * str    countryCode          (str = unsigned short μήκος + UTF-8 bytes)
+ * int    year
+ * long   totalRevenue
+ * long   totalExpenses
+ * short  πλήθος τιμών API,    μετά ανά τιμή: str code, long value
+ * short  πλήθος αλλαγών χρήστη, μετά ανά τιμή: str code, long value
+ * int    CRC32C όλων των προηγούμενων bytes
+ * </pre>
  */
 public class BudgetStorage {
 
+    //"BPM1" σε ASCII
+    private static final int MAGIC = 0x42504D31;
+    private static final short FORMAT_VERSION = 1;
+
+    public static final String BINARY_SUFFIX = ".bin";
+
     /**
      * Αποθηκεύει ένα Budget σε JSON αρχείο στο path που δίνουμε.
      */
@@ -39,4 +72,148 @@ public class BudgetStorage {
 
         return b;
     }
+
+    /**
+     * Αποθηκεύει ένα Budget στη δυαδική μορφή (χωρίς απώλειες).
+     * Γράφει σε προσωρινό αρχείο και μετακινεί, ώστε να μη μείνει ποτέ μισό αρχείο.
+     */
+    public static void saveBudgetBinary(Budget budget, Path file) throws IOException {
+        byte[] country = budget.getCountryCode().getBytes(StandardCharsets.UTF_8);
+        Map<String, Long> api = budget.getApiValues();
+        Map<String, Long> changes = budget.getUserChanges();
+
+        int size = 4 + 2 + 2 + country.length + 4 + 8 + 8
+                + 2 + entriesSize(api)
+                + 2 + entriesSize(changes)
+                + 4;
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC);
+        buf.putShort(FORMAT_VERSION);
+        buf.putShort((short) country.length).put(country);
+        buf.putInt(budget.getYear());
+        buf.putLong(budget.getTotalRevenue());
+        buf.putLong(budget.getTotalExpenses());
+        putEntries(buf, api);
+        putEntries(buf, changes);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, buf.array());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Φορτώνει Budget από δυαδικό αρχείο μέσω MappedByteBuffer.
+     * Ελέγχει magic, έκδοση μορφής και checksum πριν δημιουργήσει το Budget.
+     */
+    public static Budget loadBudgetBinary(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = ch.size();
+            if (length < 4 + 2 + 4) {
+                throw new IOException("Πολύ μικρό αρχείο budget: " + file);
+            }
+
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            //Checksum πρώτα: δεν εμπιστευόμαστε μήκη από κατεστραμμένο αρχείο
+            CRC32C crc = new CRC32C();
+            ByteBuffer body = buf.duplicate().limit((int) length - 4);
+            crc.update(body);
+            int expected = buf.getInt((int) length - 4);
+            if ((int) crc.getValue() != expected) {
+                throw new IOException("Λάθος checksum στο αρχείο budget: " + file);
+            }
+
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("Δεν είναι αρχείο budget: " + file);
+            }
+            short version = buf.getShort();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Μη υποστηριζόμενη έκδοση μορφής " + version + ": " + file);
+            }
+
+            String countryCode = getString(buf);
+            int year = buf.getInt();
+            long revenues = buf.getLong();
+            long expenses = buf.getLong();
+
+            Budget b = new Budget(year, countryCode);
+            b.setTotals(revenues, expenses);
+
+            int apiCount = Short.toUnsignedInt(buf.getShort());
+            Map<String, Long> apiValues = new HashMap<>();
+            for (int i = 0; i < apiCount; i++) {
+                String code = getString(buf);
+                apiValues.put(code, buf.getLong());
+            }
+            b.restoreApiValues(apiValues);
+
+            int changeCount = Short.toUnsignedInt(buf.getShort());
+            for (int i = 0; i < changeCount; i++) {
+                String code = getString(buf);
+                b.setUserValue(code, buf.getLong());
+            }
+
+            return b;
+        }
+    }
+
+    /**
+     * Φορτώνει (παράλληλα) όλα τα δυαδικά snapshots ενός φακέλου.
+     * Αρχεία που δεν διαβάζονται αναφέρονται και παραλείπονται.
+     */
+    public static List<Budget> loadBinarySnapshots(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(dir)) {
+            list.filter(f -> f.getFileName().toString().endsWith(BINARY_SUFFIX)).forEach(files::add);
+        }
+
+        return files.parallelStream()
+                .map(f -> {
+                    try {
+                        return loadBudgetBinary(f);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Παράλειψη " + f + ": " + e.getMessage());
+                        return null;
+                    }
+                })
+                .filter(b -> b != null)
+                .toList();
+    }
+
+    private static int entriesSize(Map<String, Long> values) {
+        int size = 0;
+        for (String code : values.keySet()) {
+            size += 2 + code.getBytes(StandardCharsets.UTF_8).length + 8;
+        }
+        return size;
+    }
+
+    private static void putEntries(ByteBuffer buf, Map<String, Long> values) {
+        buf.putShort((short) values.size());
+        for (var e : values.entrySet()) {
+            byte[] code = e.getKey().getBytes(StandardCharsets.UTF_8);
+            buf.putShort((short) code.length).put(code);
+            buf.putLong(e.getValue());
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = Short.toUnsignedInt(buf.getShort());
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
 }
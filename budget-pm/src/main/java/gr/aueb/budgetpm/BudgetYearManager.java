@@ -1,125 +1,152 @@
 package gr.aueb.budgetpm;
 
+import java.io.IOException;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Set;
 import java.util.Collections;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.nio.file.Path;
-import java.nio.charset.StandardCharsets;
 
 /**
  * Διαχειρίζεται Budget αντικείμενα ανά έτος για μια συγκεκριμένη χώρα.
  *
+ * Είναι η όψη μίας χώρας πάνω σε ένα {@link BudgetRepository}:
  * - Φορτώνει από API όταν ζητηθεί ένα έτος πρώτη φορά.
- * - Κρατάει cache ώστε να μην κάνουμε άσκοπα πολλά API calls.
+ * - Κρατάει cache ώστε να μην κάνουμε άσκοπα πολλά API calls. Η cache είναι φραγμένη
+ *   (πλήθος, μνήμη, TTL, βλ. {@link BudgetCache}) και κοινή για όλες τις χώρες του repository:
+ *   budgets από το API μπορεί να φύγουν και να ξαναφορτωθούν, ενώ όσα έχουν αλλαγές χρήστη μένουν πάντα.
+ * - Είναι thread-safe: ταυτόχρονα αιτήματα για το ίδιο έτος μοιράζονται
+ *   μία φόρτωση (ένα CompletableFuture ανά έτος) αντί να καλούν ξανά το API.
+ * - Με {@link #enableJournal(Path)} κάθε αλλαγή χρήστη γράφεται αμέσως σε ημερολόγιο
+ *   (BudgetJournal), που συμπυκνώνεται στο παρασκήνιο σε snapshot.
+ *
+ * Αποθήκευση και ημερολόγιο αφορούν όλο το repository (όλες τις χώρες του), όχι μόνο αυτή τη χώρα.
  */
 public class BudgetYearManager {
 
+    //Ένας κοινός manager ανά χώρα, πάνω στο κοινό repository
+    private static final Map<String, BudgetYearManager> BY_COUNTRY = new ConcurrentHashMap<>();
+
     private final String countryCode;
-    private final Map<Integer, Budget> budgetsByYear = new HashMap<>();
+    private final BudgetRepository repository;
 
+    /**
+     * Manager με δικό του (ιδιωτικό) repository, π.χ. για tests και μετρήσεις.
+     * Για κοινή cache με την υπόλοιπη εφαρμογή βλ. {@link #forCountry(String)}.
+     */
     public BudgetYearManager(String countryCode) {
-        this.countryCode = countryCode;
+        this(countryCode, new BudgetRepository());
+    }
+
+    public BudgetYearManager(String countryCode, BudgetRepository repository) {
+        this.countryCode = BudgetRepository.normalize(countryCode);
+        this.repository = repository;
+    }
+
+    /**
+     * Ο κοινός manager της χώρας (δημιουργείται την πρώτη φορά), πάνω στο
+     * {@link BudgetRepository#shared()}. Όσοι τον ζητούν μοιράζονται cache και φορτώσεις σε εξέλιξη.
+     */
+    public static BudgetYearManager forCountry(String countryCode) {
+        return BY_COUNTRY.computeIfAbsent(BudgetRepository.normalize(countryCode),
+                c -> new BudgetYearManager(c, BudgetRepository.shared()));
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public BudgetRepository getRepository() {
+        return repository;
     }
 
     /**
      * Επιστρέφει το Budget για το συγκεκριμένο έτος.
      * Αν δεν υπάρχει, το δημιουργεί, το φορτώνει από το API και το αποθηκεύει.
+     * Μπλοκάρει μέχρι να ολοκληρωθεί η φόρτωση (βλ. {@link #getOrLoadAsync(int)}).
      */
     public Budget getOrLoad(int year) {
-        Budget b = budgetsByYear.get(year);
-        if (b == null) {
-            b = new Budget(year, countryCode);
-            b.loadFromApi();
-            budgetsByYear.put(year, b);
-        }
-        return b;
+        return repository.getOrLoad(countryCode, year);
     }
 
     /**
-     * Επιστρέφει τα έτη που έχουν ήδη φορτωθεί.
+     * Μη-μπλοκαριστή εκδοχή του {@link #getOrLoad(int)}.
+     * Αν το έτος είναι ήδη στην cache επιστρέφει ολοκληρωμένο future.
+     * Αλλιώς ξεκινά (ή επαναχρησιμοποιεί) τη μοναδική φόρτωση του έτους,
+     * ώστε ταυτόχρονοι καλούντες να μοιράζονται τα ίδια API calls.
+     */
+    public CompletableFuture<Budget> getOrLoadAsync(int year) {
+        return repository.getOrLoadAsync(countryCode, year);
+    }
+
+    /**
+     * Μαζική φόρτωση όλων των ετών [fromYear, toYear].
+     * Κάθε δείκτης ζητείται μία φορά για όλο το εύρος (date=from:to) αντί για ένα
+     * αίτημα ανά έτος, και γεμίζει ένα Budget ανά έτος.
+     * Έτη που είναι ήδη στην cache δεν αγγίζονται· όσα φορτώνονται ήδη, περιμένονται.
+     *
+     * @return τα budgets του εύρους, ταξινομημένα ανά έτος
+     */
+    public Map<Integer, Budget> preloadRange(int fromYear, int toYear) {
+        return repository.preloadRange(countryCode, fromYear, toYear);
+    }
+
+    /**
+     * Επιστρέφει τα έτη που έχουν ήδη φορτωθεί (ταξινομημένα).
      */
     public Set<Integer> getLoadedYears() {
-        return Collections.unmodifiableSet(budgetsByYear.keySet());
+        return Collections.unmodifiableSet(repository.getLoadedYears(countryCode));
+    }
+
+    /**
+     * Μετρητές της cache (hits, misses, αφαιρέσεις λόγω ορίων / λήξης, μέγεθος).
+     * Η cache είναι κοινή για όλες τις χώρες του repository.
+     */
+    public BudgetCache.Stats getCacheStats() {
+        return repository.getCacheStats();
     }
 
     /**
      * Επιτρέπει να βάλουμε χειροκίνητα ένα budget για ένα έτος
-     * (π.χ. από αποθήκευση σε αρχείο).
+     * (π.χ. από αποθήκευση σε αρχείο). Δεν φεύγει ποτέ από την cache.
      */
     public void putBudget(int year, Budget budget) {
-        budgetsByYear.put(year, budget);
+        repository.put(countryCode, year, budget);
     }
 
     /**
- * Αποθηκεύει ΟΛΑ τα budgets (όλα τα έτη) σε ένα JSON αρχείο,
+     * Ενεργοποιεί το ημερολόγιο αλλαγών για το snapshot αρχείο (π.χ. data/all-budgets.json).
+     * Από εδώ και πέρα κάθε setUserValue γράφεται (με fsync) στο all-budgets.json.journal,
+     * και το {@link #saveAll(Path)} στο ίδιο αρχείο κάνει συμπύκνωση.
+     * Ό,τι είχε ήδη αποθηκευτεί στο snapshot και στο ημερολόγιο φορτώνεται πρώτα.
+     */
+    public void enableJournal(Path snapshotFile) throws IOException {
+        repository.enableJournal(snapshotFile);
+    }
+
+    /**
+     * Συμπύκνωση του ημερολογίου σε snapshot (βλ. {@link BudgetRepository#compact()}).
+     */
+    public void compact() throws IOException {
+        repository.compact();
+    }
+
+    /**
+ * Αποθηκεύει ΟΛΑ τα budgets (όλα τα έτη, όλων των χωρών του repository) σε ένα JSON αρχείο,
  * μαζί με τις αλλαγές χρήστη (userChanges).
  */
     public void saveAll(Path file) throws Exception {
-        JSONObject root = new JSONObject();
-        root.put("country", countryCode);
-
-        JSONArray arr = new JSONArray();
-
-        for (var entry : budgetsByYear.entrySet()) {
-            int year = entry.getKey();
-            Budget b = entry.getValue();
-
-            JSONObject obj = new JSONObject();
-            obj.put("year", year);
-            obj.put("totalRevenue", b.getTotalRevenue());
-            obj.put("totalExpenses", b.getTotalExpenses());
-
-            // Αποθήκευση αλλαγών χρήστη
-            JSONObject changes = new JSONObject();
-            for (var ch : b.getUserChanges().entrySet()) {
-                changes.put(ch.getKey(), ch.getValue());
-            }
-            obj.put("userChanges", changes);
-
-            arr.put(obj);
-        }
-
-        root.put("budgets", arr);
-
-        Files.writeString(file, root.toString(2), StandardCharsets.UTF_8);
+        repository.saveAll(file);
     }
 
-
-
-    //Φορτώνει τα budgets από ένα JSON αρχείο και τα περνάει στον manager
+    /**
+     * Φορτώνει τα budgets από ένα JSON αρχείο (snapshot) και τα περνάει στο repository
+     * (χωρίς να σβήσει όσα δεν είναι στο αρχείο).
+     * Μετά ξαναπαίζει τις αλλαγές του ημερολογίου που γράφτηκαν μετά το snapshot.
+     */
     public void loadAll(Path file) throws Exception {
-        String json = Files.readString(file, StandardCharsets.UTF_8);
-        JSONObject root = new JSONObject(json);
-
-        JSONArray arr = root.getJSONArray("budgets");
-
-        budgetsByYear.clear();
-
-        for (int i = 0; i < arr.length(); i++) {
-            JSONObject obj = arr.getJSONObject(i);
-
-            int year = obj.getInt("year");
-            long rev = obj.getLong("totalRevenue");
-            long exp = obj.getLong("totalExpenses");
-
-            Budget b = new Budget(year, countryCode);
-            b.setTotals(rev, exp);
-
-            // Φόρτωση αλλαγών χρήστη
-            if (obj.has("userChanges")) {
-                JSONObject changes = obj.getJSONObject("userChanges");
-                for (String key : changes.keySet()) {
-                    long value = changes.getLong(key);
-                    b.setUserValue(key, value);
-                }
-            }
-
-            this.budgetsByYear.put(year, b);
-        }
+        repository.loadAll(file);
     }
 
 }
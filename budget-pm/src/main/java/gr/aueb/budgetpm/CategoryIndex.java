@@ -0,0 +1,44 @@
+package gr.aueb.budgetpm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Αντιστοίχιση των κωδικών κατηγοριών (π.χ. MIN_HEALTH) σε πυκνά ακέραια ids 0..size()-1.
+ * Το σύνολο κατηγοριών είναι σταθερό (Budget.CATEGORY_MAP), οπότε οι τιμές ενός
+ * Budget μπορούν να κρατιούνται σε long[] με θέση = id, χωρίς hashing και boxing.
+ */
+final class CategoryIndex {
+
+    //Ταξινομημένοι κωδικοί: η θέση στον πίνακα είναι το id
+    private static final String[] CODES = Budget.CATEGORY_MAP.keySet().stream().sorted().toArray(String[]::new);
+    private static final String[] NAMES = Arrays.stream(CODES).map(Budget.CATEGORY_MAP::get).toArray(String[]::new);
+
+    private static final Map<String, Integer> IDS = new HashMap<>();
+    static {
+        for (int i = 0; i < CODES.length; i++) {
+            IDS.put(CODES[i], i);
+        }
+    }
+
+    private CategoryIndex() {}
+
+    static int size() {
+        return CODES.length;
+    }
+
+    //id του κωδικού ή -1 αν ο κωδικός δεν είναι γνωστή κατηγορία
+    static int idOf(String code) {
+        Integer id = IDS.get(code);
+        return id != null ? id : -1;
+    }
+
+    static String code(int id) {
+        return CODES[id];
+    }
+
+    static String name(int id) {
+        return NAMES[id];
+    }
+}
@@ -0,0 +1,115 @@
+package gr.aueb.budgetpm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Αμετάβλητη "φωτογραφία" των κατηγοριών ενός Budget σε μια συγκεκριμένη έκδοση.
+ *
+ * Το Budget τη χτίζει μία φορά ανά αλλαγή κατάστασης (setUserValue, φόρτωση, setTotals)
+ * και την επιστρέφει αυτούσια σε κάθε getCategories(), χωρίς αντιγραφή.
+ * Περιέχει και έτοιμα ευρετήρια ανά κωδικό και ανά όνομα για γρήγορες αναζητήσεις.
+ */
+public final class CategorySnapshot {
+
+    private final long version;
+    private final long totalRevenue;
+    private final long totalExpenses;
+    private final List<BudgetCategory> categories;
+    private final Map<String, BudgetCategory> byCode;
+    private final Map<String, Long> amountByUpperName;
+
+    private CategorySnapshot(long version, long totalRevenue, long totalExpenses, Builder b) {
+        this.version = version;
+        this.totalRevenue = totalRevenue;
+        this.totalExpenses = totalExpenses;
+        this.categories = Collections.unmodifiableList(b.list);
+        this.byCode = Collections.unmodifiableMap(b.codes);
+        this.amountByUpperName = Collections.unmodifiableMap(b.names);
+    }
+
+    //Συλλογή κατηγοριών: φτιάχνει κατευθείαν τα Frozen και τα ευρετήρια, χωρίς ενδιάμεσα αντικείμενα
+    static final class Builder {
+        private final List<BudgetCategory> list = new ArrayList<>();
+        private final Map<String, BudgetCategory> codes = new HashMap<>();
+        private final Map<String, Long> names = new HashMap<>();
+
+        Builder add(String code, String name, long amount) {
+            BudgetCategory frozen = new Frozen(code, name, amount);
+            list.add(frozen);
+            codes.put(code, frozen);
+            names.merge(name.toUpperCase(), amount, Long::sum);
+            return this;
+        }
+
+        CategorySnapshot build(long version, long totalRevenue, long totalExpenses) {
+            return new CategorySnapshot(version, totalRevenue, totalExpenses, this);
+        }
+    }
+
+    //Η έκδοση του Budget τη στιγμή που χτίστηκε το snapshot
+    public long getVersion() {
+        return version;
+    }
+
+    public long getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    public long getTotalExpenses() {
+        return totalExpenses;
+    }
+
+    //Οι κατηγορίες (μη τροποποιήσιμη λίστα)
+    public List<BudgetCategory> getCategories() {
+        return categories;
+    }
+
+    //Εμφανιζόμενο όνομα κωδικού ή ο ίδιος ο κωδικός αν δεν υπάρχει
+    public String nameOf(String code) {
+        BudgetCategory c = byCode.get(code);
+        return c != null ? c.getName() : code;
+    }
+
+    //Ποσό κατηγορίας με βάση το όνομα (χωρίς διάκριση πεζών/κεφαλαίων). Αν δεν υπάρχει, 0.
+    public long amountByName(String name) {
+        return amountByUpperName.getOrDefault(name.toUpperCase(), 0L);
+    }
+
+    //Τα ονόματα (κεφαλαία) όλων των κατηγοριών του snapshot
+    public Set<String> getUpperNames() {
+        return amountByUpperName.keySet();
+    }
+
+    //Κατηγορία που μοιράζεται μεταξύ καλούντων, άρα δεν επιτρέπει αλλαγές
+    private static final class Frozen extends BudgetCategory {
+
+        Frozen(String code, String name, long amount) {
+            super(code, name, amount);
+        }
+
+        @Override
+        public void setCode(String code) {
+            throw new UnsupportedOperationException("snapshot category is immutable");
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException("snapshot category is immutable");
+        }
+
+        @Override
+        public void setAmount(long amount) {
+            throw new UnsupportedOperationException("snapshot category is immutable");
+        }
+
+        @Override
+        public void addAmount(long delta) {
+            throw new UnsupportedOperationException("snapshot category is immutable");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package gr.aueb.budgetpm;
+
+import java.util.Arrays;
+
+/**
+ * Η ιεραρχία των κατηγοριών: υποκατηγορία -> Υπουργείο -> σύνολο δαπανών (GC.XPN.TOTL.GD.ZS).
+ * Χτίζεται από τον {@link AllocationMatrix} (κάθε πίνακας έχει τη δική του, βλ. tree()),
+ * ώστε ένα Υπουργείο ή μια υποκατηγορία από αρχείο ρυθμίσεων να μπαίνει και στα σύνολα.
+ * Κρατιέται σε πίνακες με θέση = id του CategoryIndex, ώστε το Budget να ανεβαίνει
+ * από ένα φύλλο στη ρίζα σε O(βάθους) χωρίς lookups.
+ */
+final class CategoryTree {
+
+    static final int ROOT = CategoryIndex.idOf(AllocationMatrix.ROOT_CODE);
+
+    private final int[] parent = new int[CategoryIndex.size()];
+    private final int[] childCount = new int[CategoryIndex.size()];
+    //Ids με σειρά από τα φύλλα προς τη ρίζα (για μαζικό υπολογισμό των συνόλων)
+    private final int[] bottomUp;
+
+    CategoryTree(AllocationMatrix m) {
+        Arrays.fill(parent, -1);
+
+        int[] order = new int[m.itemCount() + m.ministryCount() + 2];
+        int n = 0;
+        for (int j = 0; j < m.itemCount(); j++) {
+            int item = m.itemId(j);
+            link(item, m.ministryId(m.itemParent(j)));
+            order[n++] = item;
+        }
+        for (int k = 0; k < m.ministryCount(); k++) {
+            int ministry = m.ministryId(k);
+            link(ministry, ROOT);
+            order[n++] = ministry;
+        }
+        //Η κατηγορία υπολοίπου είναι κι αυτή παιδί της ρίζας (αν δεν είναι ήδη Υπουργείο)
+        int remainder = m.getRemainderId();
+        if (parent[remainder] < 0 && remainder != ROOT) {
+            link(remainder, ROOT);
+            order[n++] = remainder;
+        }
+        order[n++] = ROOT;
+        this.bottomUp = Arrays.copyOf(order, n);
+    }
+
+    private void link(int child, int p) {
+        parent[child] = p;
+        childCount[p]++;
+    }
+
+    //Γονέας του id ή -1 για τη ρίζα (και για κατηγορίες εκτός ιεραρχίας)
+    int parent(int id) {
+        return parent[id];
+    }
+
+    boolean isLeaf(int id) {
+        return childCount[id] == 0;
+    }
+
+    int[] bottomUp() {
+        return bottomUp;
+    }
+}
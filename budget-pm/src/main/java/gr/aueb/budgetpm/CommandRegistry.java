@@ -0,0 +1,166 @@
+package gr.aueb.budgetpm;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Πίνακας εντολών του CLI: trie με κλειδιά τις πρώτες λέξεις κάθε εντολής.
+ *
+ * Η γραμμή χωρίζεται σε λέξεις μία φορά και κερδίζει η μακρύτερη εντολή που ταιριάζει,
+ * άρα π.χ. το "compare countries" δεν καλύπτεται από το "compare" ανεξάρτητα από τη σειρά
+ * καταχώρισης. Το ίδιο αντικείμενο χρησιμοποιείται από το διαδραστικό CLI, το batch mode
+ * (BatchPlan) και το GuiApp.
+ */
+final class CommandRegistry {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final String[] NO_TOKENS = new String[0];
+
+    /** Εκτέλεση μιας εντολής με τα ήδη χωρισμένα ορίσματά της. */
+    @FunctionalInterface
+    interface Handler {
+        void run(Context ctx, Args args);
+    }
+
+    /**
+     * Πού γράφει μια εντολή και σε ποιο έτος δουλεύει (το "set year" το αλλάζει).
+     * Το CLI κρατά ένα για όλη τη συνεδρία· το GUI φτιάχνει νέο ανά εντολή.
+     */
+    static final class Context {
+        final PrintStream out;
+        int year;
+
+        Context(PrintStream out, int year) {
+            this.out = out;
+            this.year = year;
+        }
+    }
+
+    /** Μία καταχωρισμένη εντολή. exact: ταιριάζει μόνο χωρίς επιπλέον λέξεις (π.χ. "save all"). */
+    record Command(String name, boolean exact, Handler handler) {}
+
+    /** Εντολή + ορίσματα, έτοιμη για εκτέλεση (command == null για άγνωστη εντολή). */
+    record Invocation(Command command, Args args) {
+
+        boolean isKnown() {
+            return command != null;
+        }
+
+        void run(Context ctx) {
+            command.handler().run(ctx, args);
+        }
+    }
+
+    /**
+     * Οι λέξεις μιας γραμμής (συμπεριλαμβάνονται και οι λέξεις της εντολής, ώστε
+     * οι θέσεις να είναι ίδιες με το παλιό input.split), με τυπικές μετατροπές.
+     * Οι μετατροπές πετούν NumberFormatException με μήνυμα που δείχνει τη λέξη που δεν είναι αριθμός.
+     */
+    static final class Args {
+        private final String line;
+        private final String[] tokens;
+
+        Args(String line) {
+            this.line = line;
+            this.tokens = line.isEmpty() ? NO_TOKENS : WHITESPACE.split(line);
+        }
+
+        String line() {
+            return line;
+        }
+
+        String[] tokens() {
+            return tokens;
+        }
+
+        int size() {
+            return tokens.length;
+        }
+
+        String get(int i) {
+            return tokens[i];
+        }
+
+        int intAt(int i) {
+            try {
+                return Integer.parseInt(tokens[i]);
+            } catch (NumberFormatException e) {
+                throw notANumber(i);
+            }
+        }
+
+        long longAt(int i) {
+            try {
+                return Long.parseLong(tokens[i]);
+            } catch (NumberFormatException e) {
+                throw notANumber(i);
+            }
+        }
+
+        double doubleAt(int i) {
+            try {
+                return Double.parseDouble(tokens[i]);
+            } catch (NumberFormatException e) {
+                throw notANumber(i);
+            }
+        }
+
+        //Το μήνυμα τυπώνεται από τον handler (π.χ. "Σφάλμα στο preload: Μη έγκυρος αριθμός: 'x'")
+        private NumberFormatException notANumber(int i) {
+            return new NumberFormatException("Μη έγκυρος αριθμός: '" + tokens[i] + "'");
+        }
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        Command command;
+    }
+
+    private final Node root = new Node();
+
+    //Εντολή που δέχεται ορίσματα μετά τις λέξεις του ονόματος
+    void register(String name, Handler handler) {
+        add(name, false, handler);
+    }
+
+    //Εντολή χωρίς ορίσματα
+    void registerExact(String name, Handler handler) {
+        add(name, true, handler);
+    }
+
+    private void add(String name, boolean exact, Handler handler) {
+        Node node = root;
+        for (String word : WHITESPACE.split(name.trim())) {
+            node = node.children.computeIfAbsent(word, w -> new Node());
+        }
+        if (node.command != null) {
+            throw new IllegalStateException("Η εντολή υπάρχει ήδη: " + name);
+        }
+        node.command = new Command(name, exact, handler);
+    }
+
+    /**
+     * Βρίσκει την εντολή μιας (κανονικοποιημένης) γραμμής. Επιστρέφει πάντα Invocation·
+     * αν καμία εντολή δεν ταιριάζει, με command == null.
+     */
+    Invocation resolve(String line) {
+        Args args = new Args(line.trim());
+        String[] tokens = args.tokens();
+
+        Command best = null;
+        Node node = root;
+        for (int i = 0; i < tokens.length; i++) {
+            node = node.children.get(tokens[i]);
+            if (node == null) {
+                break;
+            }
+            Command c = node.command;
+            if (c != null && (!c.exact() || i == tokens.length - 1)) {
+                best = c;
+            }
+        }
+        return new Invocation(best, args);
+    }
+}
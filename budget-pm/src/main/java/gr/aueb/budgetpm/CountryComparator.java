@@ -1,12 +1,20 @@
 package gr.aueb.budgetpm;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
+import java.util.TreeMap;
 
 /**
- * Σύγκριση δύο budgets (συνήθως διαφορετικών χωρών) ανά κατηγορία.
+ * Σύγκριση budgets (συνήθως διαφορετικών χωρών) ανά κατηγορία.
  * Η σύγκριση γίνεται σε τελικές τιμές κατηγορίας (όπως τις βλέπει ο χρήστης στο CLI).
+ *
+ * Κάθε budget διαβάζεται μία φορά (από το snapshot του) και οι τιμές του μπαίνουν
+ * σε ευθυγραμμισμένες γραμμές ανά κατηγορία, οπότε το κόστος είναι γραμμικό
+ * στο πλήθος budgets × κατηγοριών, για 2 ή για N χώρες.
  */
 public final class CountryComparator {
 
@@ -16,30 +24,44 @@ public final class CountryComparator {
         if (a == null) throw new IllegalArgumentException("budget a is null");
         if (b == null) throw new IllegalArgumentException("budget b is null");
 
-        //Παίρνουμε τα δύο budgets
-        TreeSet<String> cats = new TreeSet<>();
-        for (BudgetCategory c : a.getCategories()) cats.add(c.getName().toUpperCase());
-        for (BudgetCategory c : b.getCategories()) cats.add(c.getName().toUpperCase());
-
         Map<String, ComparisonRow> res = new LinkedHashMap<>();
-        for (String cat : cats) {
-            long av = getCategoryAmount(a, cat);
-            long bv = getCategoryAmount(b, cat);
-            res.put(cat, new ComparisonRow(av, bv, bv - av));
+        for (AlignedRow row : compareAll(List.of(a, b))) {
+            long av = row.value(0);
+            long bv = row.value(1);
+            res.put(row.getCategory(), new ComparisonRow(av, bv, bv - av));
         }
         return res;
     }
 
+    /**
+     * Σύγκριση N budgets. Επιστρέφει μία γραμμή ανά κατηγορία (ταξινομημένες κατά όνομα),
+     * με την τιμή κάθε budget στη θέση του στη λίστα (0 αν δεν έχει την κατηγορία).
+     */
+    public static List<AlignedRow> compareAll(List<Budget> budgets) {
+        if (budgets == null || budgets.isEmpty()) throw new IllegalArgumentException("no budgets to compare");
+
+        int n = budgets.size();
+
+        //Ευρετήρια: όνομα (κεφαλαία) -> τιμές ανά budget, όνομα -> κωδικός
+        Map<String, long[]> valuesByName = new HashMap<>();
+        Map<String, String> codeByName = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            Budget budget = budgets.get(i);
+            if (budget == null) throw new IllegalArgumentException("budget " + i + " is null");
 
-    //Επιστρέφει ποσό κατηγορίας από το budget. Αν δεν υπάρχει, 0.
-    private static long getCategoryAmount(Budget budget, String categoryUpper) {
-        long sum = 0;
-        for (BudgetCategory c : budget.getCategories()) {
-            if (c.getName().equalsIgnoreCase(categoryUpper)) {
-                sum += c.getAmount();
+            for (BudgetCategory c : budget.getCategories()) {
+                String name = c.getName().toUpperCase();
+                valuesByName.computeIfAbsent(name, k -> new long[n])[i] += c.getAmount();
+                codeByName.putIfAbsent(name, c.getCode());
             }
         }
-        return sum;
+
+        List<AlignedRow> rows = new ArrayList<>(valuesByName.size());
+        for (var entry : new TreeMap<>(valuesByName).entrySet()) {
+            rows.add(new AlignedRow(entry.getKey(), codeByName.get(entry.getKey()), entry.getValue()));
+        }
+        return Collections.unmodifiableList(rows);
     }
 
     public static final class ComparisonRow {
@@ -53,4 +75,58 @@ public final class CountryComparator {
             this.diff = diff;
         }
     }
+
+    /**
+     * Μία κατηγορία σε N budgets: values[i] είναι η τιμή του i-οστού budget.
+     */
+    public static final class AlignedRow {
+        private final String category;
+        private final String code;
+        private final long[] values;
+
+        AlignedRow(String category, String code, long[] values) {
+            this.category = category;
+            this.code = code;
+            this.values = values;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public long value(int i) {
+            return values[i];
+        }
+
+        //Διαφορά budget j μείον budget i
+        public long diff(int i, int j) {
+            return values[j] - values[i];
+        }
+
+        //Θέση του budget με τη μεγαλύτερη τιμή
+        public int maxIndex() {
+            int best = 0;
+            for (int i = 1; i < values.length; i++) {
+                if (values[i] > values[best]) best = i;
+            }
+            return best;
+        }
+
+        //Θέση του budget με τη μικρότερη τιμή
+        public int minIndex() {
+            int best = 0;
+            for (int i = 1; i < values.length; i++) {
+                if (values[i] < values[best]) best = i;
+            }
+            return best;
+        }
+    }
 }
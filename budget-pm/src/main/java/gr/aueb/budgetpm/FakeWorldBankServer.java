@@ -0,0 +1,255 @@
+package gr.aueb.budgetpm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Τοπικός HTTP server που μιμείται το WorldBank API (/v2/country/{c}/indicator/{i}?date=...),
+ * για tests και μετρήσεις χωρίς δίκτυο.
+ *
+ * Απαντά με καταγεγραμμένες απαντήσεις: όσες δόθηκαν με {@link #record} και, αν οριστεί,
+ * όσες υπάρχουν σε μια {@link ResponseCache} (π.χ. data/cache από προηγούμενη εκτέλεση).
+ * Για άγνωστους δείκτες/χώρες δίνει το μήνυμα σφάλματος του API (200 με "message").
+ *
+ * Ρυθμίζεται και ενώ τρέχει:
+ * - καθυστέρηση ανά αίτημα (τυχαία στο [min, max]),
+ * - ποσοστό αποτυχιών (HTTP 500),
+ * - όριο αιτημάτων ανά δευτερόλεπτο, πάνω από το οποίο απαντά 429.
+ *
+ * Χρήση από το CLI: java ... FakeWorldBankServer [θύρα] [φάκελος cache] και μετά
+ * java -Dbudgetpm.worldbank.url=http://localhost:&lt;θύρα&gt;/v2 ... App
+ */
+public final class FakeWorldBankServer {
+
+    //Ίδιο σώμα με αυτό του API για άγνωστη χώρα / δείκτη
+    static final String NOT_FOUND_BODY = "[{\"message\":[{\"id\":\"120\",\"key\":\"Invalid value\","
+            + "\"value\":\"The provided parameter value is not valid\"}]}]";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, String> recorded = new ConcurrentHashMap<>();
+    private volatile ResponseCache replay;
+
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double errorRate;
+    private volatile int maxPerSecond;
+
+    //Μετρητές (για έλεγχο σε tests και για μετρήσεις)
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    //Παράθυρο ενός δευτερολέπτου για το όριο αιτημάτων
+    private final Object windowLock = new Object();
+    private long windowStart;
+    private int windowCount;
+
+    private FakeWorldBankServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /** Ξεκινά τον server στη θύρα port (0 = οποιαδήποτε ελεύθερη). */
+    public static FakeWorldBankServer start(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        FakeWorldBankServer s = new FakeWorldBankServer(http);
+        http.createContext("/v2/country/", s::handle);
+        http.setExecutor(s.executor);
+        http.start();
+        return s;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /** Η διεύθυνση για {@code new WorldBankClient(baseUrl())} ή -Dbudgetpm.worldbank.url. */
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v2";
+    }
+
+    /** Καταγεγραμμένη απάντηση για χώρα / δείκτη / date (έτος ή εύρος). */
+    public FakeWorldBankServer record(String countryCode, String indicator, String date, String body) {
+        recorded.put(ResponseCache.key(countryCode, indicator, date), body);
+        return this;
+    }
+
+    /** Απάντηση με μία τιμή (% ΑΕΠ), στη μορφή του API. */
+    public FakeWorldBankServer recordValue(String countryCode, String indicator, int year, double percent) {
+        String body = "[{\"page\":1,\"pages\":1,\"per_page\":50,\"total\":1},[{\"indicator\":{\"id\":\""
+                + indicator + "\"},\"country\":{\"id\":\"" + countryCode + "\"},\"date\":\"" + year
+                + "\",\"value\":" + percent + "}]]";
+        return record(countryCode, indicator, String.valueOf(year), body);
+    }
+
+    /** Απαντά και με ό,τι υπάρχει στην cache (ανεξάρτητα από το TTL της). */
+    public FakeWorldBankServer replayFrom(ResponseCache cache) {
+        this.replay = cache;
+        return this;
+    }
+
+    public FakeWorldBankServer withLatency(Duration min, Duration max) {
+        this.minLatencyMillis = min.toMillis();
+        this.maxLatencyMillis = Math.max(min.toMillis(), max.toMillis());
+        return this;
+    }
+
+    /** Ποσοστό (0..1) των αιτημάτων που απαντώνται με 500. */
+    public FakeWorldBankServer withErrorRate(double rate) {
+        this.errorRate = rate;
+        return this;
+    }
+
+    /** Μέγιστα αιτήματα ανά δευτερόλεπτο (0 = χωρίς όριο)· τα υπόλοιπα παίρνουν 429. */
+    public FakeWorldBankServer withThrottle(int perSecond) {
+        this.maxPerSecond = perSecond;
+        return this;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            requests.incrementAndGet();
+
+            if (!admit()) {
+                throttled.incrementAndGet();
+                ex.getResponseHeaders().set("Retry-After", "1");
+                ex.sendResponseHeaders(429, -1);
+                return;
+            }
+
+            sleepLatency();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failed.incrementAndGet();
+                ex.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            send(ex, 200, lookup(ex));
+        }
+    }
+
+    //Βρίσκει την καταγεγραμμένη απάντηση από το /v2/country/{c}/indicator/{i}?...&date=..[&page=N]
+    private String lookup(HttpExchange ex) {
+        String[] path = ex.getRequestURI().getPath().split("/");
+        if (path.length != 6 || !path[4].equals("indicator")) {
+            return NOT_FOUND_BODY;
+        }
+        String date = null;
+        int page = 1;
+        String query = ex.getRequestURI().getQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith("date=")) {
+                    date = pair.substring(5);
+                } else if (pair.startsWith("page=")) {
+                    try {
+                        page = Integer.parseInt(pair.substring(5));
+                    } catch (NumberFormatException e) {
+                        return NOT_FOUND_BODY;
+                    }
+                }
+            }
+        }
+        if (date == null) {
+            return NOT_FOUND_BODY;
+        }
+
+        String key;
+        try {
+            key = ResponseCache.key(path[3], path[5], date, page);
+        } catch (IllegalArgumentException e) {
+            return NOT_FOUND_BODY;
+        }
+        String body = recorded.get(key);
+        ResponseCache rc = replay;
+        if (body == null && rc != null) {
+            ResponseCache.Entry entry = rc.lookup(key);
+            body = (entry != null) ? entry.body() : null;
+        }
+        return (body != null) ? body : NOT_FOUND_BODY;
+    }
+
+    private boolean admit() {
+        int limit = maxPerSecond;
+        if (limit <= 0) {
+            return true;
+        }
+        synchronized (windowLock) {
+            long now = System.nanoTime();
+            if (now - windowStart >= 1_000_000_000L) {
+                windowStart = now;
+                windowCount = 0;
+            }
+            return ++windowCount <= limit;
+        }
+    }
+
+    private void sleepLatency() {
+        long min = minLatencyMillis;
+        long max = maxLatencyMillis;
+        if (max <= 0) {
+            return;
+        }
+        long millis = (max > min) ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * java ... FakeWorldBankServer [θύρα] [φάκελος cache] [καθυστέρηση ms] [ποσοστό σφαλμάτων] [αιτήματα/δευτ.]
+     * Προεπιλογές: 8089, data/cache, 0, 0, χωρίς όριο.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8089;
+        Path dir = Path.of((args.length > 1) ? args[1] : "data/cache");
+        long latency = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+        double errors = (args.length > 3) ? Double.parseDouble(args[3]) : 0;
+        int throttle = (args.length > 4) ? Integer.parseInt(args[4]) : 0;
+
+        FakeWorldBankServer s = start(port)
+                .replayFrom(new ResponseCache(dir, Duration.ZERO, Long.MAX_VALUE))
+                .withLatency(Duration.ofMillis(latency), Duration.ofMillis(latency))
+                .withErrorRate(errors)
+                .withThrottle(throttle);
+        System.out.println("Fake WorldBank API: " + s.baseUrl() + " (απαντήσεις από " + dir + ")");
+    }
+}
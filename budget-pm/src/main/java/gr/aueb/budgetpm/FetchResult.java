@@ -0,0 +1,35 @@
+package gr.aueb.budgetpm;
+
+/**
+ * Αποτέλεσμα φόρτωσης ενός δείκτη: τιμή, καμία τιμή από την πηγή (MISSING)
+ * ή αποτυχία (FAILED, με την αιτία), αντί για ένα 0 που δεν ξεχωρίζει τις περιπτώσεις.
+ * stale: η τιμή ήρθε από παλιά εγγραφή της cache γιατί το API δεν ήταν διαθέσιμο.
+ */
+public record FetchResult(Status status, long value, String error, boolean stale) {
+
+    public enum Status { VALUE, MISSING, FAILED }
+
+    public static FetchResult of(long value) {
+        return new FetchResult(Status.VALUE, value, null, false);
+    }
+
+    public static FetchResult staleOf(long value) {
+        return new FetchResult(Status.VALUE, value, null, true);
+    }
+
+    public static FetchResult missing() {
+        return new FetchResult(Status.MISSING, 0L, null, false);
+    }
+
+    public static FetchResult failed(String error) {
+        return new FetchResult(Status.FAILED, 0L, error, false);
+    }
+
+    public boolean hasValue() {
+        return status == Status.VALUE;
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+}
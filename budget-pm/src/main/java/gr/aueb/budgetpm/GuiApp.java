@@ -36,7 +36,12 @@ public class GuiApp extends JFrame {
     public GuiApp() {
         setupLookAndFeel();
 
-        this.yearManager = new BudgetYearManager("GR");
+        this.yearManager = BudgetYearManager.forCountry("GR");
+        try {
+            this.yearManager.enableJournal(Paths.get("data", "all-budgets.json"));
+        } catch (Exception e) {
+            System.err.println("Το ημερολόγιο αλλαγών δεν ενεργοποιήθηκε: " + e.getMessage());
+        }
 
         //Βασικές ρυθμίσεις παραθύρου
         this.setTitle("Πρωθυπουργός για μια μέρα - Dashboard Pro");
@@ -155,6 +160,17 @@ public class GuiApp extends JFrame {
         toolbar.add(btnToggle);
         toolbar.addSeparator();
         toolbar.add(new JLabel(" 💡 Tip: Διπλό κλικ σε Υπουργείο για ανάλυση | Διπλό κλικ σε ποσό για αλλαγή"));
+        toolbar.addSeparator();
+
+        //Εντολές του CLI (ίδιος πίνακας εντολών με το App)
+        JTextField txtCommand = new JTextField(20);
+        txtCommand.setToolTipText("Εντολή CLI, π.χ. solve balance 0 ή simulate 10000");
+        txtCommand.addActionListener(e -> {
+            runCommand(txtCommand.getText());
+            txtCommand.setText("");
+        });
+        toolbar.add(new JLabel(" Εντολή: "));
+        toolbar.add(txtCommand);
         mainPanel.add(toolbar, BorderLayout.NORTH);
 
         String[] columnNames = {"HiddenCode", "Υπουργείο", "Ποσό (€)"};
@@ -210,7 +226,8 @@ public class GuiApp extends JFrame {
     /**
      *          Λογικη
      * Φορτώνει τα δεδομένα για το επιλεγμένο έτος.
-     * Χρησιμοποιεί SwingWorker για να μην "παγώνει" το περιβάλλον.
+     * Η φόρτωση γίνεται ασύγχρονα από τον BudgetYearManager ώστε να μην "παγώνει"
+     * το περιβάλλον· η ενημέρωση του UI γίνεται πάλι στο Swing thread.
      */
     private void loadData() {
         try {
@@ -220,40 +237,62 @@ public class GuiApp extends JFrame {
             
             lblStatus.setText("Φόρτωση δεδομένων...");
             
-            new SwingWorker<Budget, Void>() {
-                @Override
-                protected Budget doInBackground() throws Exception {
-                    return yearManager.getOrLoad(currentYear);
+            yearManager.getOrLoadAsync(year).whenComplete((budget, err) -> SwingUtilities.invokeLater(() -> {
+                if (err != null) {
+                    Throwable cause = (err.getCause() != null) ? err.getCause() : err;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(GuiApp.this, "Σφάλμα κατά τη φόρτωση: " + cause.getMessage());
+                    lblStatus.setText("Σφάλμα.");
+                    return;
                 }
 
-                @Override
-                protected void done() {
-                    try {
-                        currentBudget = get();
-                        refreshTable();
-                        lblStatus.setText("Φορτώθηκε επιτυχώς: " + currentYear);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        JOptionPane.showMessageDialog(GuiApp.this, "Σφάλμα κατά τη φόρτωση: " + e.getMessage());
-                        lblStatus.setText("Σφάλμα.");
-                    }
+                //Αν στο μεταξύ ζητήθηκε άλλο έτος, αγνοούμε το παλιό αποτέλεσμα
+                if (year != currentYear) {
+                    return;
                 }
-            }.execute();
+                currentBudget = budget;
+                refreshTable();
+                lblStatus.setText("Φορτώθηκε επιτυχώς: " + year);
+            }));
             
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Παρακαλώ εισάγετε έγκυρο έτος.");
         }
     }
 
+    /**
+     * Εκτελεί μια εντολή του CLI στο επιλεγμένο έτος εκτός Swing thread και δείχνει
+     * την έξοδό της· μετά ξαναφορτώνεται ο πίνακας (η εντολή μπορεί να άλλαξε τιμές).
+     */
+    private void runCommand(String line) {
+        if (line.isBlank()) {
+            return;
+        }
+        int year = currentYear;
+        lblStatus.setText("Εκτέλεση: " + line.trim());
+
+        Thread.ofVirtual().start(() -> {
+            String output = App.runCaptured(line, year);
+            SwingUtilities.invokeLater(() -> {
+                JTextArea area = new JTextArea(output, 20, 80);
+                area.setEditable(false);
+                area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                JOptionPane.showMessageDialog(GuiApp.this, new JScrollPane(area), line.trim(),
+                        JOptionPane.PLAIN_MESSAGE);
+                loadData();
+            });
+        });
+    }
+
     private void refreshTable() {
         if (currentBudget == null) {
             return;
         }
 
         tableModel.setRowCount(0);
-        long grandTotal = 0;
 
-        List<BudgetCategory> categories = currentBudget.getCategories();
+        //Αντίγραφο, γιατί η λίστα του Budget είναι κοινή και αμετάβλητη
+        List<BudgetCategory> categories = new ArrayList<>(currentBudget.getCategories());
         
         //Ταξινόμηση λίστας κατά όνομα
         categories.sort((c1, c2) -> {
@@ -261,26 +300,20 @@ public class GuiApp extends JFrame {
         });
 
         for (BudgetCategory c : categories) {
-            boolean isMinistry = c.getCode().startsWith("MIN_") || c.getCode().startsWith("OTHER");
             boolean isSubCategory = c.getName().startsWith(" -");
 
             //Φιλτράρισμα
             if (showOnlyMinistries) {
                 if (!isSubCategory) {
                     addCategoryToTable(c);
-                    if (isMinistry) {
-                        grandTotal += c.getAmount();
-                    }
                 }
             } else {
                 addCategoryToTable(c);
-                if (isMinistry) {
-                    grandTotal += c.getAmount();
-                }
             }
         }
         
-        lblTotal.setText("Σύνολο: " + formatMoney(grandTotal));
+        //Σύνολο Υπουργείων από την ιεραρχία του Budget (O(1), χωρίς άθροιση του πίνακα)
+        lblTotal.setText("Σύνολο: " + formatMoney(currentBudget.getMinistriesTotal()));
     }
 
     private void addCategoryToTable(BudgetCategory c) {
@@ -474,16 +507,11 @@ public class GuiApp extends JFrame {
             
             String[] cols = {"Κατηγορία", String.valueOf(currentYear), String.valueOf(targetYear), "Διαφορά"};
             DefaultTableModel model = new DefaultTableModel(cols, 0);
+            CategorySnapshot names = currentBudget.getCategorySnapshot();
             
             for (String key : results.keySet()) {
                 if (key.startsWith("MIN_") || key.equals("GC.XPN.TOTL.GD.ZS")) {
-                     String name = key;
-                     for (BudgetCategory c : currentBudget.getCategories()) {
-                         if (c.getCode().equals(key)) {
-                             name = c.getName();
-                             break;
-                         }
-                     }
+                     String name = names.nameOf(key);
                      
                      BudgetComparator.ComparisonResult res = results.get(key);
                      String diffSign = (res.diff > 0) ? "+" : "";
@@ -0,0 +1,72 @@
+package gr.aueb.budgetpm;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Πηγή τιμών δεικτών (σε μορφή απάντησης του WorldBank API).
+ *
+ * Η προεπιλογή είναι το πραγματικό API ({@link WorldBankClient#configured()}). Σε tests και
+ * μετρήσεις χωρίς δίκτυο μπαίνει π.χ. ένας WorldBankClient προς τον {@link FakeWorldBankServer}.
+ */
+public interface IndicatorSource {
+
+    /**
+     * Σώμα της απάντησης για έναν δείκτη μιας χώρας (date = έτος ή εύρος "2000:2023").
+     * Ποτέ null: αν η πηγή δεν έχει δεδομένα, το σώμα απλώς δεν έχει τιμές (ή είναι η απάντηση
+     * σφάλματος του API, βλ. {@link WorldBankParser#isErrorPayload}). Αν το αίτημα απέτυχε,
+     * ολοκληρώνεται εξαιρετικά (π.χ. {@link StatusException}, timeout).
+     */
+    CompletableFuture<Response<String>> fetchIndicator(String countryCode, String indicator, String date,
+                                                       Duration timeout);
+
+    /**
+     * Ο δείκτης για όλα τα έτη [fromYear, toYear]: έτος -> τιμή (% ΑΕΠ).
+     * Έτη χωρίς τιμή δεν περιέχονται. Παλιό αν έστω και μία σελίδα ήταν παλιά.
+     */
+    CompletableFuture<Response<Map<Integer, Double>>> fetchSeries(String countryCode, String indicator,
+                                                                  int fromYear, int toYear, Duration timeout);
+
+    /**
+     * Όλες οι τιμές ενός δείκτη (χώρα ή "all", date = έτος ή εύρος), από όλες τις σελίδες
+     * της απάντησης. Κενή λίστα αν η πηγή δεν έχει δεδομένα.
+     */
+    CompletableFuture<Response<List<WorldBankParser.Point>>> fetchPoints(String countryCode, String indicator,
+                                                                         String date, Duration timeout);
+
+    /**
+     * Αποτέλεσμα της πηγής. stale = true όταν το API δεν ήταν διαθέσιμο (5xx ή σφάλμα δικτύου)
+     * και η τιμή ήρθε από παλιά εγγραφή της τοπικής cache.
+     */
+    record Response<T>(T value, boolean stale) {
+        public static <T> Response<T> fresh(T value) {
+            return new Response<>(value, false);
+        }
+    }
+
+    /** Απάντηση HTTP εκτός 200/304 (π.χ. 429, 500), μαζί με το Retry-After αν δόθηκε. */
+    final class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+        private final long retryAfterSeconds;
+
+        public StatusException(int status, long retryAfterSeconds) {
+            super("HTTP " + status);
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        //0 αν ο server δεν έστειλε Retry-After
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package gr.aueb.budgetpm;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Προστασία των αιτημάτων δικτύου προς έναν host (χρησιμοποιείται από τον WorldBankClient
+ * μόνο για ό,τι δεν εξυπηρετείται από την ResponseCache):
+ * - όριο χρόνου ανά προσπάθεια,
+ * - επαναλήψεις με εκθετική αναμονή και τυχαιότητα (full jitter) για timeouts,
+ *   σφάλματα δικτύου, 429 και 5xx (τηρείται και το Retry-After),
+ * - token bucket, ώστε οι μαζικές φορτώσεις να μένουν στο όριο του API,
+ * - circuit breaker: μετά από διαδοχικές αποτυχίες τα αιτήματα αποτυγχάνουν
+ *   αμέσως για λίγο, και μετά περνάει ένα δοκιμαστικό.
+ *
+ * Η κατάσταση (bucket, breaker) ανήκει στο αντικείμενο: ένας client, ένας guard.
+ * Όλα είναι ασύγχρονα· καμία αναμονή δεν κρατάει thread.
+ * Κάθε κλήση του {@link #call} είναι ένα αίτημα (π.χ. μία σελίδα) και επαναλαμβάνεται μόνο αυτό.
+ */
+public final class RequestGuard {
+
+    /** Ρυθμίσεις του guard. */
+    public record Policy(Duration attemptTimeout, int maxAttempts, Duration baseBackoff, Duration maxBackoff,
+                         double permitsPerSecond, int burst, int failureThreshold, Duration openDuration) {
+
+        public Policy {
+            if (maxAttempts < 1 || !(permitsPerSecond > 0) || burst < 1 || failureThreshold < 1) {
+                throw new IllegalArgumentException("Μη έγκυρη πολιτική: " + this);
+            }
+        }
+
+        /**
+         * 3 προσπάθειες των 3s (χωράνε στο LOAD_TIMEOUT του Budget), αναμονή 200ms-2s,
+         * 10 αιτήματα/s με ριπή 20, διακοπή για 15s μετά από 5 διαδοχικές αποτυχίες.
+         */
+        public static Policy defaults() {
+            return new Policy(Duration.ofSeconds(3), 3, Duration.ofMillis(200), Duration.ofSeconds(2),
+                    10, 20, 5, Duration.ofSeconds(15));
+        }
+    }
+
+    /** Ο circuit breaker του host είναι ανοιχτός: το αίτημα δεν στάλθηκε. */
+    public static final class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String host) {
+            super("Προσωρινή διακοπή αιτημάτων προς " + host + " μετά από διαδοχικές αποτυχίες");
+        }
+    }
+
+    private static final long TIMEOUT_GRACE_MILLIS = 250;
+
+    private final String hostName;
+    private final Policy policy;
+    private final TokenBucket bucket;
+    private final CircuitBreaker breaker;
+
+    public RequestGuard(String host, Policy policy) {
+        this.hostName = host;
+        this.policy = policy;
+        this.bucket = new TokenBucket(policy.permitsPerSecond(), policy.burst());
+        this.breaker = new CircuitBreaker(policy.failureThreshold(), policy.openDuration().toNanos());
+    }
+
+    /**
+     * Στέλνει το αίτημα με όριο ρυθμού, επαναλήψεις και breaker. Το request καλείται μία φορά
+     * ανά προσπάθεια με το όριο χρόνου της (το μικρότερο από attemptTimeout και timeout),
+     * που πρέπει να περάσει στο ίδιο το αίτημα (π.χ. HttpRequest.timeout).
+     * Μια προσπάθεια που λήγει ή δεν χρειάζεται πια (ο καλών τα παράτησε) ακυρώνεται πριν από
+     * την επόμενη· το future της πρέπει να σταματά τη δουλειά από κάτω όταν ολοκληρωθεί με σφάλμα.
+     *
+     * Ολοκληρώνεται με το πρώτο επιτυχές αποτέλεσμα ή με το σφάλμα της τελευταίας προσπάθειας.
+     */
+    <T> CompletableFuture<T> call(Function<Duration, CompletableFuture<T>> request, Duration timeout) {
+        Duration attemptTimeout = (timeout.compareTo(policy.attemptTimeout()) < 0) ? timeout : policy.attemptTimeout();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(request, attemptTimeout, 1, result);
+        return result;
+    }
+
+    //Κατάσταση του circuit breaker (για tests / διαγνωστικά)
+    String circuitState() {
+        return breaker.state.name();
+    }
+
+    private <T> void attempt(Function<Duration, CompletableFuture<T>> request, Duration attemptTimeout, int n,
+                             CompletableFuture<T> result) {
+        //Ο καλών μπορεί να τα παράτησε (π.χ. συνολικό timeout του Budget)
+        if (result.isDone()) {
+            return;
+        }
+        if (!breaker.allowRequest()) {
+            result.completeExceptionally(new CircuitOpenException(hostName));
+            return;
+        }
+
+        Runnable send = () -> {
+            CompletableFuture<T> f;
+            try {
+                f = request.apply(attemptTimeout);
+            } catch (RuntimeException e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            //Αν ο καλών τα παρατήσει, δεν συνεχίζει ούτε η τρέχουσα προσπάθεια
+            CompletableFuture<T> current = f;
+            result.whenComplete((value, err) -> current.cancel(true));
+
+            //Εφεδρικό όριο, λίγο μετά το timeout του ίδιου του αιτήματος (που συνήθως λήγει πρώτο)
+            f.orTimeout(attemptTimeout.toMillis() + TIMEOUT_GRACE_MILLIS, TimeUnit.MILLISECONDS).whenComplete((value, err) -> {
+                if (err == null) {
+                    breaker.onSuccess();
+                    result.complete(value);
+                    return;
+                }
+
+                Throwable cause = unwrap(err);
+                if (cause instanceof CancellationException) {
+                    //Ο καλών τα παράτησε: δεν λέει τίποτα για τον host
+                    breaker.onCancel();
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                if (!retryable(cause)) {
+                    //Π.χ. 4xx: ο host απάντησε κανονικά, δεν μετράει ως αποτυχία του
+                    breaker.onSuccess();
+                    result.completeExceptionally(cause);
+                    return;
+                }
+
+                breaker.onFailure();
+                if (n >= policy.maxAttempts()) {
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                CompletableFuture.delayedExecutor(backoffMillis(n, cause), TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt(request, attemptTimeout, n + 1, result));
+            });
+        };
+
+        long waitNanos = bucket.reserve();
+        if (waitNanos > 0) {
+            CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(send);
+        } else {
+            send.run();
+        }
+    }
+
+    //Full jitter: τυχαία αναμονή στο [0, min(max, base * 2^(n-1))], τουλάχιστον όσο το Retry-After
+    private long backoffMillis(int n, Throwable cause) {
+        long cap = policy.maxBackoff().toMillis();
+        long exp = Math.min(cap, policy.baseBackoff().toMillis() << Math.min(n - 1, 20));
+        long wait = ThreadLocalRandom.current().nextLong(exp + 1);
+        if (cause instanceof IndicatorSource.StatusException se && se.getRetryAfterSeconds() > 0) {
+            wait = Math.max(wait, Math.min(cap, se.getRetryAfterSeconds() * 1000));
+        }
+        return wait;
+    }
+
+    //Σφάλματα που αξίζει να ξαναδοκιμαστούν
+    static boolean retryable(Throwable cause) {
+        if (cause instanceof IndicatorSource.StatusException se) {
+            return se.getStatus() == 429 || se.getStatus() >= 500;
+        }
+        return cause instanceof TimeoutException || cause instanceof IOException;
+    }
+
+    /**
+     * Το cancel ενός εξαρτημένου future (π.χ. thenApply πάνω στο {@link #call}) δεν φτάνει μόνο
+     * του στο source. Με αυτό η ακύρωση του dependent ακυρώνει και το source, άρα σταματούν
+     * και οι προσπάθειές του.
+     */
+    static <T> CompletableFuture<T> cancelsUpstream(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((value, err) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+
+    static Throwable unwrap(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    /**
+     * Token bucket με "χρέος": κάθε αίτημα παίρνει ένα token αμέσως και, αν δεν υπήρχε,
+     * μαθαίνει πόσο να περιμένει. Έτσι τα αιτήματα μπαίνουν σε σειρά χωρίς κλειδώματα αναμονής.
+     */
+    private static final class TokenBucket {
+        private final double perNano;
+        private final double burst;
+        private double tokens;
+        private long last = System.nanoTime();
+
+        TokenBucket(double perSecond, int burst) {
+            this.perNano = perSecond / 1e9;
+            this.burst = burst;
+            this.tokens = burst;
+        }
+
+        //Νανοδευτερόλεπτα αναμονής μέχρι να επιτρέπεται το αίτημα (0 = αμέσως)
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - last) * perNano);
+            last = now;
+            tokens -= 1;
+            return (tokens >= 0) ? 0 : (long) (-tokens / perNano);
+        }
+    }
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final class CircuitBreaker {
+        private final int threshold;
+        private final long openNanos;
+        volatile State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private boolean probeInFlight;
+
+        CircuitBreaker(int threshold, long openNanos) {
+            this.threshold = threshold;
+            this.openNanos = openNanos;
+        }
+
+        synchronized boolean allowRequest() {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.nanoTime() - openedAt < openNanos) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    probeInFlight = true;
+                    return true;
+                default:
+                    //HALF_OPEN: μόνο ένα δοκιμαστικό αίτημα τη φορά
+                    if (probeInFlight) {
+                        return false;
+                    }
+                    probeInFlight = true;
+                    return true;
+            }
+        }
+
+        synchronized void onSuccess() {
+            failures = 0;
+            probeInFlight = false;
+            state = State.CLOSED;
+        }
+
+        //Ακυρωμένη προσπάθεια: ελευθερώνει μόνο τη θέση του δοκιμαστικού αιτήματος
+        synchronized void onCancel() {
+            probeInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            probeInFlight = false;
+            if (state == State.HALF_OPEN || ++failures >= threshold) {
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                failures = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package gr.aueb.budgetpm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Τοπική (στον δίσκο) cache απαντήσεων του WorldBank API.
+ *
+ * - Κλειδί: χώρα / δείκτης / έτος (ή εύρος ετών και σελίδα).
+ * - Κάθε εγγραφή έχει το σώμα της απάντησης και ένα αρχείο .meta
+ *   με ETag, Last-Modified και τη στιγμή λήψης.
+ * - Μέσα στο TTL η εγγραφή σερβίρεται χωρίς δίκτυο. Μετά, ξαναζητείται με
+ *   If-None-Match / If-Modified-Since (ένα 304 απλώς την ανανεώνει).
+ * - Όταν το συνολικό μέγεθος ξεπεράσει το όριο, διαγράφονται οι παλαιότερα
+ *   χρησιμοποιημένες εγγραφές. Οι αναγνώσεις καταγράφονται στη μνήμη (όχι στο
+ *   mtime του αρχείου), οπότε ένα lookup δεν γράφει ποτέ στον δίσκο.
+ *
+ * Ρυθμίσεις μέσω system properties (βλ. {@link #fromSystemProperties()}):
+ * budgetpm.cache.dir, budgetpm.cache.ttlHours, budgetpm.cache.maxMb.
+ */
+public class ResponseCache {
+
+    private static final String BODY_SUFFIX = ".json";
+    private static final String META_SUFFIX = ".meta";
+
+    //Επιτρεπτά τμήματα κλειδιού: δεν γίνεται να βγει εκτός του φακέλου της cache (π.χ. "../..")
+    private static final Pattern COUNTRY = Pattern.compile("[A-Z0-9]{2,3}");
+    private static final Pattern INDICATOR = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._]*");
+    private static final Pattern DATE = Pattern.compile("\\d{4}(:\\d{4})?");
+
+    private final Path dir;
+    private final Duration ttl;
+    private final long maxBytes;
+
+    //Τρέχον μέγεθος εγγραφών (υπολογίζεται μία φορά με την πρώτη χρήση)
+    private final AtomicLong currentBytes = new AtomicLong(-1);
+
+    //Τελευταία ανάγνωση ανά εγγραφή σε αυτή την εκτέλεση (για την LRU εκκαθάριση)
+    private final Map<Path, Long> lastAccess = new ConcurrentHashMap<>();
+
+    /**
+     * Μία εγγραφή της cache. Το σώμα μένει στο αρχείο και διαβάζεται μόνο όταν χρειαστεί
+     * (με {@link #reader()} σε streaming, ή ολόκληρο με {@link #body()}).
+     */
+    public record Entry(Path file, String etag, String lastModified, long fetchedAtMillis) {
+
+        public Reader reader() throws IOException {
+            return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        public String body() {
+            try {
+                return Files.readString(file, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public ResponseCache(Path dir, Duration ttl, long maxBytes) {
+        if (dir == null) throw new IllegalArgumentException("dir is null");
+        if (ttl == null || ttl.isNegative()) throw new IllegalArgumentException("invalid ttl");
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        this.dir = dir;
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Cache με ρυθμίσεις από system properties.
+     * Προεπιλογές: data/cache, TTL 24 ώρες, 64 MB.
+     */
+    public static ResponseCache fromSystemProperties() {
+        Path dir = Paths.get(System.getProperty("budgetpm.cache.dir", "data/cache"));
+        long ttlHours = Long.getLong("budgetpm.cache.ttlHours", 24L);
+        long maxMb = Long.getLong("budgetpm.cache.maxMb", 64L);
+        return new ResponseCache(dir, Duration.ofHours(ttlHours), maxMb * 1024 * 1024);
+    }
+
+    /**
+     * Κλειδί εγγραφής: country/indicator/date[-pN].
+     * Το ':' των ευρών ετών (2000:2023) δεν επιτρέπεται σε όλα τα filesystems.
+     *
+     * @throws IllegalArgumentException αν η χώρα, ο δείκτης ή το date δεν έχουν τη μορφή του API
+     */
+    public static String key(String countryCode, String indicator, String date, int page) {
+        String country = (countryCode == null) ? "" : countryCode.toUpperCase();
+        if (!COUNTRY.matcher(country).matches()) {
+            throw new IllegalArgumentException("invalid country code: " + countryCode);
+        }
+        if (indicator == null || !INDICATOR.matcher(indicator).matches()) {
+            throw new IllegalArgumentException("invalid indicator: " + indicator);
+        }
+        if (date == null || !DATE.matcher(date).matches()) {
+            throw new IllegalArgumentException("invalid date: " + date);
+        }
+        if (page < 1) {
+            throw new IllegalArgumentException("invalid page: " + page);
+        }
+
+        String name = date.replace(':', '_') + (page > 1 ? "-p" + page : "");
+        return country + "/" + indicator + "/" + name;
+    }
+
+    public static String key(String countryCode, String indicator, String date) {
+        return key(countryCode, indicator, date, 1);
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    //Επιστρέφει την εγγραφή (φρέσκια ή όχι) ή null αν δεν υπάρχει
+    public Entry lookup(String key) {
+        Path body = bodyPath(key);
+        Path meta = metaPath(key);
+        if (!Files.exists(body) || !Files.exists(meta)) {
+            return null;
+        }
+
+        try {
+            Properties p = readMeta(meta);
+            long fetchedAt = Long.parseLong(p.getProperty("fetchedAt", "0"));
+
+            lastAccess.put(body, System.currentTimeMillis());
+
+            return new Entry(body, p.getProperty("etag"), p.getProperty("lastModified"), fetchedAt);
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public boolean isFresh(Entry entry) {
+        return entry != null && System.currentTimeMillis() - entry.fetchedAtMillis() < ttl.toMillis();
+    }
+
+    //Αποθηκεύει (ή αντικαθιστά) μια εγγραφή και εκκαθαρίζει αν ξεπεράστηκε το όριο
+    public void store(String key, String body, String etag, String lastModified) {
+        try {
+            Path tmp = tempFile(key);
+            Files.write(tmp, body.getBytes(StandardCharsets.UTF_8));
+            storeFile(key, tmp, etag, lastModified);
+        } catch (IOException e) {
+            System.err.println("Cache write error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Προσωρινό αρχείο δίπλα στην εγγραφή του key, ώστε ένα σώμα να γραφτεί κατευθείαν
+     * από το δίκτυο στον δίσκο και να περάσει στην cache με {@link #storeFile}.
+     */
+    public Path tempFile(String key) throws IOException {
+        Path bodyFile = bodyPath(key);
+        Files.createDirectories(bodyFile.getParent());
+        return Files.createTempFile(bodyFile.getParent(), "body", ".tmp");
+    }
+
+    //Όπως το store, αλλά με το σώμα ήδη σε αρχείο (από το tempFile), που μετακινείται στη θέση του
+    public void storeFile(String key, Path tmp, String etag, String lastModified) {
+        Path bodyFile = bodyPath(key);
+        try {
+            long oldSize = Files.exists(bodyFile) ? Files.size(bodyFile) : 0;
+            move(tmp, bodyFile);
+            writeMeta(key, etag, lastModified, System.currentTimeMillis());
+
+            long delta = Files.size(bodyFile) - oldSize;
+            if (currentBytes.get() >= 0) {
+                currentBytes.addAndGet(delta);
+            }
+            evictIfNeeded();
+        } catch (IOException e) {
+            //Η cache είναι βοηθητική: μια αποτυχία εγγραφής δεν σταματά τη φόρτωση
+            tmp.toFile().delete();
+            System.err.println("Cache write error: " + e.getMessage());
+        }
+    }
+
+    //Μετά από 304: η εγγραφή είναι ακόμη έγκυρη, ανανεώνουμε μόνο τη στιγμή λήψης
+    public void touch(String key, Entry entry) {
+        try {
+            writeMeta(key, entry.etag(), entry.lastModified(), System.currentTimeMillis());
+        } catch (IOException e) {
+            System.err.println("Cache write error: " + e.getMessage());
+        }
+    }
+
+    //Διαγραφή των λιγότερο πρόσφατα χρησιμοποιημένων εγγραφών μέχρι το 90% του ορίου
+    private synchronized void evictIfNeeded() throws IOException {
+        if (currentBytes.get() < 0) {
+            currentBytes.set(totalSize());
+        }
+        if (currentBytes.get() <= maxBytes) {
+            return;
+        }
+
+        //Οι χρόνοι παγώνουν πριν την ταξινόμηση, γιατί ταυτόχρονα lookup τους αλλάζουν
+        List<Map.Entry<Path, Long>> bodies = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(f -> f.toString().endsWith(BODY_SUFFIX))
+                    .forEach(f -> bodies.add(Map.entry(f, lastUsedMillis(f))));
+        }
+        bodies.sort(Map.Entry.comparingByValue());
+
+        long target = maxBytes * 9 / 10;
+        for (Map.Entry<Path, Long> candidate : bodies) {
+            if (currentBytes.get() <= target) {
+                break;
+            }
+            Path body = candidate.getKey();
+            long size = Files.size(body);
+            Files.deleteIfExists(body);
+            Files.deleteIfExists(Paths.get(stripSuffix(body.toString()) + META_SUFFIX));
+            lastAccess.remove(body);
+            currentBytes.addAndGet(-size);
+        }
+    }
+
+    private long totalSize() throws IOException {
+        if (!Files.exists(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(f -> f.toString().endsWith(BODY_SUFFIX))
+                    .mapToLong(f -> f.toFile().length())
+                    .sum();
+        }
+    }
+
+    private Path bodyPath(String key) {
+        return dir.resolve(key + BODY_SUFFIX);
+    }
+
+    private Path metaPath(String key) {
+        return dir.resolve(key + META_SUFFIX);
+    }
+
+    private void writeMeta(String key, String etag, String lastModified, long fetchedAt) throws IOException {
+        Properties p = new Properties();
+        if (etag != null) p.setProperty("etag", etag);
+        if (lastModified != null) p.setProperty("lastModified", lastModified);
+        p.setProperty("fetchedAt", String.valueOf(fetchedAt));
+
+        Path meta = metaPath(key);
+        Path tmp = Files.createTempFile(meta.getParent(), "meta", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, null);
+        }
+        move(tmp, meta);
+    }
+
+    private static Properties readMeta(Path meta) throws IOException {
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(meta)) {
+            p.load(in);
+        }
+        return p;
+    }
+
+    //Το σώμα γράφεται πρώτα σε προσωρινό αρχείο και μετακινείται, ώστε ένας αναγνώστης να μη δει μισό αρχείο
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    //Πιο πρόσφατο από εγγραφή (mtime) και ανάγνωση σε αυτή την εκτέλεση
+    private long lastUsedMillis(Path body) {
+        return Math.max(body.toFile().lastModified(), lastAccess.getOrDefault(body, 0L));
+    }
+
+    private static String stripSuffix(String path) {
+        return path.substring(0, path.length() - BODY_SUFFIX.length());
+    }
+}
@@ -0,0 +1,217 @@
+package gr.aueb.budgetpm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo προσομοίωση σεναρίων πάνω σε ένα Budget.
+ *
+ * Σε κάθε εκτέλεση κάθε κατηγορία με κατανομή παίρνει μια τυχαία ποσοστιαία μεταβολή:
+ * - Υπουργείο (MIN_*): μεταβάλλεται όλο το ποσό του,
+ * - υποκατηγορία: η διαφορά της προστίθεται στο Υπουργείο της (από τον AllocationMatrix),
+ * - REVENUE: μεταβάλλονται τα έσοδα.
+ * Ισοζύγιο = έσοδα - Σ Υπουργείων.
+ *
+ * Οι εκτελέσεις μοιράζονται σε κομμάτια που τρέχουν παράλληλα (ForkJoin common pool),
+ * το καθένα με δικό του SplittableRandom, και γράφουν σε προδεσμευμένους double[].
+ * Με τον ίδιο seed το αποτέλεσμα είναι ίδιο ανεξάρτητα από τον αριθμό πυρήνων.
+ */
+public final class ScenarioSimulator {
+
+    //Κλειδί κατανομής για τα έσοδα και για όλα τα Υπουργεία μαζί
+    public static final String REVENUE = "REVENUE";
+    public static final String ALL = "ALL";
+
+    private static final int CHUNK = 4096;
+
+    private ScenarioSimulator() {}
+
+    /** Κατανομή ποσοστιαίας μεταβολής (σε %). */
+    public record Shock(Kind kind, double a, double b) {
+
+        public enum Kind { FIXED, UNIFORM, NORMAL }
+
+        //Μεταβολή ως κλάσμα (π.χ. 0.05), όχι μικρότερη από -100%
+        double sample(SplittableRandom rnd) {
+            double pct = switch (kind) {
+                case FIXED -> a;
+                case UNIFORM -> a + (b - a) * rnd.nextDouble();
+                case NORMAL -> a + b * rnd.nextGaussian();
+            };
+            return Math.max(-1.0, pct / 100.0);
+        }
+
+        /**
+         * Από κείμενο: normal:&lt;μέσος&gt;:&lt;τυπ. απόκλιση&gt;, uniform:&lt;min&gt;:&lt;max&gt; ή fixed:&lt;x&gt;.
+         */
+        public static Shock parse(String spec) {
+            String[] p = spec.trim().toLowerCase().split(":");
+            try {
+                switch (p[0]) {
+                    case "fixed":
+                        if (p.length == 2) return new Shock(Kind.FIXED, Double.parseDouble(p[1]), 0);
+                        break;
+                    case "uniform":
+                        if (p.length == 3) return new Shock(Kind.UNIFORM, Double.parseDouble(p[1]), Double.parseDouble(p[2]));
+                        break;
+                    case "normal":
+                        if (p.length == 3) return new Shock(Kind.NORMAL, Double.parseDouble(p[1]), Double.parseDouble(p[2]));
+                        break;
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                //πέφτει στο μήνυμα παρακάτω
+            }
+            throw new IllegalArgumentException("Μη έγκυρη κατανομή: " + spec
+                    + " (normal:<μέσος>:<σ>, uniform:<min>:<max>, fixed:<x>)");
+        }
+    }
+
+    /** Εκατοστημόρια 5 / 50 / 95. */
+    public record Band(double p5, double p50, double p95) {}
+
+    /** Αποτέλεσμα: ζώνες για το ισοζύγιο και για κάθε Υπουργείο (κωδικός -> ζώνη). */
+    public record Result(int runs, Band balance, Band expenses, Map<String, Band> ministries) {}
+
+    /**
+     * Τρέχει {@code runs} εκτελέσεις. Το shocks έχει κλειδιά κωδικούς κατηγοριών,
+     * {@link #REVENUE} ή {@link #ALL} (προεπιλογή για όσα Υπουργεία δεν ορίζονται ρητά).
+     */
+    public static Result simulate(Budget base, Map<String, Shock> shocks, int runs, long seed) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("runs must be positive");
+        }
+        Model model = new Model(base, AllocationMatrix.configured(), shocks);
+
+        int m = model.ministryBase.length;
+        double[] balance = new double[runs];
+        double[] expenses = new double[runs];
+        double[] ministries = new double[m * runs];
+
+        //Ένα RNG ανά κομμάτι, παραγόμενα σειριακά ώστε το αποτέλεσμα να είναι ντετερμινιστικό
+        int chunks = (runs + CHUNK - 1) / CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] rngs = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            rngs[c] = root.split();
+        }
+
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            double[] totals = new double[m];
+            int from = c * CHUNK;
+            int to = Math.min(runs, from + CHUNK);
+            for (int r = from; r < to; r++) {
+                double spent = model.run(rngs[c], totals);
+                expenses[r] = spent;
+                balance[r] = model.revenue(rngs[c]) - spent;
+                for (int k = 0; k < m; k++) {
+                    ministries[k * runs + r] = totals[k];
+                }
+            }
+        });
+
+        Map<String, Band> bands = new LinkedHashMap<>();
+        for (int k = 0; k < m; k++) {
+            bands.put(CategoryIndex.code(model.ministryIds[k]), band(ministries, k * runs, runs));
+        }
+        return new Result(runs, band(balance, 0, runs), band(expenses, 0, runs), bands);
+    }
+
+    //Ταξινόμηση του τμήματος [from, from + n) και ανάγνωση των εκατοστημορίων
+    private static Band band(double[] values, int from, int n) {
+        Arrays.sort(values, from, from + n);
+        return new Band(values[from + rank(5, n)], values[from + rank(50, n)], values[from + rank(95, n)]);
+    }
+
+    private static int rank(int percentile, int n) {
+        return Math.min(n - 1, (int) Math.floor(percentile / 100.0 * n));
+    }
+
+    /**
+     * Το Budget "ισοπεδωμένο" σε πίνακες: Υπουργεία με τα ποσά τους και λίστα
+     * κατηγοριών με κατανομή (θέση Υπουργείου, βάση, κατανομή).
+     */
+    private static final class Model {
+        final int[] ministryIds;
+        final double[] ministryBase;
+
+        final int[] shockTarget;          //θέση Υπουργείου που επηρεάζεται
+        final double[] shockBase;         //ποσό πάνω στο οποίο εφαρμόζεται η μεταβολή
+        final Shock[] shockDist;
+
+        final double revenueBase;
+        final Shock revenueShock;
+
+        Model(Budget base, AllocationMatrix matrix, Map<String, Shock> shocks) {
+            for (String key : shocks.keySet()) {
+                if (!key.equals(REVENUE) && !key.equals(ALL) && CategoryIndex.idOf(key) < 0) {
+                    throw new IllegalArgumentException("Άγνωστη κατηγορία: " + key);
+                }
+            }
+
+            int m = matrix.ministryCount();
+            ministryIds = new int[m + 1];
+            ministryBase = new double[m + 1];
+            for (int k = 0; k < m; k++) {
+                ministryIds[k] = matrix.ministryId(k);
+            }
+            ministryIds[m] = matrix.getRemainderId();
+            for (int k = 0; k <= m; k++) {
+                ministryBase[k] = base.getFinalValue(ministryIds[k]);
+            }
+
+            int[] target = new int[m + 1 + matrix.itemCount()];
+            double[] amount = new double[target.length];
+            Shock[] dist = new Shock[target.length];
+            int n = 0;
+
+            Shock all = shocks.get(ALL);
+            for (int k = 0; k <= m; k++) {
+                Shock s = shocks.getOrDefault(CategoryIndex.code(ministryIds[k]), all);
+                if (s != null) {
+                    target[n] = k;
+                    amount[n] = ministryBase[k];
+                    dist[n++] = s;
+                }
+            }
+            for (int j = 0; j < matrix.itemCount(); j++) {
+                Shock s = shocks.get(CategoryIndex.code(matrix.itemId(j)));
+                if (s != null) {
+                    target[n] = matrix.itemParent(j);
+                    amount[n] = base.getFinalValue(matrix.itemId(j));
+                    dist[n++] = s;
+                }
+            }
+
+            shockTarget = Arrays.copyOf(target, n);
+            shockBase = Arrays.copyOf(amount, n);
+            shockDist = Arrays.copyOf(dist, n);
+
+            revenueBase = base.getTotalRevenue();
+            revenueShock = shocks.get(REVENUE);
+        }
+
+        //Μία εκτέλεση: γεμίζει τα σύνολα ανά Υπουργείο και επιστρέφει τις συνολικές δαπάνες
+        double run(SplittableRandom rnd, double[] totals) {
+            System.arraycopy(ministryBase, 0, totals, 0, totals.length);
+            for (int s = 0; s < shockTarget.length; s++) {
+                totals[shockTarget[s]] += shockBase[s] * shockDist[s].sample(rnd);
+            }
+
+            double sum = 0;
+            for (int k = 0; k < totals.length; k++) {
+                if (totals[k] < 0) totals[k] = 0;
+                sum += totals[k];
+            }
+            return sum;
+        }
+
+        double revenue(SplittableRandom rnd) {
+            return revenueShock == null ? revenueBase : revenueBase * (1 + revenueShock.sample(rnd));
+        }
+    }
+}
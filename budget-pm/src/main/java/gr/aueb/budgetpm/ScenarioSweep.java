@@ -0,0 +1,257 @@
+package gr.aueb.budgetpm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Αναζήτηση σε πλέγμα ποσοστιαίων μεταβολών ανά Υπουργείο.
+ *
+ * Για κάθε άξονα (Υπουργείο, από, έως, βήμα) προϋπολογίζονται τα ποσά κάθε βήματος,
+ * οπότε ένα σημείο του πλέγματος είναι απλώς ένας συνδυασμός δεικτών και το ισοζύγιο
+ * του ενημερώνεται σταδιακά (σαν μετρητής) χωρίς BudgetScenario ή maps ανά σημείο.
+ * Το πλέγμα χωρίζεται σε κομμάτια που τρέχουν παράλληλα· το καθένα κρατά μόνο
+ * τα K καλύτερα, που συγχωνεύονται μόλις τελειώσει, ώστε τα μέχρι τότε K καλύτερα
+ * να δίνονται στον καλούντα πριν ολοκληρωθεί όλο το πλέγμα.
+ *
+ * Κατάταξη: από τα σημεία με ισοζύγιο &gt;= στόχου, πρώτα όσα έχουν τη μικρότερη
+ * συνολική μεταβολή (Σ |%|), και μετά όσα έχουν το μεγαλύτερο ισοζύγιο.
+ */
+public final class ScenarioSweep {
+
+    private static final long CHUNK = 1 << 16;
+
+    private ScenarioSweep() {}
+
+    /** Ένας άξονας του πλέγματος: Υπουργείο και εύρος ποσοστών. */
+    public record Axis(String code, double from, double to, double step) {
+
+        public Axis {
+            if (CategoryIndex.idOf(code) < 0) {
+                throw new IllegalArgumentException("Άγνωστη κατηγορία: " + code);
+            }
+            if (!(step > 0) || to < from) {
+                throw new IllegalArgumentException("Μη έγκυρο εύρος για " + code + ": " + from + ":" + to + ":" + step);
+            }
+        }
+
+        int steps() {
+            return (int) Math.floor((to - from) / step + 1e-9) + 1;
+        }
+
+        double percent(int i) {
+            return from + i * step;
+        }
+
+        //Από κείμενο της μορφής <CAT>=<από>:<έως>:<βήμα>
+        public static Axis parse(String spec) {
+            String[] kv = spec.split("=", 2);
+            String[] r = (kv.length == 2) ? kv[1].split(":") : new String[0];
+            if (r.length != 3) {
+                throw new IllegalArgumentException("Μη έγκυρος άξονας: " + spec + " (CAT=<από>:<έως>:<βήμα>)");
+            }
+            try {
+                return new Axis(kv[0].toUpperCase(), Double.parseDouble(r[0]),
+                        Double.parseDouble(r[1]), Double.parseDouble(r[2]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Μη έγκυρος άξονας: " + spec);
+            }
+        }
+    }
+
+    /** Ένα αποτέλεσμα: ποσοστό ανά άξονα (με τη σειρά των αξόνων) και ισοζύγιο. */
+    public record Point(double[] percents, long balance, double totalChange) {}
+
+    /** Πλήθος σημείων του πλέγματος. */
+    public static long gridSize(List<Axis> axes) {
+        long size = 1;
+        for (Axis a : axes) {
+            size = Math.multiplyExact(size, a.steps());
+        }
+        return size;
+    }
+
+    /**
+     * Αξιολογεί όλο το πλέγμα και επιστρέφει έως k σημεία με ισοζύγιο &gt;= target.
+     * Οι κατηγορίες εκτός αξόνων μένουν ως έχουν στο budget.
+     */
+    public static List<Point> run(Budget budget, List<Axis> axes, long target, int k) {
+        return run(budget, axes, target, k, top -> {});
+    }
+
+    /**
+     * Όπως το run, αλλά κάθε φορά που ένα κομμάτι αλλάζει τα μέχρι τότε K καλύτερα,
+     * το onUpdate παίρνει τη νέα ταξινομημένη λίστα. Οι κλήσεις γίνονται μία-μία
+     * (από τα νήματα του sweep) και η τελευταία είναι ίδια με το αποτέλεσμα.
+     */
+    public static List<Point> run(Budget budget, List<Axis> axes, long target, int k,
+                                  Consumer<List<Point>> onUpdate) {
+        //Ίδιο Υπουργείο δύο φορές, ή Υπουργείο μαζί με υποκατηγορία του, θα μετρούσε τη μεταβολή διπλά
+        BalanceSolver.checkNoOverlap(axes.stream().map(Axis::code).toList());
+        if (axes.isEmpty() || k <= 0) {
+            return List.of();
+        }
+
+        int n = axes.size();
+        int[] steps = new int[n];
+        long[][] deltas = new long[n][];
+        double[][] change = new double[n][];
+
+        //Ισοζύγιο χωρίς μεταβολές: έσοδα - Σ Υπουργείων (όπως και στο simulate)
+        AllocationMatrix matrix = AllocationMatrix.configured();
+        long expenses = budget.getFinalValue(matrix.getRemainderId());
+        for (int m = 0; m < matrix.ministryCount(); m++) {
+            expenses += budget.getFinalValue(matrix.ministryId(m));
+        }
+        long baseBalance = budget.getTotalRevenue() - expenses;
+
+        //Μεταβολή ισοζυγίου και |%| για κάθε βήμα κάθε άξονα
+        for (int a = 0; a < n; a++) {
+            Axis axis = axes.get(a);
+            long amount = budget.getFinalValue(CategoryIndex.idOf(axis.code()));
+            steps[a] = axis.steps();
+            deltas[a] = new long[steps[a]];
+            change[a] = new double[steps[a]];
+            for (int i = 0; i < steps[a]; i++) {
+                double pct = axis.percent(i);
+                long modified = Math.max(0, Math.round(amount * (1 + pct / 100.0)));
+                deltas[a][i] = amount - modified;
+                change[a][i] = Math.abs(pct);
+            }
+        }
+
+        long size = gridSize(axes);
+        if (size / CHUNK >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Το πλέγμα είναι υπερβολικά μεγάλο: " + size + " σημεία");
+        }
+        int chunks = (int) ((size + CHUNK - 1) / CHUNK);
+
+        TopK merged = new TopK(k);
+        IntStream.range(0, chunks).parallel()
+                .forEach(c -> {
+                    TopK top = new TopK(k);
+                    long from = c * CHUNK;
+                    long to = Math.min(size, from + CHUNK);
+
+                    //Αρχικοί δείκτες του κομματιού (μικτή βάση) και τρέχοντα αθροίσματα
+                    int[] digit = new int[n];
+                    long rest = from;
+                    for (int a = n - 1; a >= 0; a--) {
+                        digit[a] = (int) (rest % steps[a]);
+                        rest /= steps[a];
+                    }
+                    long balance = baseBalance;
+                    double total = 0;
+                    for (int a = 0; a < n; a++) {
+                        balance += deltas[a][digit[a]];
+                        total += change[a][digit[a]];
+                    }
+
+                    for (long p = from; p < to; p++) {
+                        if (balance >= target) {
+                            top.offer(p, balance, total);
+                        }
+
+                        //Επόμενο σημείο: αυξάνεται ο τελευταίος δείκτης με κρατούμενο
+                        for (int a = n - 1; a >= 0; a--) {
+                            balance -= deltas[a][digit[a]];
+                            total -= change[a][digit[a]];
+                            digit[a]++;
+                            if (digit[a] < steps[a]) {
+                                balance += deltas[a][digit[a]];
+                                total += change[a][digit[a]];
+                                break;
+                            }
+                            digit[a] = 0;
+                            balance += deltas[a][0];
+                            total += change[a][0];
+                        }
+                    }
+
+                    synchronized (merged) {
+                        if (merged.merge(top)) {
+                            onUpdate.accept(points(merged, axes, steps));
+                        }
+                    }
+                });
+
+        return points(merged, axes, steps);
+    }
+
+    //Από δείκτες του πλέγματος σε ποσοστά ανά άξονα, ταξινομημένα όπως το TopK
+    private static List<Point> points(TopK top, List<Axis> axes, int[] steps) {
+        int n = axes.size();
+        List<Point> result = new ArrayList<>(top.size);
+        for (int i = 0; i < top.size; i++) {
+            double[] percents = new double[n];
+            long rest = top.index[i];
+            for (int a = n - 1; a >= 0; a--) {
+                percents[a] = axes.get(a).percent((int) (rest % steps[a]));
+                rest /= steps[a];
+            }
+            //Το άθροισμα ξαναϋπολογίζεται ώστε να μη φέρει σφάλματα στρογγυλοποίησης του μετρητή
+            double total = Arrays.stream(percents).map(Math::abs).sum();
+            result.add(new Point(percents, top.balance[i], total));
+        }
+        result.sort(Comparator.comparingDouble(Point::totalChange)
+                .thenComparing(Comparator.comparingLong(Point::balance).reversed()));
+        return result;
+    }
+
+    /**
+     * Τα k καλύτερα σημεία σε πίνακες ταξινομημένους από το καλύτερο στο χειρότερο.
+     * Εισαγωγή O(k) μόνο όταν το σημείο είναι καλύτερο από το χειρότερο κρατημένο.
+     */
+    private static final class TopK {
+        final long[] index;
+        final long[] balance;
+        final double[] total;
+        int size;
+
+        TopK(int k) {
+            index = new long[k];
+            balance = new long[k];
+            total = new double[k];
+        }
+
+        //true αν το σημείο κρατήθηκε
+        boolean offer(long idx, long bal, double tot) {
+            int k = index.length;
+            if (size == k && !better(tot, bal, total[k - 1], balance[k - 1])) {
+                return false;
+            }
+
+            int pos = (size < k) ? size++ : k - 1;
+            while (pos > 0 && better(tot, bal, total[pos - 1], balance[pos - 1])) {
+                index[pos] = index[pos - 1];
+                balance[pos] = balance[pos - 1];
+                total[pos] = total[pos - 1];
+                pos--;
+            }
+            index[pos] = idx;
+            balance[pos] = bal;
+            total[pos] = tot;
+            return true;
+        }
+
+        //true αν άλλαξαν τα κρατημένα σημεία
+        boolean merge(TopK other) {
+            boolean changed = false;
+            for (int i = 0; i < other.size; i++) {
+                changed |= offer(other.index[i], other.balance[i], other.total[i]);
+            }
+            return changed;
+        }
+
+        //Μικρότερη συνολική μεταβολή, και με ισοπαλία μεγαλύτερο ισοζύγιο
+        private static boolean better(double tot, long bal, double otherTot, long otherBal) {
+            if (Math.abs(tot - otherTot) > 1e-9) {
+                return tot < otherTot;
+            }
+            return bal > otherBal;
+        }
+    }
+}
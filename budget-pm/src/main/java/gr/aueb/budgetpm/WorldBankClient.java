@@ -0,0 +1,406 @@
+package gr.aueb.budgetpm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Κοινός HTTP client για το WorldBank API.
+ *
+ * Όλα τα αιτήματα περνάνε από ένα {@link HttpClient} που τρέχει σε virtual threads,
+ * ώστε πολλοί δείκτες (ή πολλά έτη) να φορτώνονται ταυτόχρονα χωρίς
+ * ένα thread / connection ανά κλήση.
+ *
+ * Οι κλήσεις δεικτών περνάνε από την {@link ResponseCache} (data/cache/),
+ * ώστε μια νέα εκκίνηση να μη χρειάζεται ξανά το API και να δουλεύει
+ * και offline με ήδη γεμάτη cache. Μόνο ό,τι δεν εξυπηρετείται από την cache πάει στο
+ * δίκτυο, μέσω του {@link RequestGuard} του client (όριο ρυθμού, επαναλήψεις, circuit breaker).
+ *
+ * Η διεύθυνση του API αλλάζει με -Dbudgetpm.worldbank.url (π.χ. προς τον
+ * {@link FakeWorldBankServer}) ή ολόκληρη η πηγή με {@link #setConfigured(IndicatorSource)}.
+ */
+public final class WorldBankClient implements IndicatorSource {
+
+    static final String BASE_URL = "https://api.worldbank.org/v2";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    //Εγγραφές ανά σελίδα για αιτήματα εύρους (24 έτη χωράνε σε μία σελίδα)
+    private static final int PAGE_SIZE = 100;
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private static volatile ResponseCache cache = ResponseCache.fromSystemProperties();
+
+    //Η πηγή που χρησιμοποιούν τα Budget, BudgetApiReader και BudgetRepository
+    private static volatile IndicatorSource configured =
+            new WorldBankClient(System.getProperty("budgetpm.worldbank.url", BASE_URL));
+
+    private final String baseUrl;
+    private final RequestGuard guard;
+
+    //baseUrl χωρίς '/' στο τέλος, π.χ. http://localhost:8089/v2
+    public WorldBankClient(String baseUrl) {
+        this(baseUrl, RequestGuard.Policy.defaults());
+    }
+
+    public WorldBankClient(String baseUrl, RequestGuard.Policy policy) {
+        this.baseUrl = baseUrl;
+        this.guard = new RequestGuard(URI.create(baseUrl).getAuthority(), policy);
+    }
+
+    //Ο guard του client (για tests / διαγνωστικά)
+    RequestGuard guard() {
+        return guard;
+    }
+
+    public static IndicatorSource configured() {
+        return configured;
+    }
+
+    public static void setConfigured(IndicatorSource source) {
+        if (source == null) throw new IllegalArgumentException("source is null");
+        configured = source;
+    }
+
+    //Αλλαγή της cache (π.χ. άλλος φάκελος ή TTL). Με null οι κλήσεις πάνε πάντα στο API.
+    public static void setResponseCache(ResponseCache responseCache) {
+        cache = responseCache;
+    }
+
+    public static ResponseCache getResponseCache() {
+        return cache;
+    }
+
+    /**
+     * URI για έναν δείκτη μιας χώρας. Το date μπορεί να είναι ένα έτος ("2020")
+     * ή εύρος ("2000:2023"), όπως το δέχεται το API.
+     */
+    URI indicatorUri(String countryCode, String indicator, String date) {
+        return URI.create(baseUrl + "/country/" + countryCode
+                + "/indicator/" + indicator + "?format=json&date=" + date);
+    }
+
+    //URI μιας σελίδας για αιτήματα εύρους ετών
+    URI pagedUri(String countryCode, String indicator, String date, int page) {
+        return URI.create(indicatorUri(countryCode, indicator, date)
+                + "&per_page=" + PAGE_SIZE + "&page=" + page);
+    }
+
+    /**
+     * Φέρνει έναν δείκτη για όλο το εύρος ετών [fromYear, toYear] με ένα αίτημα
+     * (date=from:to), ακολουθώντας τη σελιδοποίηση του API αν χρειαστεί (βλ. {@link #fetchPoints}).
+     *
+     * @return έτος -> τιμή δείκτη (% ΑΕΠ). Έτη χωρίς τιμή δεν περιέχονται.
+     */
+    @Override
+    public CompletableFuture<Response<Map<Integer, Double>>> fetchSeries(String countryCode, String indicator,
+                                                                         int fromYear, int toYear, Duration timeout) {
+        CompletableFuture<Response<List<WorldBankParser.Point>>> points =
+                fetchPoints(countryCode, indicator, fromYear + ":" + toYear, timeout);
+        return RequestGuard.cancelsUpstream(points.thenApply(resp -> {
+            Map<Integer, Double> values = new TreeMap<>();
+            for (WorldBankParser.Point point : resp.value()) {
+                values.put(point.year(), point.value());
+            }
+            return new Response<>(values, resp.stale());
+        }), points);
+    }
+
+    /**
+     * Όλες οι τιμές ενός δείκτη (χώρα ή "all", date = έτος ή εύρος) από όλες τις σελίδες της
+     * απάντησης (per_page / pages). Οι σελίδες μετά την πρώτη ζητούνται παράλληλα, και σε
+     * αποτυχία ξαναζητείται μόνο η σελίδα που απέτυχε. Κάθε σελίδα διαβάζεται με streaming
+     * (από το δίκτυο ή από το αρχείο της cache), χωρίς να κρατηθεί ολόκληρη σε String.
+     */
+    @Override
+    public CompletableFuture<Response<List<WorldBankParser.Point>>> fetchPoints(String countryCode, String indicator,
+                                                                                String date, Duration timeout) {
+        //Όλες οι σελίδες που ζητήθηκαν, ώστε μια ακύρωση να φτάσει σε καθεμία
+        List<CompletableFuture<?>> pages = new CopyOnWriteArrayList<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        CompletableFuture<Response<Page>> firstPage = fetchPage(countryCode, indicator, date, 1, timeout);
+        pages.add(firstPage);
+        CompletableFuture<Response<List<WorldBankParser.Point>>> result = firstPage.thenCompose(first -> {
+            List<CompletableFuture<Response<Page>>> rest = new ArrayList<>();
+            for (int page = 2; page <= first.value().pages(); page++) {
+                rest.add(fetchPage(countryCode, indicator, date, page, timeout));
+            }
+            pages.addAll(rest);
+            if (cancelled.get()) {
+                rest.forEach(f -> f.cancel(true));
+            }
+            return CompletableFuture.allOf(rest.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+                List<WorldBankParser.Point> points = new ArrayList<>(first.value().points());
+                boolean stale = first.stale();
+                for (CompletableFuture<Response<Page>> f : rest) {
+                    Response<Page> page = f.join();
+                    points.addAll(page.value().points());
+                    stale |= page.stale();
+                }
+                return new Response<>(points, stale);
+            });
+        });
+        result.whenComplete((value, err) -> {
+            if (result.isCancelled()) {
+                cancelled.set(true);
+                pages.forEach(f -> f.cancel(true));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Σώμα της απάντησης για έναν δείκτη (date = έτος ή εύρος), μέσω της cache, ολόκληρο σε String.
+     * Μόνο για όσους χρειάζονται το κείμενο (π.χ. JSONArray)· για τις τιμές βλ. {@link #fetchPoints}.
+     * Αν το API δεν απάντησε με 200 και δεν καλύφθηκε από παλιά εγγραφή (βλ. getCachedAsync),
+     * ολοκληρώνεται με {@link IndicatorSource.StatusException}, και με IllegalArgumentException αν
+     * η χώρα, ο δείκτης ή το date δεν έχουν τη μορφή του API (βλ. {@link ResponseCache#key}).
+     */
+    @Override
+    public CompletableFuture<Response<String>> fetchIndicator(String countryCode, String indicator, String date,
+                                                              Duration timeout) {
+        try {
+            return getCachedAsync(ResponseCache.key(countryCode, indicator, date),
+                    indicatorUri(countryCode, indicator, date), timeout, WorldBankClient::readAll);
+        } catch (IllegalArgumentException e) {
+            //Μη έγκυρη χώρα / δείκτης / date: αποτυχία στο future, όπως κάθε άλλο σφάλμα
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Response<Page>> fetchPage(String countryCode, String indicator, String date,
+                                                        int page, Duration timeout) {
+        try {
+            return getCachedAsync(ResponseCache.key(countryCode, indicator, date, page),
+                    pagedUri(countryCode, indicator, date, page), timeout, WorldBankClient::readPage);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    //Ανάγνωση του σώματος μιας απάντησης (από το δίκτυο ή από αρχείο της cache)
+    @FunctionalInterface
+    private interface BodyParser<T> {
+        T parse(Reader body) throws IOException;
+    }
+
+    //Οι τιμές μιας σελίδας και το συνολικό πλήθος σελίδων της απάντησης
+    private record Page(int pages, List<WorldBankParser.Point> points) {}
+
+    private static Page readPage(Reader body) throws IOException {
+        List<WorldBankParser.Point> points = new ArrayList<>();
+        int pages = WorldBankParser.parse(body,
+                (country, year, value) -> points.add(new WorldBankParser.Point(country, year, value))).pages();
+        return new Page(pages, points);
+    }
+
+    private static String readAll(Reader body) throws IOException {
+        StringWriter out = new StringWriter();
+        body.transferTo(out);
+        return out.toString();
+    }
+
+    /**
+     * GET με την cache μπροστά:
+     * - φρέσκια εγγραφή: διαβάζεται από το αρχείο της χωρίς δίκτυο
+     * - παλιά εγγραφή: conditional GET, με 304 κρατάμε την εγγραφή
+     * - 5xx ή σφάλμα δικτύου (και ανοιχτό circuit breaker): παλιά εγγραφή αν υπάρχει (offline),
+     *   σημειωμένη ως stale. Άλλα status (π.χ. 404, 429) δεν καλύπτονται με παλιά δεδομένα.
+     *
+     * Με 200 το σώμα γράφεται κατευθείαν σε προσωρινό αρχείο, διαβάζεται από εκεί και μετά
+     * μετακινείται στην cache. Χωρίς cache διαβάζεται κατευθείαν από το δίκτυο.
+     */
+    private <T> CompletableFuture<Response<T>> getCachedAsync(String key, URI uri, Duration timeout,
+                                                              BodyParser<T> parser) {
+        ResponseCache rc = cache;
+        if (rc == null) {
+            //Η ανάγνωση του σώματος είναι μέρος της προσπάθειας, άρα μετράει στο όριο χρόνου της
+            return guard.call(attemptTimeout -> {
+                CompletableFuture<HttpResponse<InputStream>> sent = send(request(uri, null, attemptTimeout), false,
+                        HttpResponse.BodyHandlers.ofInputStream());
+                CompletableFuture<Response<T>> read = sent.thenApply(resp -> Response.fresh(parse(parser, resp.body())));
+                //Προσπάθεια που εγκαταλείφθηκε στη μέση της ανάγνωσης: κλείνει το stream, σταματά και η ανάγνωση
+                read.whenComplete((value, err) -> {
+                    if (err != null) {
+                        sent.thenAccept(resp -> close(resp.body()));
+                    }
+                });
+                return read;
+            }, timeout);
+        }
+
+        ResponseCache.Entry found = rc.lookup(key);
+        if (rc.isFresh(found)) {
+            try {
+                return CompletableFuture.completedFuture(Response.fresh(parse(parser, found.file())));
+            } catch (UncheckedIOException e) {
+                //Η εγγραφή διαγράφηκε στο μεταξύ (εκκαθάριση): από το δίκτυο
+                found = null;
+            }
+        }
+        ResponseCache.Entry entry = found;
+
+        //Στο δίκτυο (με όριο ρυθμού / επαναλήψεις) πάει μόνο το αίτημα, όχι η ανάγνωση της cache
+        CompletableFuture<HttpResponse<Path>> sent = guard.call(
+                attemptTimeout -> sendToFile(rc, key, request(uri, entry, attemptTimeout), entry != null), timeout);
+        return RequestGuard.cancelsUpstream(sent
+                .thenApply(resp -> {
+                    Path tmp = resp.body();
+                    if (resp.statusCode() == 304) {
+                        tmp.toFile().delete();
+                        rc.touch(key, entry);
+                        return Response.fresh(parse(parser, entry.file()));
+                    }
+                    try {
+                        T value = parse(parser, tmp);
+                        //Το API στέλνει και τα σφάλματα (π.χ. άγνωστος δείκτης) με 200: αυτά δεν κρατιούνται
+                        if (!parse(WorldBankParser::isErrorPayload, tmp)) {
+                            rc.storeFile(key, tmp,
+                                    resp.headers().firstValue("ETag").orElse(null),
+                                    resp.headers().firstValue("Last-Modified").orElse(null));
+                        }
+                        return Response.fresh(value);
+                    } finally {
+                        tmp.toFile().delete();
+                    }
+                })
+                .exceptionally(e -> {
+                    if (entry != null && unavailable(RequestGuard.unwrap(e))) {
+                        return new Response<>(parse(parser, entry.file()), true);
+                    }
+                    throw (e instanceof CompletionException ce) ? ce : new CompletionException(e);
+                }), sent);
+    }
+
+    //Το API δεν είναι διαθέσιμο (και όχι λάθος αίτημα): 5xx, timeout, σφάλμα δικτύου
+    private static boolean unavailable(Throwable cause) {
+        if (cause instanceof IndicatorSource.StatusException se) {
+            return se.getStatus() >= 500;
+        }
+        return cause instanceof TimeoutException || cause instanceof IOException;
+    }
+
+    private static <T> T parse(BodyParser<T> parser, Path file) {
+        try (Reader body = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parser.parse(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T parse(BodyParser<T> parser, InputStream in) {
+        try (Reader body = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return parser.parse(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //GET (conditional αν υπάρχει εγγραφή στην cache) με το όριο χρόνου μιας προσπάθειας
+    private static HttpRequest request(URI uri, ResponseCache.Entry entry, Duration attemptTimeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(attemptTimeout)
+                .GET();
+        if (entry != null && entry.etag() != null) {
+            builder.header("If-None-Match", entry.etag());
+        }
+        if (entry != null && entry.lastModified() != null) {
+            builder.header("If-Modified-Since", entry.lastModified());
+        }
+        return builder.build();
+    }
+
+    //Μία προσπάθεια με το σώμα σε δικό της προσωρινό αρχείο της cache, που διαγράφεται αν αποτύχει
+    private static CompletableFuture<HttpResponse<Path>> sendToFile(ResponseCache rc, String key,
+                                                                    HttpRequest request, boolean notModifiedOk) {
+        Path tmp;
+        try {
+            tmp = rc.tempFile(key);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<Path>> attempt = send(request, notModifiedOk,
+                HttpResponse.BodyHandlers.ofFile(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        attempt.whenComplete((resp, err) -> {
+            if (err != null) {
+                tmp.toFile().delete();
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * Μία προσπάθεια: ολοκληρώνεται με την απάντηση αν είναι 200 (ή 304 όταν notModifiedOk),
+     * αλλιώς με {@link IndicatorSource.StatusException}.
+     * Αν η προσπάθεια εγκαταλειφθεί (timeout του guard ή ακύρωση), κόβεται και το HTTP exchange,
+     * ώστε μια επανάληψη να μην τρέχει πάνω σε αίτημα που είναι ακόμη σε εξέλιξη.
+     */
+    private static <B> CompletableFuture<HttpResponse<B>> send(HttpRequest request, boolean notModifiedOk,
+                                                               HttpResponse.BodyHandler<B> body) {
+        CompletableFuture<HttpResponse<B>> exchange = HTTP.sendAsync(request, body);
+        CompletableFuture<HttpResponse<B>> attempt = exchange.thenApply(resp -> {
+            int status = resp.statusCode();
+            if (status != 200 && !(status == 304 && notModifiedOk)) {
+                //Ένα σώμα-stream που δεν θα διαβαστεί κλείνει, ώστε να ελευθερωθεί η σύνδεση
+                close(resp.body());
+                throw new CompletionException(statusError(resp));
+            }
+            return resp;
+        });
+        attempt.whenComplete((resp, err) -> {
+            if (err != null) {
+                exchange.cancel(true);
+            }
+        });
+        return attempt;
+    }
+
+    private static void close(Object body) {
+        if (body instanceof Closeable c) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                //αγνοείται
+            }
+        }
+    }
+
+    private static IndicatorSource.StatusException statusError(HttpResponse<?> resp) {
+        long retryAfter = 0;
+        try {
+            retryAfter = Long.parseLong(resp.headers().firstValue("Retry-After").orElse("0"));
+        } catch (NumberFormatException e) {
+            //Retry-After ως ημερομηνία: αγνοείται
+        }
+        return new IndicatorSource.StatusException(resp.statusCode(), retryAfter);
+    }
+}
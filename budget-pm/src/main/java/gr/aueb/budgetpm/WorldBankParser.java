@@ -0,0 +1,214 @@
+package gr.aueb.budgetpm;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser για τις απαντήσεις δεικτών του WorldBank API (Gson {@link JsonReader}).
+ *
+ * Η απάντηση έχει τη μορφή [ {page, pages, ...}, [ {country:{id}, date, value, ...}, ... ] ].
+ * Αντί να χτίζεται ολόκληρο δέντρο JSON, διαβάζονται μόνο τα πεδία country.id, date
+ * και value και παραδίδονται κατευθείαν στον καλούντα, οπότε η μνήμη δεν μεγαλώνει
+ * με το μέγεθος της απάντησης (πολλά έτη ή όλες οι χώρες).
+ */
+public final class WorldBankParser {
+
+    private WorldBankParser() {}
+
+    /** Μία τιμή δείκτη: χώρα (ISO2), έτος, τιμή. */
+    public record Point(String country, int year, double value) {}
+
+    /** Στοιχεία σελιδοποίησης της απάντησης (pages = 0 για απάντηση σφάλματος). */
+    public record PageInfo(int page, int pages, int total) {}
+
+    /** Δέχεται κάθε τιμή χωρίς να δημιουργείται αντικείμενο ανά τιμή. */
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(String country, int year, double value);
+    }
+
+    /**
+     * Διαβάζει την απάντηση και καλεί τον consumer για κάθε εγγραφή με μη-κενή τιμή.
+     * Εγγραφές με value = null παραλείπονται.
+     */
+    public static PageInfo parse(Reader source, PointConsumer consumer) throws IOException {
+        JsonReader in = new JsonReader(source);
+
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            return new PageInfo(0, 0, 0);
+        }
+        in.beginArray();
+
+        PageInfo info = new PageInfo(0, 0, 0);
+        if (in.hasNext()) {
+            info = readPageInfo(in);
+        }
+
+        if (in.hasNext()) {
+            if (in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    readPoint(in, consumer);
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+
+        //Τα υπόλοιπα (αν υπάρχουν) δεν μας ενδιαφέρουν
+        while (in.hasNext()) {
+            in.skipValue();
+        }
+        return info;
+    }
+
+    public static PageInfo parse(String body, PointConsumer consumer) throws IOException {
+        return parse(new StringReader(body), consumer);
+    }
+
+    /**
+     * Αν η απάντηση είναι η απάντηση σφάλματος του API ([{"message":[...]}]), που
+     * έρχεται με status 200. Μη έγκυρο JSON μετράει επίσης ως σφάλμα.
+     * Διαβάζεται μόνο η αρχή της απάντησης.
+     */
+    public static boolean isErrorPayload(Reader source) {
+        try {
+            JsonReader in = new JsonReader(source);
+            if (in.peek() != JsonToken.BEGIN_ARRAY) {
+                return true;
+            }
+            in.beginArray();
+            if (!in.hasNext() || in.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("message")) {
+                    return true;
+                }
+                in.skipValue();
+            }
+            return false;
+        } catch (IOException | IllegalStateException e) {
+            return true;
+        }
+    }
+
+    public static boolean isErrorPayload(String body) {
+        return isErrorPayload(new StringReader(body));
+    }
+
+    //Όλες οι τιμές της απάντησης σε λίστα
+    public static List<Point> parsePoints(Reader source) throws IOException {
+        List<Point> points = new ArrayList<>();
+        parse(source, (country, year, value) -> points.add(new Point(country, year, value)));
+        return points;
+    }
+
+    private static PageInfo readPageInfo(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return new PageInfo(0, 0, 0);
+        }
+
+        int page = 0;
+        int pages = 0;
+        int total = 0;
+        boolean error = false;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "page" -> page = readInt(in);
+                case "pages" -> pages = readInt(in);
+                case "total" -> total = readInt(in);
+                case "message" -> {
+                    error = true;
+                    in.skipValue();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return error ? new PageInfo(0, 0, 0) : new PageInfo(page, pages, total);
+    }
+
+    private static void readPoint(JsonReader in, PointConsumer consumer) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return;
+        }
+
+        String country = null;
+        int year = -1;
+        double value = 0;
+        boolean hasValue = false;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "country" -> country = readCountryId(in);
+                case "date" -> year = readInt(in);
+                case "value" -> {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        value = in.nextDouble();
+                        hasValue = true;
+                    }
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (hasValue && year >= 0) {
+            consumer.accept(country, year, value);
+        }
+    }
+
+    //country: {"id":"GR","value":"Greece"}
+    private static String readCountryId(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+
+        String id = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("id") && in.peek() == JsonToken.STRING) {
+                id = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return id;
+    }
+
+    //Το API στέλνει αριθμούς άλλοτε ως number και άλλοτε ως string ("2020")
+    private static int readInt(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NUMBER:
+                return (int) in.nextDouble();
+            case STRING:
+                try {
+                    return Integer.parseInt(in.nextString().trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            default:
+                in.skipValue();
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AllocationEngineTest {
+
+    @Test
+    void defaults_matchPreviousRoundingAndRemainder() {
+        Budget b = new Budget(2020, "GR");
+        b.loadFromMetrics(Map.of("GC.XPN.TOTL.GD.ZS", 1_234_567L, "GC.REV.XGRT.GD.ZS", 1L));
+
+        long health = Math.round(1_234_567L * 0.15);
+        assertEquals(1_234_567L, b.getFinalValue("GC.XPN.TOTL.GD.ZS"));
+        assertEquals(health, b.getFinalValue("MIN_HEALTH"));
+        assertEquals(Math.round(health * 0.45), b.getFinalValue("HEALTH_SALARIES"));
+
+        long ministries = 0;
+        for (String code : List.of("MIN_HEALTH", "MIN_EDUCATION", "MIN_DEFENSE", "MIN_PROTECTION",
+                "MIN_FOREIGN", "MIN_INTERIOR", "MIN_LABOR")) {
+            ministries += b.getFinalValue(code);
+        }
+        assertEquals(1_234_567L, ministries + b.getFinalValue("MIN_OTHER"));
+    }
+
+    @Test
+    void allocateAll_usesMatrixFromJsonForEveryBudget() {
+        AllocationMatrix m = AllocationMatrix.fromJson("""
+                { "ministries": [
+                    { "code": "MIN_HEALTH", "share": 0.5,
+                      "items": { "HEALTH_SALARIES": 0.5, "HEALTH_MEDS": 0.5 } },
+                    { "code": "MIN_LABOR", "share": 0.7 } ] }""");
+
+        Budget a = new Budget(2020, "GR");
+        a.setTotals(0, 1000);
+        Budget b = new Budget(2021, "GR");
+        b.setTotals(0, 333);
+
+        AllocationEngine.allocateAll(List.of(a, b), m);
+
+        assertEquals(500, a.getFinalValue("MIN_HEALTH"));
+        assertEquals(250, a.getFinalValue("HEALTH_MEDS"));
+        assertEquals(700, a.getFinalValue("MIN_LABOR"));
+        assertEquals(0, a.getFinalValue("MIN_OTHER"));
+        assertEquals(Math.round(333 * 0.5), b.getFinalValue("MIN_HEALTH"));
+        assertFalse(b.getApiValues().containsKey("MIN_DEFENSE"));
+    }
+
+    @Test
+    void fromJson_rejectsUnknownCategory() {
+        assertThrows(IllegalArgumentException.class, () -> AllocationMatrix.fromJson(
+                "{ \"ministries\": [ { \"code\": \"MIN_NOPE\", \"share\": 0.1 } ] }"));
+    }
+
+    @Test
+    void fromJson_rejectsRepeatedCodes() {
+        IllegalArgumentException ministry = assertThrows(IllegalArgumentException.class, () -> AllocationMatrix.fromJson("""
+                { "ministries": [
+                    { "code": "MIN_HEALTH", "share": 0.1 },
+                    { "code": "MIN_HEALTH", "share": 0.2 } ] }"""));
+        assertTrue(ministry.getMessage().contains("MIN_HEALTH"));
+
+        //Η ίδια υποκατηγορία κάτω από δύο Υπουργεία
+        IllegalArgumentException item = assertThrows(IllegalArgumentException.class, () -> AllocationMatrix.fromJson("""
+                { "ministries": [
+                    { "code": "MIN_HEALTH", "share": 0.1, "items": { "HEALTH_MEDS": 1.0 } },
+                    { "code": "MIN_LABOR", "share": 0.2, "items": { "HEALTH_MEDS": 1.0 } } ] }"""));
+        assertTrue(item.getMessage().contains("HEALTH_MEDS"));
+    }
+}
@@ -0,0 +1,41 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BalanceSolverTest {
+
+    @Test
+    void solve_reachesTargetAndSpreadsCutsByWeight() {
+        var solution = BalanceSolver.solve(TestBudgets.budget(), -70_000, List.of(
+                BalanceSolver.Bound.parse("MIN_HEALTH=20"),
+                BalanceSolver.Bound.parse("MIN_LABOR=20:4")));
+
+        assertTrue(solution.reached());
+        assertEquals(-100_000, solution.balanceBefore());
+        assertTrue(solution.balanceAfter() >= -70_000 && solution.balanceAfter() < -69_990);
+
+        //Βάρος 4 στην Εργασία: μικρότερη ποσοστιαία περικοπή εκεί
+        var cuts = solution.adjustments();
+        assertEquals(2, cuts.size());
+        assertTrue(cuts.get(0).cutPercent() > cuts.get(1).cutPercent());
+    }
+
+    @Test
+    void solve_reportsUnreachableTargetWithinBounds() {
+        var solution = BalanceSolver.solve(TestBudgets.budget(), 0, List.of(BalanceSolver.Bound.parse("MIN_FOREIGN=10")));
+
+        assertFalse(solution.reached());
+        assertEquals(-100_000 + 3_000, solution.balanceAfter());
+    }
+
+    @Test
+    void solve_rejectsMinistryTogetherWithItsSubCategory() {
+        assertThrows(IllegalArgumentException.class, () -> BalanceSolver.solve(TestBudgets.budget(), 0, List.of(
+                BalanceSolver.Bound.parse("MIN_HEALTH=10"),
+                BalanceSolver.Bound.parse("HEALTH_MEDS=10"))));
+    }
+}
@@ -1,15 +1,43 @@
 package gr.aueb.budgetpm;
 
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.json.JSONArray;
 import org.json.JSONObject;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class BudgetApiReaderTest {
 
+    private static FakeWorldBankServer api;
+    private static IndicatorSource previousSource;
+    private static ResponseCache previousCache;
+
+    @BeforeAll
+    static void startFakeApi() throws Exception {
+        api = FakeWorldBankServer.start(0).recordValue("GR", "GC.XPN.TOTL.GD.ZS", 2020, 60.5);
+        previousSource = WorldBankClient.configured();
+        previousCache = WorldBankClient.getResponseCache();
+        WorldBankClient.setConfigured(new WorldBankClient(api.baseUrl()));
+        WorldBankClient.setResponseCache(null);
+    }
+
+    @AfterAll
+    static void stopFakeApi() {
+        WorldBankClient.setConfigured(previousSource);
+        WorldBankClient.setResponseCache(previousCache);
+        api.stop();
+    }
+
     @Test
     void fetchBudgetData_returnsNotNullForValidCountry() {
-        JSONArray result = BudgetApiReader.fetchBudgetData("GR");
+        JSONArray result = BudgetApiReader.fetchBudgetData("GR", 2020, "GC.XPN.TOTL.GD.ZS");
 
         assertNotNull(result, "Το API δεν πρέπει να επιστρέφει null για valid country");
         assertTrue(result.length() > 0, "Το API πρέπει να επιστρέφει δεδομένα");
@@ -17,7 +45,7 @@ public class BudgetApiReaderTest {
 
     @Test
     void fetchBudgetData_returnsNullForInvalidCountry() {
-        JSONArray result = BudgetApiReader.fetchBudgetData("XXX");
+        JSONArray result = BudgetApiReader.fetchBudgetData("XXX", 2020, "GC.XPN.TOTL.GD.ZS");
 
         // Η WorldBank επιστρέφει JSON με error message, όχι null.
         // Άρα αλλάζουμε το test να ελέγχει το error message.
@@ -28,4 +56,27 @@ public class BudgetApiReaderTest {
 
         assertTrue(obj.has("message"), "Το object πρέπει να περιέχει error 'message'");
     }
+
+    @Test
+    void fetchIndicatorPoints_followsEveryPage(@TempDir Path dir) {
+        //Δύο σελίδες για όλες τις χώρες, από την cache απαντήσεων του fake server
+        String indicator = "GC.REV.XGRT.GD.ZS";
+        ResponseCache pages = new ResponseCache(dir, Duration.ZERO, Long.MAX_VALUE);
+        pages.store(ResponseCache.key("all", indicator, "2020", 1), page(1, "GR", 45.0), null, null);
+        pages.store(ResponseCache.key("all", indicator, "2020", 2), page(2, "IT", 47.5), null, null);
+        api.replayFrom(pages);
+        try {
+            List<WorldBankParser.Point> points = BudgetApiReader.fetchIndicatorPoints("all", "2020", indicator);
+
+            assertEquals(List.of(new WorldBankParser.Point("GR", 2020, 45.0),
+                    new WorldBankParser.Point("IT", 2020, 47.5)), points);
+        } finally {
+            api.replayFrom(null);
+        }
+    }
+
+    private static String page(int page, String country, double value) {
+        return "[{\"page\":" + page + ",\"pages\":2,\"per_page\":1,\"total\":2},"
+                + "[{\"country\":{\"id\":\"" + country + "\"},\"date\":\"2020\",\"value\":" + value + "}]]";
+    }
 }
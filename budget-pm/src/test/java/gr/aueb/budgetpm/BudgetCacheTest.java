@@ -0,0 +1,84 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetCacheTest {
+
+    private static Budget budget(int year) {
+        Budget b = new Budget(year, "ZZ");
+        b.setTotals(1_000, 900);
+        return b;
+    }
+
+    private static BudgetCache.Limits maxEntries(int n) {
+        return new BudgetCache.Limits(n, Long.MAX_VALUE, Duration.ZERO);
+    }
+
+    @Test
+    void leastRecentlyUsed_isEvictedFirst() throws Exception {
+        BudgetCache<Integer> cache = new BudgetCache<>(maxEntries(3));
+        for (int y = 2000; y < 2003; y++) {
+            cache.putIfAbsent(y, budget(y), true);
+            Thread.sleep(2);
+        }
+        assertNotNull(cache.get(2000));
+
+        cache.putIfAbsent(2003, budget(2003), true);
+
+        //Όριο 3, στόχος το 90% (2): φεύγουν τα 2001 και 2002
+        assertTrue(cache.keys().contains(2000));
+        assertTrue(cache.keys().contains(2003));
+        assertFalse(cache.keys().contains(2001));
+        assertFalse(cache.keys().contains(2002));
+
+        BudgetCache.Stats stats = cache.stats();
+        assertEquals(2, stats.evictions());
+        assertEquals(2, stats.size());
+        assertEquals(1, stats.hits());
+    }
+
+    @Test
+    void budgetsWithUserChanges_andManualBudgets_areNeverEvicted() {
+        BudgetCache<Integer> cache = new BudgetCache<>(maxEntries(1));
+        Budget changed = budget(2000);
+        changed.setUserValue("MIN_HEALTH", 5);
+        cache.putIfAbsent(2000, changed, true);
+        cache.put(2001, budget(2001), false);
+        cache.putIfAbsent(2002, budget(2002), true);
+
+        assertSame(changed, cache.get(2000));
+        assertTrue(cache.keys().contains(2001));
+        assertFalse(cache.keys().contains(2002));
+    }
+
+    @Test
+    void expiredBudgets_countAsMisses() throws Exception {
+        BudgetCache<Integer> cache = new BudgetCache<>(new BudgetCache.Limits(10, Long.MAX_VALUE, Duration.ofMillis(1)));
+        cache.putIfAbsent(2000, budget(2000), true);
+        Thread.sleep(5);
+
+        assertNull(cache.get(2000));
+        assertEquals(1, cache.stats().expirations());
+        assertEquals(1, cache.stats().misses());
+        assertEquals(0, cache.stats().bytes());
+    }
+
+    @Test
+    void changedBudget_isReadmittedAfterEviction() throws Exception {
+        BudgetCache<Integer> cache = new BudgetCache<>(maxEntries(1));
+        Budget held = budget(2000);
+        cache.putIfAbsent(2000, held, true);
+        Thread.sleep(2);
+        cache.putIfAbsent(2001, budget(2001), true);
+        assertFalse(cache.keys().contains(2000));
+
+        //Π.χ. το GUI κρατούσε το budget και ο χρήστης το άλλαξε
+        held.setUserValue("MIN_HEALTH", 5);
+        cache.readmit(2000, held);
+        assertSame(held, cache.get(2000));
+    }
+}
@@ -0,0 +1,152 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void userChanges_areReplayedFromJournalWithoutSave() throws Exception {
+        Path snapshot = dir.resolve("all-budgets.json");
+
+        BudgetYearManager mgr = new BudgetYearManager("GR");
+        mgr.enableJournal(snapshot);
+        mgr.putBudget(2020, new Budget(2020, "GR"));
+        mgr.getOrLoad(2020).setUserValue("MIN_HEALTH", 123);
+        mgr.getOrLoad(2020).setUserValue("MIN_HEALTH", 456);
+
+        assertFalse(Files.exists(snapshot));
+        assertTrue(Files.exists(BudgetJournal.forSnapshot(snapshot)));
+
+        //"Νέα εκκίνηση": μόνο ημερολόγιο, χωρίς snapshot
+        BudgetYearManager restored = new BudgetYearManager("GR");
+        restored.loadAll(snapshot);
+
+        assertEquals(456, restored.getOrLoad(2020).getFinalValue("MIN_HEALTH"));
+    }
+
+    @Test
+    void saveAll_compactsJournalIntoSnapshot() throws Exception {
+        Path snapshot = dir.resolve("all-budgets.json");
+
+        BudgetYearManager mgr = new BudgetYearManager("GR");
+        mgr.enableJournal(snapshot);
+        Budget b = new Budget(2021, "GR");
+        b.setTotals(100, 80);
+        mgr.putBudget(2021, b);
+        b.setUserValue("MIN_DEFENSE", 7);
+
+        mgr.saveAll(snapshot);
+
+        assertTrue(Files.exists(snapshot));
+        assertFalse(Files.exists(BudgetJournal.forSnapshot(snapshot)));
+
+        //Αλλαγή μετά τη συμπύκνωση: πάει σε νέο ημερολόγιο
+        b.setUserValue("MIN_DEFENSE", 9);
+
+        BudgetYearManager restored = new BudgetYearManager("GR");
+        restored.loadAll(snapshot);
+
+        Budget r = restored.getOrLoad(2021);
+        assertEquals(100, r.getTotalRevenue());
+        assertEquals(9, r.getFinalValue("MIN_DEFENSE"));
+    }
+
+    @Test
+    void journalOnlyYear_keepsItsTotals() throws Exception {
+        Path snapshot = dir.resolve("all-budgets.json");
+
+        BudgetYearManager mgr = new BudgetYearManager("GR");
+        mgr.enableJournal(snapshot);
+        Budget b = new Budget(2019, "GR");
+        b.setTotals(1_000, 900);
+        mgr.putBudget(2019, b);
+        b.setUserValue("MIN_HEALTH", 50);
+
+        //Το 2019 δεν είναι σε κανένα snapshot: χτίζεται από τα σύνολα του ημερολογίου
+        BudgetYearManager restored = new BudgetYearManager("GR");
+        restored.loadAll(snapshot);
+
+        Budget r = restored.getOrLoad(2019);
+        assertEquals(1_000, r.getTotalRevenue());
+        assertEquals(900, r.getTotalExpenses());
+        assertEquals(50, r.getFinalValue("MIN_HEALTH"));
+    }
+
+    @Test
+    void restart_keepsApiValuesOfEditedYear() throws Exception {
+        Path snapshot = dir.resolve("all-budgets.json");
+
+        BudgetYearManager mgr = new BudgetYearManager("GR");
+        mgr.enableJournal(snapshot);
+        Budget b = TestBudgets.budget();
+        mgr.putBudget(2020, b);
+        b.setUserValue("HEALTH_SALARIES", b.getFinalValue("HEALTH_SALARIES") + 5_000);
+        long expenses = b.getCurrentExpenses();
+        int categories = b.getCategories().size();
+
+        //Εκκίνηση μόνο με ημερολόγιο, μετά συμπύκνωση και νέα εκκίνηση από το snapshot
+        BudgetYearManager first = new BudgetYearManager("GR");
+        first.enableJournal(snapshot);
+        assertEquals(expenses, first.getOrLoad(2020).getCurrentExpenses());
+        assertEquals(categories, first.getOrLoad(2020).getCategories().size());
+        first.saveAll(snapshot);
+
+        BudgetYearManager second = new BudgetYearManager("GR");
+        second.enableJournal(snapshot);
+        assertEquals(expenses, second.getOrLoad(2020).getCurrentExpenses());
+        assertEquals(categories, second.getOrLoad(2020).getCategories().size());
+    }
+
+    @Test
+    void leftoverOldJournal_survivesTheNextCompaction() throws Exception {
+        Path snapshot = dir.resolve("all-budgets.json");
+        Path journal = BudgetJournal.forSnapshot(snapshot);
+        //Συμπύκνωση που διακόπηκε μετά το rotate: έμεινε μόνο το .old
+        Files.writeString(journal.resolveSibling(journal.getFileName() + ".old"),
+                "GR\t2018\tMIN_HEALTH\t11\t0\t500\t400\n");
+
+        BudgetYearManager mgr = new BudgetYearManager("GR");
+        mgr.enableJournal(snapshot);
+        Budget b = new Budget(2021, "GR");
+        b.setTotals(100, 80);
+        mgr.putBudget(2021, b);
+        b.setUserValue("MIN_DEFENSE", 7);
+        mgr.saveAll(snapshot);
+
+        BudgetYearManager restored = new BudgetYearManager("GR");
+        restored.loadAll(snapshot);
+        assertEquals(11, restored.getOrLoad(2018).getFinalValue("MIN_HEALTH"));
+        assertEquals(7, restored.getOrLoad(2021).getFinalValue("MIN_DEFENSE"));
+    }
+
+    @Test
+    void scaleAll_isJournaledAsOneBatch() throws Exception {
+        Path snapshot = dir.resolve("all-budgets.json");
+
+        BudgetYearManager mgr = new BudgetYearManager("GR");
+        mgr.enableJournal(snapshot);
+        Budget b = TestBudgets.budget();
+        mgr.putBudget(2020, b);
+        b.scaleAll(0.9);
+
+        //Μία γραμμή ανά αλλαγμένη κατηγορία, όλες με την ίδια χρονοσφραγίδα
+        List<String> lines = Files.readAllLines(BudgetJournal.forSnapshot(snapshot));
+        assertEquals(b.getUserChanges().size(), lines.size());
+        assertEquals(1, lines.stream().map(l -> l.split("\t")[4]).distinct().count());
+
+        BudgetYearManager restored = new BudgetYearManager("GR");
+        restored.loadAll(snapshot);
+        assertEquals(Map.copyOf(b.getUserChanges()), Map.copyOf(restored.getOrLoad(2020).getUserChanges()));
+    }
+}
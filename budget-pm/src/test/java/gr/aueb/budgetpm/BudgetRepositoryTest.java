@@ -0,0 +1,154 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetRepositoryTest {
+
+    private static FakeWorldBankServer api;
+    private static IndicatorSource previousSource;
+    private static ResponseCache previousCache;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void startFakeApi() throws Exception {
+        api = FakeWorldBankServer.start(0);
+        for (String country : List.of("GR", "IT")) {
+            api.record(country, "GC.XPN.TOTL.GD.ZS", "2019:2021", series(country, "GC.XPN.TOTL.GD.ZS", 50.0));
+            api.record(country, "GC.REV.XGRT.GD.ZS", "2019:2021", series(country, "GC.REV.XGRT.GD.ZS", 45.0));
+        }
+        previousSource = WorldBankClient.configured();
+        previousCache = WorldBankClient.getResponseCache();
+        WorldBankClient.setConfigured(new WorldBankClient(api.baseUrl()));
+        WorldBankClient.setResponseCache(null);
+    }
+
+    @AfterAll
+    static void stopFakeApi() {
+        WorldBankClient.setConfigured(previousSource);
+        WorldBankClient.setResponseCache(previousCache);
+        api.stop();
+    }
+
+    //Απάντηση εύρους 2019-2021 στη μορφή του API
+    private static String series(String country, String indicator, double percent) {
+        StringBuilder sb = new StringBuilder("[{\"page\":1,\"pages\":1,\"per_page\":50,\"total\":3},[");
+        for (int year = 2021; year >= 2019; year--) {
+            sb.append("{\"indicator\":{\"id\":\"").append(indicator).append("\"},\"country\":{\"id\":\"")
+                    .append(country).append("\"},\"date\":\"").append(year).append("\",\"value\":")
+                    .append(percent + (year - 2019)).append('}');
+            if (year > 2019) sb.append(',');
+        }
+        return sb.append("]]").toString();
+    }
+
+    @Test
+    void getAll_loadsEveryCountryWithOneRangeRequestPerIndicator() {
+        BudgetRepository repo = new BudgetRepository();
+        long before = api.getRequestCount();
+
+        Map<String, Map<Integer, Budget>> all = repo.getAll(List.of("gr", "IT"), List.of(2021, 2019, 2020));
+
+        assertEquals(List.of("GR", "IT"), List.copyOf(all.keySet()));
+        assertEquals(List.of(2019, 2020, 2021), List.copyOf(all.get("IT").keySet()));
+        assertTrue(all.get("GR").get(2021).getTotalExpenses() > all.get("GR").get(2019).getTotalExpenses());
+        assertEquals(4, api.getRequestCount() - before);
+
+        //Δεύτερη φορά όλα από την cache, και το ίδιο αντικείμενο με το getOrLoad
+        assertSame(all.get("IT").get(2020), repo.getOrLoad("IT", 2020));
+        repo.getAll(List.of("GR", "IT"), List.of(2019, 2020, 2021));
+        assertEquals(4, api.getRequestCount() - before);
+        assertEquals(7, repo.getCacheStats().hits());
+    }
+
+    @Test
+    void failedLoad_isNotCachedAndIsRetried() {
+        BudgetRepository repo = new BudgetRepository();
+        //Τίποτα δεν ακούει στη θύρα 1: κάθε αίτημα αποτυγχάνει αμέσως, χωρίς επαναλήψεις
+        WorldBankClient.setConfigured(new WorldBankClient("http://127.0.0.1:1", new RequestGuard.Policy(
+                Duration.ofSeconds(1), 1, Duration.ofMillis(1), Duration.ofMillis(1), 100, 100, 100, Duration.ofMillis(1))));
+        try {
+            assertThrows(UncheckedIOException.class, () -> repo.getOrLoad("GR", 2020));
+            assertThrows(UncheckedIOException.class, () -> repo.getAll(List.of("GR"), List.of(2019, 2020, 2021)));
+            assertEquals(Set.of(), repo.getLoadedYears("GR"));
+        } finally {
+            WorldBankClient.setConfigured(new WorldBankClient(api.baseUrl()));
+        }
+
+        Map<Integer, Budget> loaded = repo.getAll(List.of("GR"), List.of(2019, 2020, 2021)).get("GR");
+        assertTrue(loaded.get(2020).getTotalExpenses() > 0);
+    }
+
+    @Test
+    void saveAll_keepsEveryCountryInOneFile() throws Exception {
+        BudgetRepository repo = new BudgetRepository();
+        for (String country : List.of("GR", "IT")) {
+            Budget b = new Budget(2020, country);
+            b.setTotals(100, 90);
+            repo.put(country, 2020, b);
+        }
+        repo.getOrLoad("IT", 2020).setUserValue("MIN_HEALTH", 7);
+
+        Path file = dir.resolve("all-budgets.json");
+        repo.saveAll(file);
+
+        BudgetRepository restored = new BudgetRepository();
+        restored.loadAll(file);
+        assertEquals(Map.of("MIN_HEALTH", 7L), restored.getOrLoad("IT", 2020).getUserChanges());
+        assertEquals(100, restored.getOrLoad("GR", 2020).getTotalRevenue());
+
+        //Η όψη μίας χώρας βλέπει μόνο τα δικά της έτη
+        assertEquals(Set.of(2020), new BudgetYearManager("GR", restored).getLoadedYears());
+    }
+
+    @Test
+    void loadAll_pinsOnlyBudgetsWithUserChanges() throws Exception {
+        BudgetRepository repo = new BudgetRepository();
+        for (int year = 2010; year < 2013; year++) {
+            Budget b = new Budget(year, "GR");
+            b.setTotals(100, 90);
+            repo.put("GR", year, b);
+        }
+        repo.getOrLoad("GR", 2011).setUserValue("MIN_HEALTH", 7);
+        Path file = dir.resolve("all-budgets.json");
+        repo.saveAll(file);
+
+        //Όριο ενός budget: μένει μόνο αυτό με αλλαγές χρήστη
+        BudgetRepository restored = new BudgetRepository(new BudgetCache.Limits(1, Long.MAX_VALUE, Duration.ZERO));
+        restored.loadAll(file);
+        assertEquals(Set.of(2011), restored.getLoadedYears("GR"));
+    }
+
+    @Test
+    void loadAll_keepsBudgetsThatAreNotInTheFile() throws Exception {
+        BudgetRepository saved = new BudgetRepository();
+        Budget gr = new Budget(2020, "GR");
+        gr.setTotals(100, 90);
+        saved.put("GR", 2020, gr);
+        Path file = dir.resolve("gr-only.json");
+        saved.saveAll(file);
+
+        BudgetRepository repo = new BudgetRepository();
+        Budget it = new Budget(2020, "IT");
+        it.setTotals(100, 90);
+        repo.put("IT", 2020, it);
+        it.setUserValue("MIN_HEALTH", 7);
+
+        repo.loadAll(file);
+        assertSame(it, repo.getOrLoad("IT", 2020));
+        assertEquals(100, repo.getOrLoad("GR", 2020).getTotalRevenue());
+    }
+}
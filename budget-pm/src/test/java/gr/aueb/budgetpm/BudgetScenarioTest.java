@@ -0,0 +1,41 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetScenarioTest {
+
+    @Test
+    void percentChange_isAppliedWithoutCopyingCategories() {
+        BudgetScenario sc = new BudgetScenario("cut", TestBudgets.budget(), -10);
+
+        assertEquals(135_000, sc.getCategoryValue("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ"));
+        assertTrue(sc.getOverrides().isEmpty());
+        assertEquals(Budget.CATEGORY_MAP.size(), sc.getAllCategoryValues().size());
+    }
+
+    @Test
+    void derivedScenarios_shareStateButNotLaterChanges() {
+        BudgetScenario root = new BudgetScenario("root", TestBudgets.budget());
+        root.setCategoryValue("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ", 1);
+
+        BudgetScenario child = root.derive("child");
+        child.setCategoryValue("ΥΠΟΥΡΓΕΙΟ ΑΜΥΝΑΣ", 2);
+        root.setCategoryValue("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ", 3);
+
+        assertEquals(1, child.getCategoryValue("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ"));
+        assertEquals(2, child.getCategoryValue("ΥΠΟΥΡΓΕΙΟ ΑΜΥΝΑΣ"));
+        assertEquals(3, root.getCategoryValue("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ"));
+        assertEquals(100_000, root.getCategoryValue("ΥΠΟΥΡΓΕΙΟ ΑΜΥΝΑΣ"));
+
+        //Μακριά αλυσίδα: συμπτύσσεται χωρίς να χαθούν τιμές
+        BudgetScenario s = child;
+        for (int i = 0; i < 50; i++) {
+            s = s.derive("s" + i);
+            s.setCategoryValue("ΕΡΕΥΝΑ", i);
+        }
+        assertEquals(49, s.getCategoryValue("ΕΡΕΥΝΑ"));
+        assertEquals(1, s.getCategoryValue("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ"));
+    }
+}
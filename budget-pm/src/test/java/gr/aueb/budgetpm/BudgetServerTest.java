@@ -0,0 +1,85 @@
+package gr.aueb.budgetpm;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetServerTest {
+
+    private static BudgetServer server;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws Exception {
+        //Budgets μόνο στην cache, ώστε να μη χρειάζεται το API
+        for (int year : new int[]{2019, 2020}) {
+            Budget b = TestBudgets.budget(year, "ZZ");
+            BudgetYearManager.forCountry("ZZ").putBudget(year, b);
+        }
+        server = BudgetServer.start(0);
+    }
+
+    @AfterAll
+    static void stop() {
+        server.stop();
+    }
+
+    private static HttpResponse<String> get(String path, String etag) throws Exception {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path));
+        if (etag != null) {
+            req.header("If-None-Match", etag);
+        }
+        return client.send(req.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void budget_isServedAsJson_andRevalidatedWithEtag() throws Exception {
+        HttpResponse<String> first = get("/budget/zz/2020", null);
+        assertEquals(200, first.statusCode());
+        JsonObject json = JsonParser.parseString(first.body()).getAsJsonObject();
+        assertEquals(2020, json.get("year").getAsInt());
+        assertEquals(-100_000, json.get("balance").getAsLong());
+
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        assertEquals(304, get("/budget/ZZ/2020", etag).statusCode());
+
+        //Μετά από αλλαγή η έκδοση αλλάζει και το παλιό ETag δεν ισχύει
+        BudgetYearManager.forCountry("ZZ").getOrLoad(2020).setUserValue("MIN_HEALTH", 1);
+        assertEquals(200, get("/budget/ZZ/2020", etag).statusCode());
+    }
+
+    @Test
+    void scenario_etagFollowsTheParsedParameters() throws Exception {
+        HttpResponse<String> first = get("/scenario?country=ZZ&year=2019&percent=-5&MIN_HEALTH=100", null);
+        assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+
+        //Ίδιες παράμετροι με άλλη σειρά / γραφή: ίδιο αποτέλεσμα, άρα 304
+        assertEquals(304, get("/scenario?min_health=100&percent=-5.0&year=2019&country=ZZ", etag).statusCode());
+        assertEquals(200, get("/scenario?country=ZZ&year=2019&percent=-5&MIN_HEALTH=101", etag).statusCode());
+    }
+
+    @Test
+    void server_listensOnLoopbackByDefault() {
+        assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+    }
+
+    @Test
+    void compareAndErrors() throws Exception {
+        HttpResponse<String> cmp = get("/compare?country=ZZ&years=2019,2020", null);
+        assertEquals(200, cmp.statusCode());
+        assertEquals(2, JsonParser.parseString(cmp.body()).getAsJsonObject().getAsJsonArray("columns").size());
+
+        assertEquals(400, get("/budget/ZZ/abc", null).statusCode());
+        assertEquals(404, get("/nothing", null).statusCode());
+    }
+}
@@ -0,0 +1,49 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetStorageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void binaryRoundTrip_keepsTotalsApiValuesAndOverrides() throws Exception {
+        Budget b = TestBudgets.budget();
+        b.setUserValue("MIN_HEALTH", 123);
+
+        Path file = dir.resolve("budget-2020.bin");
+        BudgetStorage.saveBudgetBinary(b, file);
+        Budget r = BudgetStorage.loadBudgetBinary(file);
+
+        assertEquals("GR", r.getCountryCode());
+        assertEquals(2020, r.getYear());
+        assertEquals(b.getTotalRevenue(), r.getTotalRevenue());
+        assertEquals(b.getTotalExpenses(), r.getTotalExpenses());
+        assertEquals(b.getApiValues(), r.getApiValues());
+        assertEquals(b.getUserChanges(), r.getUserChanges());
+        assertEquals(123, r.getFinalValue("MIN_HEALTH"));
+    }
+
+    @Test
+    void loadBudgetBinary_rejectsCorruptedFile() throws Exception {
+        Budget b = new Budget(2020, "GR");
+        b.setTotals(10, 20);
+
+        Path file = dir.resolve("budget-2020.bin");
+        BudgetStorage.saveBudgetBinary(b, file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[10] ^= 0x7F;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> BudgetStorage.loadBudgetBinary(file));
+    }
+}
@@ -1,14 +1,39 @@
 package gr.aueb.budgetpm;
 
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class BudgetTest {
 
+    private static FakeWorldBankServer api;
+    private static IndicatorSource previousSource;
+    private static ResponseCache previousCache;
+
+    //Το loadFromApi πηγαίνει στον τοπικό FakeWorldBankServer αντί για το δίκτυο
+    @BeforeAll
+    static void startFakeApi() throws Exception {
+        api = FakeWorldBankServer.start(0)
+                .recordValue("GR", "GC.XPN.TOTL.GD.ZS", 2020, 60.5)
+                .recordValue("GR", "GC.REV.XGRT.GD.ZS", 2020, 48.1);
+        previousSource = WorldBankClient.configured();
+        previousCache = WorldBankClient.getResponseCache();
+        WorldBankClient.setConfigured(new WorldBankClient(api.baseUrl()));
+        WorldBankClient.setResponseCache(null);
+    }
+
+    @AfterAll
+    static void stopFakeApi() {
+        WorldBankClient.setConfigured(previousSource);
+        WorldBankClient.setResponseCache(previousCache);
+        api.stop();
+    }
+
     @Test
     void newBudget_hasZeroTotals() {
         // 1. Δημιουργώ ένα καινούριο Budget
-        Budget budget = new Budget();
+        Budget budget = new Budget(2020, "GR");
 
         // 2. Ελέγχω ότι ξεκινάει με 0
         assertEquals(0, budget.getTotalRevenue());
@@ -18,7 +43,7 @@ public class BudgetTest {
     @Test
     void loadFromApi_keepsTotalsNonNegative() {
         
-        Budget budget = new Budget();
+        Budget budget = new Budget(2020, "GR");
 
         // Καλώ τη μέθοδο που φορτώνει δεδομένα από το API
         budget.loadFromApi();
@@ -26,5 +51,7 @@ public class BudgetTest {
         // Ελέγχω ότι τα ποσά ΔΕΝ είναι αρνητικά
         assertTrue(budget.getTotalRevenue() >= 0);
         assertTrue(budget.getTotalExpenses() >= 0);
+        assertEquals(Budget.percentToAmount(60.5), budget.getTotalExpenses());
+        assertEquals(Budget.percentToAmount(48.1), budget.getTotalRevenue());
     }
-}
\ No newline at end of file
+}
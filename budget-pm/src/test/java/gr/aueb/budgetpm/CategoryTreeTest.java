@@ -0,0 +1,66 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CategoryTreeTest {
+
+    @Test
+    void leafChange_rollsUpToMinistryAndTotal() {
+        Budget b = TestBudgets.budget();
+        long ministries = b.getMinistriesTotal();
+
+        //HEALTH_MEDS: 22.500 -> 32.500
+        b.setUserValue("HEALTH_MEDS", 32_500);
+
+        assertEquals(160_000, b.getFinalValue("MIN_HEALTH"));
+        assertEquals(1_010_000, b.getFinalValue("GC.XPN.TOTL.GD.ZS"));
+        assertEquals(1_010_000, b.getCurrentExpenses());
+        assertEquals(ministries + 10_000, b.getMinistriesTotal());
+        assertEquals(1_000_000, b.getTotalExpenses());
+    }
+
+    @Test
+    void ministryWithUserValue_stopsPropagationFromItsItems() {
+        Budget b = TestBudgets.budget();
+        b.setUserValue("MIN_HEALTH", 100_000);
+        b.setUserValue("HEALTH_MEDS", 0);
+
+        assertEquals(100_000, b.getFinalValue("MIN_HEALTH"));
+        assertEquals(950_000, b.getCurrentExpenses());
+
+        //Η σειρά των αλλαγών δεν επηρεάζει το αποτέλεσμα
+        Budget c = TestBudgets.budget();
+        c.setUserValue("HEALTH_MEDS", 0);
+        c.setUserValue("MIN_HEALTH", 100_000);
+        assertEquals(b.getCurrentExpenses(), c.getCurrentExpenses());
+    }
+
+    @Test
+    void scaleAll_changesTotalsOnlyOnce() {
+        Budget b = TestBudgets.budget();
+        b.scaleAll(0.9);
+
+        assertEquals(135_000, b.getFinalValue("MIN_HEALTH"));
+        assertEquals(900_000, b.getCurrentExpenses(), 10);
+        assertEquals(b.getCurrentExpenses(), b.getMinistriesTotal());
+    }
+
+    @Test
+    void hierarchy_followsTheAllocationMatrix() {
+        //Τα φάρμακα μεταφέρονται στην Παιδεία: εκεί πάει και η αλλαγή τους
+        AllocationMatrix m = AllocationMatrix.fromJson("{\"ministries\":["
+                + "{\"code\":\"MIN_HEALTH\",\"share\":0.2,\"items\":{\"HEALTH_SALARIES\":1.0}},"
+                + "{\"code\":\"MIN_EDUCATION\",\"share\":0.1,\"items\":{\"HEALTH_MEDS\":1.0}}]}");
+        Budget b = new Budget(2020, "GR");
+        b.setTotals(900_000, 1_000_000);
+        b.applyAllocation(m, AllocationEngine.allocate(m, new long[] { 1_000_000 }), 1, 0);
+
+        b.setUserValue("HEALTH_MEDS", 110_000);
+
+        assertEquals(200_000, b.getFinalValue("MIN_HEALTH"));
+        assertEquals(110_000, b.getFinalValue("MIN_EDUCATION"));
+        assertEquals(1_010_000, b.getCurrentExpenses());
+    }
+}
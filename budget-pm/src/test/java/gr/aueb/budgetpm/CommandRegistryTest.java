@@ -0,0 +1,52 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandRegistryTest {
+
+    private static CommandRegistry registry() {
+        CommandRegistry r = new CommandRegistry();
+        r.register("compare", (ctx, a) -> {});
+        r.register("compare countries", (ctx, a) -> {});
+        r.register("increase all", (ctx, a) -> {});
+        r.register("increase", (ctx, a) -> {});
+        r.registerExact("save all", (ctx, a) -> {});
+        return r;
+    }
+
+    @Test
+    void longestMatchWins_regardlessOfRegistrationOrder() {
+        CommandRegistry r = registry();
+
+        assertEquals("compare countries", r.resolve("compare countries gr it 2020").command().name());
+        assertEquals("compare", r.resolve("compare 2019 2020").command().name());
+        assertEquals("increase all", r.resolve("increase all 5").command().name());
+        //Λέξη που απλώς ξεκινά με "all" δεν είναι το "increase all"
+        assertEquals("increase", r.resolve("increase allowance 5").command().name());
+    }
+
+    @Test
+    void exactCommands_andTypedArgs() {
+        CommandRegistry r = registry();
+
+        assertTrue(r.resolve("save all").isKnown());
+        assertFalse(r.resolve("save all now").isKnown());
+        assertFalse(r.resolve("").isKnown());
+
+        CommandRegistry.Args args = r.resolve("  compare   2019 2020 ").args();
+        assertEquals(3, args.size());
+        assertEquals(2019, args.intAt(1));
+        assertThrows(NumberFormatException.class, () -> args.intAt(0));
+    }
+
+    @Test
+    void badNumber_printsTheCommandUsage() {
+        //Η μετατροπή αποτυγχάνει πριν από οποιαδήποτε φόρτωση, άρα δεν χρειάζεται δίκτυο
+        assertTrue(App.runCaptured("increase health abc", 2020)
+                .contains("Μη έγκυρο ποσοστό. Χρήση: increase <CATEGORY> <percent>"));
+        assertTrue(App.runCaptured("compare years 2019 x", 2020)
+                .contains("Μη έγκυρα έτη. Χρήση: compare years <Y1> <Y2>"));
+    }
+}
@@ -0,0 +1,57 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CountryComparatorTest {
+
+    private static Budget budget(String country, long expenses, long revenue) {
+        Budget b = new Budget(2020, country);
+        b.loadFromMetrics(Map.of("GC.XPN.TOTL.GD.ZS", expenses, "GC.REV.XGRT.GD.ZS", revenue));
+        return b;
+    }
+
+    @Test
+    void compare_diffIsSecondMinusFirst() {
+        Budget gr = budget("GR", 1_000_000, 900_000);
+        Budget it = budget("IT", 2_000_000, 1_800_000);
+
+        var rows = CountryComparator.compare(gr, it);
+        var health = rows.get("ΥΠΟΥΡΓΕΙΟ ΥΓΕΙΑΣ");
+
+        assertNotNull(health);
+        assertEquals(150_000, health.aValue);
+        assertEquals(300_000, health.bValue);
+        assertEquals(150_000, health.diff);
+    }
+
+    @Test
+    void compareAll_alignsEveryBudgetPerCategory() {
+        Budget gr = budget("GR", 1_000_000, 900_000);
+        Budget it = budget("IT", 2_000_000, 1_800_000);
+        Budget cy = new Budget(2020, "CY");
+        cy.setUserValue("MIN_HEALTH", 42);
+
+        List<CountryComparator.AlignedRow> rows = CountryComparator.compareAll(List.of(gr, it, cy));
+
+        CountryComparator.AlignedRow health = rows.stream()
+                .filter(r -> r.getCode().equals("MIN_HEALTH"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(3, health.size());
+        assertEquals(42, health.value(2));
+        assertEquals(1, health.maxIndex());
+        assertEquals(2, health.minIndex());
+
+        //Κατηγορία που λείπει από ένα budget μετράει ως 0
+        CountryComparator.AlignedRow defense = rows.stream()
+                .filter(r -> r.getCode().equals("MIN_DEFENSE"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(0, defense.value(2));
+    }
+}
@@ -0,0 +1,114 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FakeWorldBankServerTest {
+
+    private static final String EXP = "GC.XPN.TOTL.GD.ZS";
+
+    private FakeWorldBankServer api;
+    private WorldBankClient client;
+    private ResponseCache previousCache;
+
+    @BeforeEach
+    void start() throws Exception {
+        api = FakeWorldBankServer.start(0).recordValue("GR", EXP, 2020, 60.5);
+        //Μία προσπάθεια, χωρίς όριο ρυθμού: ο client βλέπει ακριβώς τις απαντήσεις του server
+        client = new WorldBankClient(api.baseUrl(), new RequestGuard.Policy(Duration.ofSeconds(5), 1,
+                Duration.ZERO, Duration.ZERO, 1000, 1000, 1000, Duration.ofSeconds(1)));
+        previousCache = WorldBankClient.getResponseCache();
+        WorldBankClient.setResponseCache(null);
+    }
+
+    @AfterEach
+    void stop() {
+        WorldBankClient.setResponseCache(previousCache);
+        api.stop();
+    }
+
+    private String fetch(Duration timeout) {
+        return client.fetchIndicator("GR", EXP, "2020", timeout).join().value();
+    }
+
+    @Test
+    void latencyAboveTimeout_failsWithTimeout() {
+        api.withLatency(Duration.ofMillis(300), Duration.ofMillis(300));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> fetch(Duration.ofMillis(50)));
+        assertInstanceOf(HttpTimeoutException.class, e.getCause());
+
+        long start = System.nanoTime();
+        assertNotNull(fetch(Duration.ofSeconds(5)));
+        assertTrue(System.nanoTime() - start >= 300_000_000L);
+    }
+
+    @Test
+    void errorsAndThrottling_failWithStatus() {
+        api.withErrorRate(1.0);
+        CompletionException e = assertThrows(CompletionException.class, () -> fetch(Duration.ofSeconds(5)));
+        assertEquals(500, ((IndicatorSource.StatusException) e.getCause()).getStatus());
+        assertEquals(1, api.getFailedCount());
+
+        api.withErrorRate(0).withThrottle(1);
+        assertNotNull(fetch(Duration.ofSeconds(5)));
+        e = assertThrows(CompletionException.class, () -> fetch(Duration.ofSeconds(5)));
+        IndicatorSource.StatusException status = (IndicatorSource.StatusException) e.getCause();
+        assertEquals(429, status.getStatus());
+        assertEquals(1, status.getRetryAfterSeconds());
+        assertEquals(1, api.getThrottledCount());
+    }
+
+    @Test
+    void errorPayload_isNotCached(@TempDir Path dir) {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1024 * 1024);
+        WorldBankClient.setResponseCache(cache);
+
+        //Άγνωστος δείκτης: 200 με [{"message":...}]
+        String body = client.fetchIndicator("GR", "NO.SUCH.IND", "2020", Duration.ofSeconds(5)).join().value();
+        assertTrue(WorldBankParser.isErrorPayload(body));
+        assertNull(cache.lookup(ResponseCache.key("GR", "NO.SUCH.IND", "2020")));
+
+        assertNotNull(fetch(Duration.ofSeconds(5)));
+        assertNotNull(cache.lookup(ResponseCache.key("GR", EXP, "2020")));
+    }
+
+    @Test
+    void staleEntry_isServedOnlyWhenTheApiIsDown(@TempDir Path dir) {
+        WorldBankClient.setResponseCache(new ResponseCache(dir, Duration.ZERO, 1024 * 1024));
+        String body = fetch(Duration.ofSeconds(5));
+
+        api.withErrorRate(1.0);
+        IndicatorSource.Response<String> resp = client.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(5)).join();
+        assertEquals(body, resp.value());
+        assertTrue(resp.stale());
+
+        //429: το API απαντά, απλώς ζητά να περιμένουμε: όχι παλιά δεδομένα
+        api.withErrorRate(0).withThrottle(1);
+        fetch(Duration.ofSeconds(5));
+        assertThrows(CompletionException.class, () -> fetch(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void malformedPage_getsTheErrorPayload() throws Exception {
+        HttpResponse<String> resp = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                URI.create(api.baseUrl() + "/country/GR/indicator/" + EXP + "?format=json&date=2020&page=x")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, resp.statusCode());
+        assertEquals(FakeWorldBankServer.NOT_FOUND_BODY, resp.body());
+    }
+}
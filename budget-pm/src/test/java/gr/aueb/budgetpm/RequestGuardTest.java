@@ -0,0 +1,132 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestGuardTest {
+
+    private static final String EXP = "GC.XPN.TOTL.GD.ZS";
+
+    private FakeWorldBankServer api;
+    private ResponseCache previousCache;
+
+    @BeforeEach
+    void start() throws Exception {
+        api = FakeWorldBankServer.start(0).recordValue("GR", EXP, 2020, 60.5);
+        previousCache = WorldBankClient.getResponseCache();
+        WorldBankClient.setResponseCache(null);
+    }
+
+    @AfterEach
+    void stop() {
+        WorldBankClient.setResponseCache(previousCache);
+        api.stop();
+    }
+
+    //Κάθε client έχει δικό του guard, άρα δικό του bucket και breaker
+    private WorldBankClient source(RequestGuard.Policy policy) {
+        return new WorldBankClient(api.baseUrl(), policy);
+    }
+
+    private static RequestGuard.Policy policy(int attempts, double perSecond, int threshold,
+                                             Duration maxBackoff) {
+        return new RequestGuard.Policy(Duration.ofSeconds(2), attempts, Duration.ofMillis(10),
+                maxBackoff, perSecond, 1, threshold, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void failures_areRetried_andThenOpenTheCircuit() {
+        WorldBankClient src = source(policy(3, 1000, 3, Duration.ofMillis(50)));
+        api.withErrorRate(1.0);
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+        assertInstanceOf(IndicatorSource.StatusException.class, e.getCause());
+        assertEquals(3, api.getRequestCount());
+        assertEquals("OPEN", src.guard().circuitState());
+
+        //Με ανοιχτό breaker δεν στέλνεται αίτημα
+        api.withErrorRate(0);
+        e = assertThrows(CompletionException.class,
+                () -> src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+        assertInstanceOf(RequestGuard.CircuitOpenException.class, e.getCause());
+        assertEquals(3, api.getRequestCount());
+    }
+
+    @Test
+    void cancellingTheCall_stopsTheRetries(@TempDir Path dir) throws Exception {
+        //Με cache το fetchIndicator επιστρέφει future που εξαρτάται από το αίτημα του guard
+        WorldBankClient.setResponseCache(new ResponseCache(dir, Duration.ofHours(1), 1024 * 1024));
+        WorldBankClient src = source(policy(5, 1000, 10, Duration.ofMillis(50)));
+        api.withLatency(Duration.ofMillis(200), Duration.ofMillis(200)).withErrorRate(1.0);
+
+        CompletableFuture<?> f = src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2));
+        Thread.sleep(50);
+        f.cancel(true);
+        Thread.sleep(1500);
+
+        assertEquals(1, api.getRequestCount());
+    }
+
+    @Test
+    void cancelledProbe_doesNotCloseTheCircuit() throws Exception {
+        WorldBankClient src = source(new RequestGuard.Policy(Duration.ofSeconds(2), 1, Duration.ofMillis(10),
+                Duration.ofMillis(10), 1000, 10, 1, Duration.ofMillis(100)));
+        api.withErrorRate(1.0);
+        assertThrows(CompletionException.class, () -> src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+        assertEquals("OPEN", src.guard().circuitState());
+
+        //Μετά την παύση περνάει ένα δοκιμαστικό αίτημα, που ακυρώνεται πριν απαντήσει ο host
+        Thread.sleep(150);
+        api.withErrorRate(0).withLatency(Duration.ofMillis(300), Duration.ofMillis(300));
+        CompletableFuture<?> probe = src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2));
+        Thread.sleep(50);
+        probe.cancel(true);
+        Thread.sleep(100);
+
+        assertEquals("HALF_OPEN", src.guard().circuitState());
+        //Η θέση του δοκιμαστικού ελευθερώθηκε: το επόμενο αίτημα περνάει και κλείνει τον breaker
+        assertNotNull(src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+        assertEquals("CLOSED", src.guard().circuitState());
+    }
+
+    @Test
+    void tokenBucket_spacesRequests_andThrottledCallsSucceedOnRetry() {
+        WorldBankClient src = source(policy(3, 20, 10, Duration.ofMillis(1500)));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+        }
+        //Ριπή 1 και 20/s: τα 4 επόμενα περιμένουν ~50ms το καθένα
+        assertTrue(System.nanoTime() - start >= 180_000_000L);
+
+        //429 από τον server: νέα προσπάθεια μετά το Retry-After (1s)
+        api.withThrottle(1);
+        assertNotNull(src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+        assertNotNull(src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+    }
+
+    @Test
+    void cacheHits_doNotGoThroughTheGuard(@TempDir Path dir) {
+        WorldBankClient.setResponseCache(new ResponseCache(dir, Duration.ofHours(1), 1024 * 1024));
+        //1 αίτημα/s: αν οι αναγνώσεις της cache περνούσαν από το bucket, θα αργούσαν ~20s
+        WorldBankClient src = source(policy(1, 1, 1, Duration.ofMillis(50)));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(src.fetchIndicator("GR", EXP, "2020", Duration.ofSeconds(2)).join());
+        }
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        assertEquals(1, api.getRequestCount());
+    }
+}
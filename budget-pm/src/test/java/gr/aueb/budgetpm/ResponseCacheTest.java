@@ -0,0 +1,83 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void store_thenLookup_returnsBodyAndValidators() {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1024 * 1024);
+        String key = ResponseCache.key("gr", "GC.XPN.TOTL.GD.ZS", "2020");
+
+        cache.store(key, "[{}]", "\"abc\"", "Mon, 01 Jan 2024 00:00:00 GMT");
+
+        ResponseCache.Entry entry = cache.lookup(key);
+        assertNotNull(entry);
+        assertEquals("[{}]", entry.body());
+        assertEquals("\"abc\"", entry.etag());
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", entry.lastModified());
+        assertTrue(cache.isFresh(entry));
+    }
+
+    @Test
+    void lookup_missingKey_returnsNull() {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1024 * 1024);
+        assertNull(cache.lookup(ResponseCache.key("GR", "X", "2000:2023")));
+    }
+
+    @Test
+    void zeroTtl_entryIsStale() {
+        ResponseCache cache = new ResponseCache(dir, Duration.ZERO, 1024 * 1024);
+        String key = ResponseCache.key("GR", "X", "2020");
+        cache.store(key, "[]", null, null);
+
+        assertFalse(cache.isFresh(cache.lookup(key)));
+    }
+
+    @Test
+    void store_overLimit_evictsOldestEntries() throws Exception {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 250);
+        String body = "x".repeat(100);
+
+        cache.store(ResponseCache.key("GR", "X", "2018"), body, null, null);
+        Thread.sleep(20);
+        cache.store(ResponseCache.key("GR", "X", "2019"), body, null, null);
+        Thread.sleep(20);
+        cache.store(ResponseCache.key("GR", "X", "2020"), body, null, null);
+
+        assertNull(cache.lookup(ResponseCache.key("GR", "X", "2018")));
+        assertNotNull(cache.lookup(ResponseCache.key("GR", "X", "2020")));
+    }
+
+    @Test
+    void key_rejectsPathsOutsideTheCache() {
+        assertEquals("ALL/X/2000_2023", ResponseCache.key("all", "X", "2000:2023"));
+        assertThrows(IllegalArgumentException.class, () -> ResponseCache.key("../..", "X", "2020"));
+        assertThrows(IllegalArgumentException.class, () -> ResponseCache.key("GR", "..", "2020"));
+        assertThrows(IllegalArgumentException.class, () -> ResponseCache.key("GR", "X", "2020/../x"));
+    }
+
+    @Test
+    void lookup_doesNotWriteToDisk() throws Exception {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1024 * 1024);
+        String key = ResponseCache.key("GR", "X", "2020");
+        cache.store(key, "[]", null, null);
+        Path body = dir.resolve(key + ".json");
+        FileTime old = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(body, old);
+
+        assertNotNull(cache.lookup(key));
+        assertEquals(old, Files.getLastModifiedTime(body));
+    }
+}
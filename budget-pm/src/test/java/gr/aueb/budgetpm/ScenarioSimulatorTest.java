@@ -0,0 +1,37 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScenarioSimulatorTest {
+
+    @Test
+    void fixedShocks_giveExactBands() {
+        var result = ScenarioSimulator.simulate(TestBudgets.budget(), Map.of(
+                "MIN_HEALTH", ScenarioSimulator.Shock.parse("fixed:10"),
+                "LABOR_PENSIONS", ScenarioSimulator.Shock.parse("fixed:-50"),
+                ScenarioSimulator.REVENUE, ScenarioSimulator.Shock.parse("fixed:0")), 1000, 1L);
+
+        //Υγεία 150.000 +10%, συντάξεις 180.000 -50% (από το Υπ. Εργασίας)
+        assertEquals(165_000, result.ministries().get("MIN_HEALTH").p50(), 1e-6);
+        assertEquals(210_000, result.ministries().get("MIN_LABOR").p95(), 1e-6);
+        assertEquals(1_000_000 + 15_000 - 90_000, result.expenses().p5(), 1e-6);
+        assertEquals(900_000 - 925_000, result.balance().p50(), 1e-6);
+    }
+
+    @Test
+    void sameSeed_givesSameResult() {
+        Map<String, ScenarioSimulator.Shock> shocks = Map.of(
+                ScenarioSimulator.ALL, ScenarioSimulator.Shock.parse("normal:0:5"),
+                ScenarioSimulator.REVENUE, ScenarioSimulator.Shock.parse("uniform:-3:3"));
+
+        var a = ScenarioSimulator.simulate(TestBudgets.budget(), shocks, 20_000, 42L);
+        var b = ScenarioSimulator.simulate(TestBudgets.budget(), shocks, 20_000, 42L);
+
+        assertEquals(a, b);
+        assertTrue(a.balance().p5() < a.balance().p50() && a.balance().p50() < a.balance().p95());
+    }
+}
@@ -0,0 +1,54 @@
+package gr.aueb.budgetpm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScenarioSweepTest {
+
+    @Test
+    void run_findsSmallestChangesThatMeetTarget() {
+        Budget b = TestBudgets.budget();
+
+        //Έλλειμμα 100.000: Υγεία 150.000, Εργασίας 300.000
+        List<ScenarioSweep.Axis> axes = List.of(
+                ScenarioSweep.Axis.parse("min_health=-40:0:10"),
+                ScenarioSweep.Axis.parse("min_labor=-40:0:5"));
+        assertEquals(5 * 9, ScenarioSweep.gridSize(axes));
+
+        List<List<ScenarioSweep.Point>> updates = new ArrayList<>();
+        var points = ScenarioSweep.run(b, axes, -40_000, 3, updates::add);
+
+        assertEquals(3, points.size());
+        ScenarioSweep.Point best = points.get(0);
+        //-20% στην Εργασία (60.000) είναι η μικρότερη συνολική μεταβολή
+        assertArrayEquals(new double[] { 0, -20 }, best.percents(), 1e-9);
+        assertEquals(-40_000, best.balance());
+        for (ScenarioSweep.Point p : points) {
+            assertTrue(p.balance() >= -40_000);
+            assertTrue(p.totalChange() >= best.totalChange());
+        }
+        //Η τελευταία ενημέρωση είναι το τελικό top-K
+        assertFalse(updates.isEmpty());
+        var last = updates.get(updates.size() - 1);
+        assertEquals(points.size(), last.size());
+        assertArrayEquals(best.percents(), last.get(0).percents(), 1e-9);
+    }
+
+    @Test
+    void run_rejectsOverlappingAxes() {
+        Budget b = TestBudgets.budget();
+
+        var twice = List.of(ScenarioSweep.Axis.parse("min_health=-10:0:5"), ScenarioSweep.Axis.parse("min_health=-20:0:5"));
+        assertThrows(IllegalArgumentException.class, () -> ScenarioSweep.run(b, twice, 0, 3));
+
+        //Υπουργείο μαζί με υποκατηγορία του
+        var nested = List.of(ScenarioSweep.Axis.parse("min_health=-10:0:5"), ScenarioSweep.Axis.parse("health_hospitals=-10:0:5"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ScenarioSweep.run(b, nested, 0, 3));
+        assertTrue(e.getMessage().contains("HEALTH_HOSPITALS"));
+    }
+}
@@ -0,0 +1,22 @@
+package gr.aueb.budgetpm;
+
+import java.util.Map;
+
+/**
+ * Κοινό budget των tests: δαπάνες 1.000.000 και έσοδα 900.000 (έλλειμμα 100.000),
+ * κατανεμημένα με τον προεπιλεγμένο πίνακα, χωρίς κλήση στο API.
+ */
+final class TestBudgets {
+
+    private TestBudgets() {}
+
+    static Budget budget() {
+        return budget(2020, "GR");
+    }
+
+    static Budget budget(int year, String country) {
+        Budget b = new Budget(year, country);
+        b.loadFromMetrics(Map.of("GC.XPN.TOTL.GD.ZS", 1_000_000L, "GC.REV.XGRT.GD.ZS", 900_000L));
+        return b;
+    }
+}